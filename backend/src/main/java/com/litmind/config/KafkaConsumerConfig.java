@@ -1,5 +1,7 @@
 package com.litmind.config;
 
+import com.litmind.service.ai.AiRequestContext;
+import com.litmind.service.ai.LlmPriority;
 import com.litmind.service.pdf.PdfAnalysisService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.annotation.KafkaListener;
@@ -20,10 +22,14 @@ public class KafkaConsumerConfig {
     public void consumePdfAnalysis(String fileId) {
         try {
             log.info("收到PDF分析任务: fileId={}", fileId);
+            // 队列中的分析任务为后台请求，LLM调度时让位于用户交互请求
+            AiRequestContext.setPriority(LlmPriority.BACKGROUND);
             pdfAnalysisService.analyzePdf(Long.parseLong(fileId));
             log.info("PDF分析完成: fileId={}", fileId);
         } catch (Exception e) {
             log.error("PDF分析失败: fileId={}, error={}", fileId, e.getMessage(), e);
+        } finally {
+            AiRequestContext.clear();
         }
     }
 }
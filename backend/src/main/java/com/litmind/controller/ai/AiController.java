@@ -1,61 +1,333 @@
 package com.litmind.controller.ai;
 
+import com.litmind.common.exception.BusinessException;
 import com.litmind.common.response.ApiResponse;
 import com.litmind.common.util.SecurityUtil;
 import com.litmind.model.entity.AiQaRecord;
+import com.litmind.model.entity.PdfTextChunk;
 import com.litmind.repository.AiQaRecordRepository;
 import com.litmind.service.ai.AiService;
+import com.litmind.service.ai.AiUsageService;
+import com.litmind.service.ai.LlmReply;
+import com.litmind.service.ai.LlmRequestScheduler;
+import com.litmind.service.ai.LlmResponseCache;
+import com.litmind.service.ai.QaMemoService;
+import com.litmind.service.ai.TokenUsage;
+import com.litmind.service.ai.provider.LlmRouter;
 import com.litmind.service.file.FileService;
 import com.litmind.service.pdf.PdfAnalysisService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 @RestController
 @RequestMapping("/ai")
 @RequiredArgsConstructor
+@Slf4j
 public class AiController {
 
+    private static final String REUSED_MESSAGE = "已复用历史回答";
+
     private final AiService aiService;
     private final FileService fileService;
     private final PdfAnalysisService pdfAnalysisService;
     private final AiQaRecordRepository aiQaRecordRepository;
+    private final LlmResponseCache llmResponseCache;
+    private final LlmRequestScheduler llmRequestScheduler;
+    private final LlmRouter llmRouter;
+    private final AiUsageService aiUsageService;
+    private final QaMemoService qaMemoService;
     private final SecurityUtil securityUtil;
 
+    @Value("${ai.stream.timeout-ms:180000}")
+    private long streamTimeoutMs;
+
+    @Value("${ai.batch.max-questions:10}")
+    private int batchMaxQuestions;
+
+    @Value("${ai.stats.enabled:false}")
+    private boolean statsEnabled;
+
+    /**
+     * 异步问答：PDF分块读取在PDF任务执行器中执行，LLM调用期间释放请求线程。
+     * 文件所有者和同部门用户（公共文件）均可提问；同一文件已有相同或近似问题的回答时直接复用（message为“已复用历史回答”），force=true时重新生成
+     */
     @PostMapping("/qa")
-    public ApiResponse<String> askQuestion(
+    public CompletableFuture<ApiResponse<String>> askQuestion(
             @RequestBody Map<String, String> request,
             Authentication authentication) {
         Long userId = getUserId(authentication);
         Long fileId = Long.valueOf(request.get("fileId"));
         String question = request.get("question");
+        boolean force = Boolean.parseBoolean(request.get("force"));
 
         // 获取文件
-        com.litmind.model.entity.File file = fileService.getFile(userId, fileId);
+        com.litmind.model.entity.File file = fileService.getReadableFile(userId, fileId);
+
+        Optional<AiQaRecord> memo = force ? Optional.empty() : qaMemoService.lookup(fileId, question);
+        if (memo.isPresent()) {
+            saveRecord(fileId, userId, question, reusedReply(memo.get()));
+            return CompletableFuture.completedFuture(ApiResponse.success(REUSED_MESSAGE, memo.get().getAnswer()));
+        }
+
+        // 获取PDF章节分块（首次提取后持久化，后续直接读取）
+        return pdfAnalysisService.getPdfChunksAsync(file)
+                .handle((chunks, error) -> {
+                    if (error != null) {
+                        log.warn("PDF文本提取失败: fileId={}, error={}", fileId, error.getMessage());
+                    }
+                    return chunks;
+                })
+                .thenCompose(chunks -> {
+                    if (chunks == null) {
+                        return CompletableFuture.completedFuture(ApiResponse.<String>error(500, "PDF文本提取失败"));
+                    }
+                    // 调用AI服务
+                    return aiService.answerQuestionAsync(chunks, question, userId).thenApply(reply -> {
+                        // 保存问答记录
+                        saveRecord(fileId, userId, question, reply);
+                        return ApiResponse.success(reply.getContent());
+                    });
+                });
+    }
+
+    /**
+     * 批量问答：同一篇论文的多个问题共享一次PDF读取和一份上下文，每个回答单独保存问答记录
+     */
+    @PostMapping("/qa/batch")
+    public CompletableFuture<ApiResponse<List<Map<String, Object>>>> askQuestions(
+            @RequestBody Map<String, Object> request,
+            Authentication authentication) {
+        Long userId = getUserId(authentication);
+        Long fileId = Long.valueOf(String.valueOf(request.get("fileId")));
+        List<String> questions = new ArrayList<>();
+        if (request.get("questions") instanceof List) {
+            for (Object question : (List<?>) request.get("questions")) {
+                if (question != null && !question.toString().trim().isEmpty()) {
+                    questions.add(question.toString().trim());
+                }
+            }
+        }
+        if (questions.isEmpty()) {
+            throw new BusinessException(400, "问题列表不能为空");
+        }
+        if (questions.size() > batchMaxQuestions) {
+            throw new BusinessException(400, "单次最多提交" + batchMaxQuestions + "个问题");
+        }
+        boolean force = Boolean.parseBoolean(String.valueOf(request.get("force")));
+
+        com.litmind.model.entity.File file = fileService.getReadableFile(userId, fileId);
+
+        // 已有历史回答的问题直接复用，只把其余问题发给LLM
+        Map<Integer, AiQaRecord> reused = new HashMap<>();
+        List<String> pending = new ArrayList<>();
+        for (int i = 0; i < questions.size(); i++) {
+            Optional<AiQaRecord> memo = force ? Optional.empty() : qaMemoService.lookup(fileId, questions.get(i));
+            if (memo.isPresent()) {
+                reused.put(i, memo.get());
+            } else {
+                pending.add(questions.get(i));
+            }
+        }
+        CompletableFuture<List<LlmReply>> fresh = pending.isEmpty()
+                ? CompletableFuture.completedFuture(Collections.<LlmReply>emptyList())
+                : pdfAnalysisService.getPdfChunksAsync(file)
+                        .thenCompose(chunks -> aiService.answerQuestionsAsync(chunks, pending, userId));
+        return fresh.thenApply(replies -> {
+            List<Map<String, Object>> answers = new ArrayList<>(questions.size());
+            int next = 0;
+            for (int i = 0; i < questions.size(); i++) {
+                LlmReply reply = reused.containsKey(i) ? reusedReply(reused.get(i)) : replies.get(next++);
+                AiQaRecord record = saveRecord(fileId, userId, questions.get(i), reply);
+                Map<String, Object> answer = new LinkedHashMap<>();
+                answer.put("question", questions.get(i));
+                answer.put("answer", reply.getContent());
+                answer.put("recordId", record.getId());
+                answer.put("reused", reused.containsKey(i));
+                answers.add(answer);
+            }
+            return ApiResponse.success(answers);
+        });
+    }
+
+    /**
+     * 流式问答（Server-Sent Events）
+     * 事件：token（{"content": 回答片段}）、done（回答完成，data为问答记录ID）、error（{"message": 失败原因}）
+     */
+    @PostMapping(value = "/qa/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter askQuestionStream(
+            @RequestBody Map<String, String> request,
+            Authentication authentication) {
+        Long userId = getUserId(authentication);
+        Long fileId = Long.valueOf(request.get("fileId"));
+        String question = request.get("question");
+        boolean force = Boolean.parseBoolean(request.get("force"));
+
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
 
-        // 提取PDF文本（简化处理，实际应该缓存）
-        String pdfText;
+        // 获取文件后在PDF任务执行器中读取章节分块，请求线程立即返回
+        com.litmind.model.entity.File file;
         try {
-            pdfText = pdfAnalysisService.extractTextFromPdf(file.getFilePath());
+            file = fileService.getReadableFile(userId, fileId);
         } catch (Exception e) {
-            return ApiResponse.error(500, "PDF文本提取失败");
+            sendErrorAndComplete(emitter, e.getMessage());
+            return emitter;
         }
 
-        // 调用AI服务
-        String answer = aiService.answerQuestion(pdfText, question);
+        // 复用历史回答时一次性推送完整回答
+        Optional<AiQaRecord> memo = force ? Optional.empty() : qaMemoService.lookup(fileId, question);
+        if (memo.isPresent()) {
+            try {
+                AiQaRecord record = saveRecord(fileId, userId, question, reusedReply(memo.get()));
+                emitter.send(SseEmitter.event().name("token")
+                        .data(Collections.singletonMap("content", memo.get().getAnswer())));
+                emitter.send(SseEmitter.event().name("done").data(record.getId()));
+                emitter.complete();
+            } catch (Exception e) {
+                emitter.completeWithError(e);
+            }
+            return emitter;
+        }
+
+        AtomicReference<Runnable> cancel = new AtomicReference<>(() -> { });
+        emitter.onTimeout(() -> cancel.get().run());
+        emitter.onError(error -> cancel.get().run());
+        pdfAnalysisService.getPdfChunksAsync(file).whenComplete((chunks, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                sendErrorAndComplete(emitter, cause.getMessage());
+                return;
+            }
+            cancel.set(aiService.streamAnswer(chunks, question, userId, new AiService.StreamListener() {
+                @Override
+                public void onToken(String token) throws IOException {
+                    // 以JSON发送，回答片段中的换行不会破坏SSE事件格式
+                    emitter.send(SseEmitter.event().name("token").data(Collections.singletonMap("content", token)));
+                }
+
+                @Override
+                public void onComplete(LlmReply reply) {
+                    // 回答完整生成后再保存问答记录
+                    try {
+                        AiQaRecord record = saveRecord(fileId, userId, question, reply);
+                        emitter.send(SseEmitter.event().name("done").data(record.getId()));
+                        emitter.complete();
+                    } catch (Exception e) {
+                        log.warn("保存流式问答记录失败: fileId={}, error={}", fileId, e.getMessage());
+                        emitter.completeWithError(e);
+                    }
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    sendErrorAndComplete(emitter, e.getMessage());
+                }
+            }));
+        });
+        return emitter;
+    }
+
+    /**
+     * 复用的历史回答不消耗Token，模型沿用原回答的模型
+     */
+    private static LlmReply reusedReply(AiQaRecord memo) {
+        return new LlmReply(memo.getAnswer(), TokenUsage.NONE, null, memo.getModelUsed());
+    }
 
-        // 保存问答记录
+    private AiQaRecord saveRecord(Long fileId, Long userId, String question, LlmReply reply) {
+        TokenUsage usage = reply.getUsage();
         AiQaRecord record = new AiQaRecord();
         record.setFileId(fileId);
         record.setUserId(userId);
         record.setQuestion(question);
-        record.setAnswer(answer);
-        record.setModelUsed(aiService.getModelName());
-        aiQaRecordRepository.save(record);
+        record.setQuestionHash(QaMemoService.questionHash(question));
+        record.setAnswer(reply.getContent());
+        // 实际回答的模型，对冲或故障转移时不是首选模型
+        record.setModelUsed(reply.getModel());
+        record.setPromptTokens(usage.getPromptTokens());
+        record.setCompletionTokens(usage.getCompletionTokens());
+        record.setTokensUsed(usage.getTotalTokens());
+        return aiQaRecordRepository.save(record);
+    }
+
+    private void sendErrorAndComplete(SseEmitter emitter, String message) {
+        try {
+            emitter.send(SseEmitter.event().name("error")
+                    .data(Collections.singletonMap("message", message != null ? message : "AI服务调用失败")));
+            emitter.complete();
+        } catch (Exception e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    /**
+     * LLM响应缓存命中统计
+     */
+    @GetMapping("/cache/stats")
+    public ApiResponse<Map<String, Object>> getCacheStats() {
+        requireStatsEnabled();
+        return ApiResponse.success(llmResponseCache.getStats());
+    }
+
+    /**
+     * LLM请求调度状态（排队数、进行中、429重试次数）
+     */
+    @GetMapping("/scheduler/stats")
+    public ApiResponse<Map<String, Object>> getSchedulerStats() {
+        requireStatsEnabled();
+        return ApiResponse.success(llmRequestScheduler.getStats());
+    }
+
+    /**
+     * 各AI提供商的请求数、失败数、对冲和故障转移次数、延迟分位数
+     */
+    @GetMapping("/providers/stats")
+    public ApiResponse<List<Map<String, Object>>> getProviderStats() {
+        requireStatsEnabled();
+        return ApiResponse.success(llmRouter.getStats());
+    }
+
+    /**
+     * 当前用户及所在部门的本月AI用量和预算
+     */
+    @GetMapping("/usage")
+    public ApiResponse<Map<String, Object>> getUsage(Authentication authentication) {
+        return ApiResponse.success(aiUsageService.getUsage(getUserId(authentication)));
+    }
 
-        return ApiResponse.success(answer);
+    /**
+     * 当前用户所在部门内的本月AI用量排行
+     */
+    @GetMapping("/usage/ranking")
+    public ApiResponse<List<Map<String, Object>>> getUsageRanking(
+            Authentication authentication,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ApiResponse.success(aiUsageService.getDepartmentRanking(getUserId(authentication), limit));
+    }
+
+    /**
+     * 缓存、调度器和提供商统计是全站运行数据，仅在 ai.stats.enabled 开启时（压测、调参环境）提供
+     */
+    private void requireStatsEnabled() {
+        if (!statsEnabled) {
+            throw new BusinessException(403, "运行统计接口未开启");
+        }
     }
 
     private Long getUserId(Authentication authentication) {
@@ -6,6 +6,7 @@ import com.litmind.model.entity.File;
 import com.litmind.service.file.FileService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -16,6 +17,7 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/files")
@@ -47,9 +49,10 @@ public class FileController {
             @RequestParam("file") MultipartFile file,
             @RequestParam(required = false) Long folderId,
             @RequestParam(required = false, defaultValue = "false") Boolean isPublic,
+            @RequestParam(required = false) Long previousVersionId,
             Authentication authentication) {
         Long userId = getUserId(authentication);
-        File uploadedFile = fileService.uploadFile(userId, folderId, file, isPublic);
+        File uploadedFile = fileService.uploadFile(userId, folderId, file, isPublic, previousVersionId);
         return ApiResponse.success("文件上传成功", uploadedFile);
     }
 
@@ -82,6 +85,21 @@ public class FileController {
         }
     }
 
+    @GetMapping("/{id}/thumbnail")
+    public ResponseEntity<InputStreamResource> getThumbnail(
+            @PathVariable Long id,
+            @RequestParam(required = false, defaultValue = "0") Integer page,
+            Authentication authentication) {
+        Long userId = getUserId(authentication);
+        InputStream inputStream = fileService.getThumbnail(userId, id, page);
+
+        // 缩略图内容不会变化，允许浏览器长期缓存
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(30, TimeUnit.DAYS).cachePrivate())
+                .contentType(MediaType.IMAGE_JPEG)
+                .body(new InputStreamResource(inputStream));
+    }
+
     @PutMapping("/{id}")
     public ApiResponse<File> updateFile(
             @PathVariable Long id,
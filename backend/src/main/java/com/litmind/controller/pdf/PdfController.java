@@ -10,7 +10,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/pdf")
@@ -46,42 +48,52 @@ public class PdfController {
         return ApiResponse.success(analysis);
     }
 
+    /**
+     * 分析时预生成的常见问答，问答界面可直接展示，无需调用LLM
+     */
+    @GetMapping("/{fileId}/faq")
+    public ApiResponse<List<PdfAnalysisService.FaqItem>> getFaq(@PathVariable Long fileId) {
+        return ApiResponse.success(pdfAnalysisService.getFaq(fileId));
+    }
+
+    /**
+     * 异步分析：PDF解析和LLM调用期间释放请求线程
+     */
     @PostMapping("/{fileId}/analyze")
-    public ApiResponse<PdfAnalysis> analyzePdf(
+    public CompletableFuture<ApiResponse<PdfAnalysis>> analyzePdf(
             @PathVariable Long fileId,
             Authentication authentication) {
-        try {
-            PdfAnalysis analysis = pdfAnalysisService.analyzePdf(fileId);
-            
-            // 记录用户分析PDF的行为
-            if (authentication != null) {
-                Long userId = securityUtil.getUserId(authentication);
-                if (userId != null) {
-                    try {
-                        recommendationService.recordUserBehavior(userId, fileId, "ANALYZE", 
-                            "{\"action\":\"analyze_pdf\",\"fileId\":" + fileId + "}");
-                        
-                        // 分析完成后，异步生成推荐（如果用户有足够的行为数据）
-                        new Thread(() -> {
-                            try {
-                                Thread.sleep(2000); // 等待2秒，确保行为记录已保存
-                                recommendationService.generateRecommendations(userId);
-                                log.info("为用户 {} 自动生成推荐", userId);
-                            } catch (Exception e) {
-                                log.warn("自动生成推荐失败: {}", e.getMessage());
-                            }
-                        }).start();
-                    } catch (Exception e) {
-                        log.warn("记录用户行为失败: {}", e.getMessage());
+        Long userId = authentication != null ? securityUtil.getUserId(authentication) : null;
+        return pdfAnalysisService.analyzePdfAsync(fileId, userId)
+                .whenComplete((analysis, error) -> {
+                    if (error != null) {
+                        // 记录详细错误信息，异常交给GlobalExceptionHandler处理
+                        log.error("PDF分析请求失败: fileId={}, error={}", fileId, error.getMessage());
+                    } else if (userId != null) {
+                        recordAnalyzeBehavior(userId, fileId);
                     }
+                })
+                .thenApply(analysis -> ApiResponse.success("分析完成", analysis));
+    }
+
+    private void recordAnalyzeBehavior(Long userId, Long fileId) {
+        // 记录用户分析PDF的行为
+        try {
+            recommendationService.recordUserBehavior(userId, fileId, "ANALYZE",
+                "{\"action\":\"analyze_pdf\",\"fileId\":" + fileId + "}");
+
+            // 分析完成后，异步生成推荐（如果用户有足够的行为数据）
+            new Thread(() -> {
+                try {
+                    Thread.sleep(2000); // 等待2秒，确保行为记录已保存
+                    recommendationService.generateRecommendations(userId);
+                    log.info("为用户 {} 自动生成推荐", userId);
+                } catch (Exception e) {
+                    log.warn("自动生成推荐失败: {}", e.getMessage());
                 }
-            }
-            
-            return ApiResponse.success("分析完成", analysis);
+            }).start();
         } catch (Exception e) {
-            // 记录详细错误信息
-            log.error("PDF分析请求失败: fileId={}, error={}", fileId, e.getMessage(), e);
-            throw e; // 让GlobalExceptionHandler处理
+            log.warn("记录用户行为失败: {}", e.getMessage());
         }
     }
 
@@ -26,6 +26,9 @@ public class AiQaRecord {
     @Column(nullable = false, columnDefinition = "TEXT")
     private String question;
 
+    @Column(name = "question_hash", length = 64)
+    private String questionHash; // 规范化问题的SHA-256，用于复用相同问题的回答
+
     @Column(columnDefinition = "TEXT")
     private String answer;
 
@@ -35,6 +38,12 @@ public class AiQaRecord {
     @Column(name = "tokens_used")
     private Integer tokensUsed;
 
+    @Column(name = "prompt_tokens")
+    private Integer promptTokens;
+
+    @Column(name = "completion_tokens")
+    private Integer completionTokens;
+
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
 
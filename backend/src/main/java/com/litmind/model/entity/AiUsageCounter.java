@@ -0,0 +1,54 @@
+package com.litmind.model.entity;
+
+import javax.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * AI用量计数（按用户/部门、按月累计），每次LLM调用后原子递增，查询用量和预算时不扫描明细表
+ */
+@Entity
+@Table(name = "ai_usage_counters",
+        uniqueConstraints = @UniqueConstraint(name = "uk_scope_period", columnNames = {"scope", "scope_id", "period"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AiUsageCounter {
+    public static final String SCOPE_USER = "USER";
+    public static final String SCOPE_DEPARTMENT = "DEPARTMENT";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 20)
+    private String scope; // USER 或 DEPARTMENT
+
+    @Column(name = "scope_id", nullable = false)
+    private Long scopeId;
+
+    @Column(nullable = false, length = 7)
+    private String period; // 统计月份，格式 yyyy-MM
+
+    @Column(name = "request_count", nullable = false)
+    private Long requestCount = 0L;
+
+    @Column(name = "prompt_tokens", nullable = false)
+    private Long promptTokens = 0L;
+
+    @Column(name = "completion_tokens", nullable = false)
+    private Long completionTokens = 0L;
+
+    @Column(name = "latency_ms", nullable = false)
+    private Long latencyMs = 0L; // 累计耗时（含排队），除以请求数得到平均耗时
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public long getTotalTokens() {
+        return promptTokens + completionTokens;
+    }
+}
@@ -50,6 +50,31 @@ public class File {
     @Column(name = "department_id")
     private Long departmentId;
 
+    // PDF元数据（上传时探测，不提取文本）
+    @Column(length = 500)
+    private String title;
+
+    @Column(length = 1000)
+    private String authors;
+
+    @Column(length = 255)
+    private String doi;
+
+    @Column(name = "page_count")
+    private Integer pageCount;
+
+    @Column(name = "preflight_status", length = 20)
+    private String preflightStatus; // 上传预检结果：OK、INVALID、ENCRYPTED、EMPTY、TOO_MANY_PAGES、NO_TEXT
+
+    @Column(name = "preflight_message", length = 500)
+    private String preflightMessage;
+
+    @Column(name = "thumbnail_count")
+    private Integer thumbnailCount; // 已生成的缩略图页数，null表示尚未生成
+
+    @Column(name = "previous_version_id")
+    private Long previousVersionId; // 同一论文的上一版本文件，分析时在上一版本分析的基础上增量更新
+
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
 
@@ -0,0 +1,28 @@
+package com.litmind.model.entity;
+
+import javax.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 文件热度计数（查看和分析次数），记录用户行为时原子递增，热门推荐直接按计数排序，不再逐个文件统计行为明细
+ */
+@Entity
+@Table(name = "file_popularity")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FilePopularity {
+    @Id
+    @Column(name = "file_id")
+    private Long fileId;
+
+    @Column(name = "view_count", nullable = false)
+    private Long viewCount = 0L; // VIEW 和 ANALYZE 行为次数
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -1,5 +1,6 @@
 package com.litmind.model.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import javax.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -32,12 +33,28 @@ public class PdfAnalysis {
     @Column(name = "additional_info", columnDefinition = "TEXT")
     private String additionalInfo;
 
+    @JsonIgnore
+    @Column(name = "faq", columnDefinition = "TEXT")
+    private String faq; // 分析时预生成的常见问答，JSON数组，通过 /pdf/{fileId}/faq 获取
+
+    @Column(name = "revised_from_file_id")
+    private Long revisedFromFileId; // 增量分析时所基于的上一版本文件，完整分析时为空
+
     @Column(name = "analysis_status", length = 20)
     private String analysisStatus = "PENDING";
 
     @Column(name = "analysis_model", length = 50)
     private String analysisModel;
 
+    @Column(name = "prompt_tokens")
+    private Integer promptTokens;
+
+    @Column(name = "completion_tokens")
+    private Integer completionTokens;
+
+    @Column(name = "failure_reason", length = 500)
+    private String failureReason;
+
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
 
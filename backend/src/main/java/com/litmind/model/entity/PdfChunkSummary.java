@@ -0,0 +1,41 @@
+package com.litmind.model.entity;
+
+import javax.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 长论文分段摘要（map-reduce分析的map结果）
+ * 按分段内容哈希和模型缓存，重新分析或更换模型时只计算缺失的分段
+ */
+@Entity
+@Table(name = "pdf_chunk_summaries",
+        uniqueConstraints = @UniqueConstraint(name = "uk_hash_model", columnNames = {"content_hash", "model"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PdfChunkSummary {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash; // 分段文本的SHA-256
+
+    @Column(nullable = false, length = 100)
+    private String model;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String summary;
+
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
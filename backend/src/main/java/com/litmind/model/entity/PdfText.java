@@ -0,0 +1,58 @@
+package com.litmind.model.entity;
+
+import javax.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * PDF提取文本（GZIP压缩存储），每个文件只解析一次
+ */
+@Entity
+@Table(name = "pdf_texts")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PdfText {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "file_id", nullable = false, unique = true)
+    private Long fileId;
+
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @ToString.Exclude
+    @Column(nullable = false, columnDefinition = "LONGBLOB")
+    private byte[] content;
+
+    @Column(name = "char_count")
+    private Integer charCount;
+
+    @Column(name = "raw_char_count")
+    private Integer rawCharCount; // 规范化前的字符数
+
+    @Column(name = "compressed_size")
+    private Integer compressedSize;
+
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,57 @@
+package com.litmind.model.entity;
+
+import javax.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * PDF文本分块（按论文章节切分），只保存章节类型和在提取文本中的偏移量
+ */
+@Entity
+@Table(name = "pdf_text_chunks",
+        uniqueConstraints = @UniqueConstraint(name = "uk_file_chunk", columnNames = {"file_id", "chunk_index"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PdfTextChunk {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "file_id", nullable = false)
+    private Long fileId;
+
+    @Column(name = "chunk_index", nullable = false)
+    private Integer chunkIndex;
+
+    @Column(name = "section_type", nullable = false, length = 20)
+    private String sectionType; // FRONT, ABSTRACT, INTRODUCTION, RELATED_WORK, METHOD, EXPERIMENT, DISCUSSION, CONCLUSION, REFERENCES, APPENDIX, OTHER
+
+    @Column(length = 200)
+    private String heading;
+
+    @Column(name = "start_offset", nullable = false)
+    private Integer startOffset;
+
+    @Column(name = "end_offset", nullable = false)
+    private Integer endOffset;
+
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * 分块文本，由提取文本按偏移量截取，不持久化
+     */
+    @Transient
+    @ToString.Exclude
+    private String text;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
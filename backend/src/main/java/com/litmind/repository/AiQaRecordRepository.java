@@ -5,9 +5,16 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface AiQaRecordRepository extends JpaRepository<AiQaRecord, Long> {
     List<AiQaRecord> findByFileIdAndUserIdOrderByCreatedAtDesc(Long fileId, Long userId);
+
+    // 问答复用：同一文件、同一模型下的历史回答
+    Optional<AiQaRecord> findFirstByFileIdAndModelUsedAndQuestionHashOrderByCreatedAtDesc(
+            Long fileId, String modelUsed, String questionHash);
+
+    List<AiQaRecord> findTop200ByFileIdAndModelUsedOrderByCreatedAtDesc(Long fileId, String modelUsed);
 }
 
@@ -0,0 +1,44 @@
+package com.litmind.repository;
+
+import com.litmind.model.entity.AiUsageCounter;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AiUsageCounterRepository extends JpaRepository<AiUsageCounter, Long> {
+    Optional<AiUsageCounter> findByScopeAndScopeIdAndPeriod(String scope, Long scopeId, String period);
+
+    /**
+     * 原子递增计数，不存在时创建（MySQL upsert，并发调用不会丢失计数）
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO ai_usage_counters " +
+            "(scope, scope_id, period, request_count, prompt_tokens, completion_tokens, latency_ms, updated_at) " +
+            "VALUES (:scope, :scopeId, :period, 1, :promptTokens, :completionTokens, :latencyMs, NOW()) " +
+            "ON DUPLICATE KEY UPDATE request_count = request_count + 1, " +
+            "prompt_tokens = prompt_tokens + VALUES(prompt_tokens), " +
+            "completion_tokens = completion_tokens + VALUES(completion_tokens), " +
+            "latency_ms = latency_ms + VALUES(latency_ms), updated_at = NOW()",
+            nativeQuery = true)
+    int increment(@Param("scope") String scope, @Param("scopeId") Long scopeId, @Param("period") String period,
+                  @Param("promptTokens") long promptTokens, @Param("completionTokens") long completionTokens,
+                  @Param("latencyMs") long latencyMs);
+
+    /**
+     * 部门内用户的用量排行
+     */
+    @Query("SELECT c FROM AiUsageCounter c WHERE c.scope = :scope AND c.period = :period " +
+            "AND c.scopeId IN (SELECT u.id FROM User u WHERE u.departmentId = :departmentId) " +
+            "ORDER BY (c.promptTokens + c.completionTokens) DESC")
+    List<AiUsageCounter> findTopUsersByDepartment(@Param("scope") String scope, @Param("period") String period,
+                                                  @Param("departmentId") Long departmentId, Pageable pageable);
+}
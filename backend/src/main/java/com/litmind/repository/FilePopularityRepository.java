@@ -0,0 +1,36 @@
+package com.litmind.repository;
+
+import com.litmind.model.entity.File;
+import com.litmind.model.entity.FilePopularity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface FilePopularityRepository extends JpaRepository<FilePopularity, Long> {
+
+    /**
+     * 原子递增热度计数，不存在时创建（MySQL upsert，并发调用不会丢失计数）
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO file_popularity (file_id, view_count, updated_at) VALUES (:fileId, 1, NOW()) " +
+            "ON DUPLICATE KEY UPDATE view_count = view_count + 1, updated_at = NOW()",
+            nativeQuery = true)
+    int increment(@Param("fileId") Long fileId);
+
+    /**
+     * 其他用户上传的公共PDF文件，按热度降序、上传时间降序（没有计数的文件热度为0），由数据库排序并只返回前N个
+     */
+    @Query("SELECT f FROM File f LEFT JOIN FilePopularity p ON p.fileId = f.id " +
+            "WHERE f.isPublic = true AND f.userId <> :userId " +
+            "AND (LOWER(f.fileType) LIKE '%pdf%' OR LOWER(f.mimeType) LIKE '%pdf%' OR LOWER(f.name) LIKE '%.pdf') " +
+            "ORDER BY COALESCE(p.viewCount, 0) DESC, f.createdAt DESC")
+    List<File> findHotPublicPdfFiles(@Param("userId") Long userId, Pageable pageable);
+}
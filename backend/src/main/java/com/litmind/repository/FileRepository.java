@@ -2,7 +2,11 @@ package com.litmind.repository;
 
 import com.litmind.model.entity.File;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -24,5 +28,10 @@ public interface FileRepository extends JpaRepository<File, Long> {
     // 按部门查询公共文件（文献管理）
     List<File> findByIsPublicTrueAndDepartmentId(Long departmentId);
     List<File> findByIsPublicTrueAndDepartmentIdAndFolderId(Long departmentId, Long folderId);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE File f SET f.thumbnailCount = :count WHERE f.id = :id")
+    int updateThumbnailCount(@Param("id") Long id, @Param("count") Integer count);
 }
 
@@ -0,0 +1,13 @@
+package com.litmind.repository;
+
+import com.litmind.model.entity.PdfChunkSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PdfChunkSummaryRepository extends JpaRepository<PdfChunkSummary, Long> {
+    List<PdfChunkSummary> findByModelAndContentHashIn(String model, Collection<String> contentHashes);
+}
@@ -0,0 +1,13 @@
+package com.litmind.repository;
+
+import com.litmind.model.entity.PdfTextChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PdfTextChunkRepository extends JpaRepository<PdfTextChunk, Long> {
+    List<PdfTextChunk> findByFileIdOrderByChunkIndexAsc(Long fileId);
+    void deleteByFileId(Long fileId);
+}
@@ -0,0 +1,13 @@
+package com.litmind.repository;
+
+import com.litmind.model.entity.PdfText;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface PdfTextRepository extends JpaRepository<PdfText, Long> {
+    Optional<PdfText> findByFileId(Long fileId);
+    void deleteByFileId(Long fileId);
+}
@@ -0,0 +1,26 @@
+package com.litmind.service.ai;
+
+/**
+ * 当前线程发起的AI请求上下文
+ * 由入口（控制器、Kafka消费者）设置，AiService调用LLM时读取；未设置时按交互请求处理
+ */
+public final class AiRequestContext {
+
+    private static final ThreadLocal<LlmPriority> PRIORITY = new ThreadLocal<>();
+
+    private AiRequestContext() {
+    }
+
+    public static LlmPriority getPriority() {
+        LlmPriority priority = PRIORITY.get();
+        return priority != null ? priority : LlmPriority.INTERACTIVE;
+    }
+
+    public static void setPriority(LlmPriority priority) {
+        PRIORITY.set(priority);
+    }
+
+    public static void clear() {
+        PRIORITY.remove();
+    }
+}
@@ -2,195 +2,687 @@ package com.litmind.service.ai;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.litmind.common.exception.BusinessException;
+import com.litmind.common.util.HashUtil;
+import com.litmind.model.entity.PdfChunkSummary;
+import com.litmind.model.entity.PdfTextChunk;
+import com.litmind.repository.PdfChunkSummaryRepository;
+import com.litmind.service.ai.provider.LlmRouter;
 import com.litmind.service.pdf.PdfAnalysisService;
-import lombok.RequiredArgsConstructor;
+import com.litmind.service.pdf.PdfRevisionDiffer;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.*;
+import okhttp3.Call;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class AiService {
 
-    @Value("${ai.provider}")
-    private String provider;
+    private static final String ANALYSIS_PROMPT_HEAD = "请分析以下科研论文内容，并按照以下格式输出JSON结果：\n\n" +
+            "论文内容：\n";
 
-    @Value("${ai.api-key}")
-    private String apiKey;
+    private static final String ANALYSIS_PROMPT_TAIL = "\n\n" +
+            "请提供以下分析（每个部分200-500字）：\n" +
+            "1. 研究背景：阐述该论文所处领域的研究现状、核心问题及研究动机\n" +
+            "2. 核心内容：概括论文提出的方法、模型、算法或关键技术\n" +
+            "3. 实验结果分析：总结实验设计、关键数据、性能指标及主要结论\n" +
+            "4. 其他补充：包括创新点、局限性、潜在应用场景及未来研究方向\n" +
+            "5. 常见问题：读者阅读该论文时最可能提出的5个问题及简洁回答（每个回答150字以内）\n\n" +
+            "请以JSON格式返回，格式如下：\n" +
+            "{\n" +
+            "  \"researchBackground\": \"研究背景内容\",\n" +
+            "  \"coreContent\": \"核心内容\",\n" +
+            "  \"experimentResults\": \"实验结果分析\",\n" +
+            "  \"additionalInfo\": \"其他补充\",\n" +
+            "  \"faq\": [{\"question\": \"问题\", \"answer\": \"回答\"}]\n" +
+            "}";
 
-    @Value("${ai.base-url}")
-    private String baseUrl;
+    private static final String FAQ_PROMPT_HEAD = "请根据以下科研论文内容，列出读者阅读该论文时最可能提出的5个问题，" +
+            "并基于论文内容给出简洁回答（每个回答150字以内）。\n\n" +
+            "论文内容：\n";
 
-    @Value("${ai.model}")
-    private String model;
+    private static final String FAQ_PROMPT_TAIL = "\n\n" +
+            "请以JSON数组格式返回，不要输出其他内容，格式如下：\n" +
+            "[{\"question\": \"问题\", \"answer\": \"回答\"}]";
 
-    @Value("${ai.max-tokens:4000}")
-    private int maxTokens;
+    private static final String REDUCE_PROMPT_HEAD = "以下是一篇较长科研论文按原文顺序的分段摘要，请据此分析整篇论文，并按照以下格式输出JSON结果：\n\n" +
+            "分段摘要：\n";
 
-    @Value("${ai.temperature:0.7}")
-    private double temperature;
+    private static final String REVISION_PROMPT_HEAD = "以下是一篇科研论文上一版本的分析结果，以及新版本相对上一版本修改、新增和删除的章节。" +
+            "请在原分析的基础上根据这些改动更新分析：未受改动影响的内容保持原样，不要引入改动和原分析以外的信息，" +
+            "并按照以下格式输出JSON结果：\n\n" +
+            "上一版本的分析：\n";
+
+    private static final String REVISION_CHANGES_HEAD = "\n\n新版本的改动：\n";
 
     private final ObjectMapper objectMapper;
-    private final OkHttpClient httpClient;
+    private final LlmRouter llmRouter;
+    private final PromptContextBuilder promptContextBuilder;
+    private final TokenEstimator tokenEstimator;
+    private final LlmResponseCache llmResponseCache;
+    private final PdfChunkSummaryRepository pdfChunkSummaryRepository;
+    private final AiUsageService aiUsageService;
+
+    @Value("${ai.analysis.map-reduce.enabled:true}")
+    private boolean mapReduceEnabled;
+
+    /**
+     * map阶段每个分段的Token上限
+     */
+    @Value("${ai.analysis.map-reduce.group-tokens:3000}")
+    private int summaryGroupTokens;
+
+    /**
+     * 批量问答时每次LLM调用打包的问题数
+     */
+    @Value("${ai.batch.questions-per-call:5}")
+    private int batchQuestionsPerCall;
 
-    public AiService() {
+    public AiService(PromptContextBuilder promptContextBuilder, TokenEstimator tokenEstimator,
+                     LlmResponseCache llmResponseCache, PdfChunkSummaryRepository pdfChunkSummaryRepository,
+                     AiUsageService aiUsageService, LlmRouter llmRouter) {
+        this.promptContextBuilder = promptContextBuilder;
+        this.tokenEstimator = tokenEstimator;
+        this.llmResponseCache = llmResponseCache;
+        this.pdfChunkSummaryRepository = pdfChunkSummaryRepository;
+        this.aiUsageService = aiUsageService;
+        this.llmRouter = llmRouter;
         this.objectMapper = new ObjectMapper();
-        this.httpClient = new OkHttpClient.Builder()
-                .connectTimeout(30, TimeUnit.SECONDS)
-                .readTimeout(60, TimeUnit.SECONDS)
-                .writeTimeout(60, TimeUnit.SECONDS)
-                .build();
-    }
-
-    @javax.annotation.PostConstruct
-    public void init() {
-        // 打印配置信息（隐藏敏感信息）
-        String maskedApiKey = apiKey != null && apiKey.length() > 10 
-            ? apiKey.substring(0, 10) + "..." 
-            : (apiKey != null ? apiKey : "null");
-        log.info("AI服务初始化 - provider: {}, apiKey: {}, baseUrl: {}, model: {}", 
-            provider, maskedApiKey, baseUrl, model);
-        
-        // 检查API Key是否有效
-        if (apiKey == null || apiKey.isEmpty() || "your-api-key-here".equals(apiKey)) {
-            log.warn("⚠️ AI API Key未配置或使用默认值，将返回模拟分析结果");
-            log.warn("⚠️ 请在IDEA运行配置中设置环境变量: AI_API_KEY=your-actual-api-key");
+    }
+
+    /**
+     * 问答使用的首选模型，问答复用只匹配该模型的回答；实际回答的模型以 LlmReply.getModel() 为准
+     */
+    public String getModelName() {
+        return getModelName(LlmTask.QA);
+    }
+
+    public String getModelName(LlmTask task) {
+        return llmRouter.getModelName(task);
+    }
+
+    /**
+     * 异步分析论文，LLM调用期间不占用调用方线程；调用前检查用量预算，完成后累计用量
+     *
+     * @param userId   计入用量的用户，为空时不检查预算也不统计
+     * @param priority 调度优先级，由调用方线程的请求上下文决定
+     */
+    public CompletableFuture<PdfAnalysisService.PdfAnalysisResult> analyzePdfAsync(List<PdfTextChunk> chunks,
+                                                                                   Long userId,
+                                                                                   LlmPriority priority) {
+        aiUsageService.checkBudget(userId);
+        long start = System.currentTimeMillis();
+        CompletableFuture<LlmReply> reply;
+        // 超出单次Prompt预算的长论文改用map-reduce，避免只分析开头部分
+        if (mapReduceEnabled && !promptContextBuilder.fitsAnalysisBudget(chunks, analysisTemplateTokens())) {
+            reply = mapReduceAnalyze(chunks, priority);
         } else {
-            log.info("✅ AI API Key已配置，将使用真实的AI服务");
+            reply = callLLM(buildAnalysisPrompt(chunks), sourceHash(chunks), LlmTask.ANALYSIS, priority);
         }
+        return reply.thenApply(completed -> {
+            aiUsageService.record(userId, completed.getUsage(), System.currentTimeMillis() - start);
+            PdfAnalysisService.PdfAnalysisResult result = parseAnalysisResponse(completed.getContent());
+            result.setAnalysisModel(completed.getModel());
+            result.setPromptTokens(completed.getUsage().getPromptTokens());
+            result.setCompletionTokens(completed.getUsage().getCompletionTokens());
+            return result;
+        });
     }
 
-    public String getModelName() {
-        return model;
-    }
-
-    public PdfAnalysisService.PdfAnalysisResult analyzePdf(String pdfText) {
-        String prompt = buildAnalysisPrompt(pdfText);
-        String response = callLLM(prompt);
-        return parseAnalysisResponse(response);
-    }
-
-    public String answerQuestion(String pdfText, String question) {
-        String prompt = buildQAPrompt(pdfText, question);
-        return callLLM(prompt);
-    }
-
-    private String buildAnalysisPrompt(String pdfText) {
-        // 限制PDF文本长度，避免超出Token限制
-        String truncatedText = pdfText.length() > 10000 
-                ? pdfText.substring(0, 10000) + "..."
-                : pdfText;
-
-        return "请分析以下科研论文内容，并按照以下格式输出JSON结果：\n\n" +
-                "论文内容：\n" + truncatedText + "\n\n" +
-                "请提供以下分析（每个部分200-500字）：\n" +
-                "1. 研究背景：阐述该论文所处领域的研究现状、核心问题及研究动机\n" +
-                "2. 核心内容：概括论文提出的方法、模型、算法或关键技术\n" +
-                "3. 实验结果分析：总结实验设计、关键数据、性能指标及主要结论\n" +
-                "4. 其他补充：包括创新点、局限性、潜在应用场景及未来研究方向\n\n" +
-                "请以JSON格式返回，格式如下：\n" +
-                "{\n" +
-                "  \"researchBackground\": \"研究背景内容\",\n" +
-                "  \"coreContent\": \"核心内容\",\n" +
-                "  \"experimentResults\": \"实验结果分析\",\n" +
-                "  \"additionalInfo\": \"其他补充\"\n" +
-                "}";
+    /**
+     * 长论文分析：各分段并行生成摘要（map，并发由调度器限制），再根据全部摘要生成四部分分析（reduce）。
+     * 分段摘要按内容哈希和模型持久化，重新分析或更换模型时只计算缺失的分段
+     */
+    private CompletableFuture<LlmReply> mapReduceAnalyze(List<PdfTextChunk> chunks, LlmPriority priority) {
+        long start = System.currentTimeMillis();
+        List<List<PdfTextChunk>> groups = promptContextBuilder.groupForSummary(chunks, summaryGroupTokens);
+        return summarizeGroups(groups, priority).thenCompose(summaries -> {
+            log.info("长论文map-reduce分析: 分段{}个, map耗时{}ms", groups.size(), System.currentTimeMillis() - start);
+
+            // reduce：按原文顺序拼接分段摘要
+            StringBuilder digest = new StringBuilder();
+            TokenUsage mapUsage = TokenUsage.NONE;
+            for (int i = 0; i < summaries.size(); i++) {
+                digest.append("[").append(i + 1).append("] ").append(summaries.get(i).getContent().trim()).append("\n\n");
+                mapUsage = mapUsage.plus(summaries.get(i).getUsage());
+            }
+            int templateTokens = tokenEstimator.estimate(REDUCE_PROMPT_HEAD) + tokenEstimator.estimate(ANALYSIS_PROMPT_TAIL);
+            String reducePrompt = REDUCE_PROMPT_HEAD
+                    + tokenEstimator.truncate(digest.toString().trim(), promptContextBuilder.analysisBudget(templateTokens))
+                    + ANALYSIS_PROMPT_TAIL;
+            TokenUsage totalMapUsage = mapUsage;
+            return callLLM(reducePrompt, sourceHash(chunks), LlmTask.ANALYSIS, priority)
+                    .thenApply(reply -> reply.withUsage(totalMapUsage.plus(reply.getUsage())));
+        });
     }
 
-    private String buildQAPrompt(String pdfText, String question) {
-        String truncatedText = pdfText.length() > 8000 
-                ? pdfText.substring(0, 8000) + "..."
-                : pdfText;
+    /**
+     * 各分段并行生成摘要（并发由调度器限制）。分段摘要按内容哈希和模型持久化，已有摘要的分段不再调用LLM
+     *
+     * @return 与groups顺序一致的摘要，复用的摘要用量为0
+     */
+    private CompletableFuture<List<LlmReply>> summarizeGroups(List<List<PdfTextChunk>> groups, LlmPriority priority) {
+        String modelKey = llmRouter.getModelKey(LlmTask.SUMMARY);
+        List<String> texts = new ArrayList<>(groups.size());
+        List<String> hashes = new ArrayList<>(groups.size());
+        for (List<PdfTextChunk> group : groups) {
+            StringBuilder text = new StringBuilder();
+            for (PdfTextChunk chunk : group) {
+                text.append(chunk.getText());
+            }
+            String groupText = tokenEstimator.truncate(text.toString(), promptContextBuilder.summaryBudget(
+                    summaryGroupTokens, tokenEstimator.estimate(buildSummaryPrompt(group, ""))));
+            texts.add(groupText);
+            hashes.add(HashUtil.sha256(groupText));
+        }
 
-        return "基于以下论文内容回答用户问题。如果论文中没有相关信息，请说明。\n\n" +
-                "论文内容：\n" + truncatedText + "\n\n" +
-                "用户问题：" + question + "\n\n" +
-                "请提供准确、简洁的回答：";
+        Map<String, String> cached = new HashMap<>();
+        for (PdfChunkSummary summary : pdfChunkSummaryRepository.findByModelAndContentHashIn(modelKey, hashes)) {
+            cached.put(summary.getContentHash(), summary.getSummary());
+        }
+
+        // 缺失的分段同时提交，调度器按并发上限和限速执行
+        List<CompletableFuture<LlmReply>> futures = new ArrayList<>(groups.size());
+        for (int i = 0; i < groups.size(); i++) {
+            String summary = cached.get(hashes.get(i));
+            futures.add(summary != null
+                    ? CompletableFuture.completedFuture(primaryReply(summary, LlmTask.SUMMARY))
+                    : submitLLM(buildSummaryPrompt(groups.get(i), texts.get(i)), LlmTask.SUMMARY, priority));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            List<LlmReply> summaries = new ArrayList<>(groups.size());
+            List<PdfChunkSummary> created = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                LlmReply reply = futures.get(i).join();
+                summaries.add(reply);
+                if (!cached.containsKey(hashes.get(i)) && isApiKeyConfigured()) {
+                    // 按实际生成摘要的端点保存，故障转移时不会记在首选模型名下
+                    created.add(new PdfChunkSummary(null, hashes.get(i), reply.getModelKey(), reply.getContent(), null));
+                }
+            }
+            try {
+                pdfChunkSummaryRepository.saveAll(created);
+            } catch (Exception e) {
+                // 并发分析同一论文时可能已被写入，不影响本次结果
+                log.warn("保存分段摘要失败: {}", e.getMessage());
+            }
+            log.info("分段摘要: 分段{}个, 复用摘要{}个", groups.size(), groups.size() - created.size());
+            return summaries;
+        });
+    }
+
+    /**
+     * 修订版本的增量分析：把上一版本的分析结果和新版本修改、新增、删除的章节交给模型，只更新受影响的部分。
+     * 改动内容超出Prompt预算时，改动章节先逐个生成摘要（与长论文分析共用分段摘要缓存）
+     */
+    public CompletableFuture<PdfAnalysisService.PdfAnalysisResult> reviseAnalysisAsync(
+            PdfAnalysisService.PdfAnalysisResult prior, PdfRevisionDiffer.RevisionDiff diff,
+            Long userId, LlmPriority priority) {
+        aiUsageService.checkBudget(userId);
+        long start = System.currentTimeMillis();
+        String priorJson = writePriorAnalysis(prior);
+        int templateTokens = tokenEstimator.estimate(REVISION_PROMPT_HEAD) + tokenEstimator.estimate(priorJson)
+                + tokenEstimator.estimate(REVISION_CHANGES_HEAD) + tokenEstimator.estimate(ANALYSIS_PROMPT_TAIL);
+        int budget = promptContextBuilder.analysisBudget(templateTokens);
+
+        String changes = describeChanges(diff.getChanges(), null);
+        CompletableFuture<LlmReply> changesReady;
+        if (tokenEstimator.estimate(changes) <= budget) {
+            changesReady = CompletableFuture.completedFuture(new LlmReply(changes, TokenUsage.NONE));
+        } else {
+            // 修改和新增的章节逐个摘要，删除的章节和修改前的内容只保留章节名
+            List<List<PdfTextChunk>> groups = new ArrayList<>();
+            for (PdfRevisionDiffer.Change change : diff.getChanges()) {
+                if (change.getAfter() != null) {
+                    groups.add(Collections.singletonList(change.getAfter()));
+                }
+            }
+            changesReady = summarizeGroups(groups, priority).thenApply(summaries -> {
+                TokenUsage usage = TokenUsage.NONE;
+                for (LlmReply summary : summaries) {
+                    usage = usage.plus(summary.getUsage());
+                }
+                return new LlmReply(describeChanges(diff.getChanges(), summaries), usage);
+            });
+        }
+
+        return changesReady.thenCompose(described -> {
+            String prompt = REVISION_PROMPT_HEAD + priorJson + REVISION_CHANGES_HEAD
+                    + tokenEstimator.truncate(described.getContent(), budget) + ANALYSIS_PROMPT_TAIL;
+            return callLLM(prompt, HashUtil.sha256(described.getContent()), LlmTask.ANALYSIS, priority)
+                    .thenApply(reply -> reply.withUsage(described.getUsage().plus(reply.getUsage())));
+        }).thenApply(completed -> {
+            aiUsageService.record(userId, completed.getUsage(), System.currentTimeMillis() - start);
+            PdfAnalysisService.PdfAnalysisResult result = parseAnalysisResponse(completed.getContent());
+            if (result.getFaq() == null || result.getFaq().isEmpty()) {
+                result.setFaq(prior.getFaq());
+            }
+            result.setAnalysisModel(completed.getModel());
+            result.setPromptTokens(completed.getUsage().getPromptTokens());
+            result.setCompletionTokens(completed.getUsage().getCompletionTokens());
+            return result;
+        });
     }
 
-    private String callLLM(String prompt) {
+    private String writePriorAnalysis(PdfAnalysisService.PdfAnalysisResult prior) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("researchBackground", prior.getResearchBackground());
+        fields.put("coreContent", prior.getCoreContent());
+        fields.put("experimentResults", prior.getExperimentResults());
+        fields.put("additionalInfo", prior.getAdditionalInfo());
+        fields.put("faq", prior.getFaq());
         try {
-            if ("openai".equals(provider)) {
-                return callOpenAI(prompt);
-            } else if ("anthropic".equals(provider)) {
-                return callAnthropic(prompt);
+            return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(fields);
+        } catch (IOException e) {
+            throw new BusinessException(500, "序列化上一版本分析失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 按原文顺序列出改动；summaries不为空时，修改和新增的章节使用摘要代替原文
+     */
+    private static String describeChanges(List<PdfRevisionDiffer.Change> changes, List<LlmReply> summaries) {
+        StringBuilder text = new StringBuilder();
+        int summaryIndex = 0;
+        for (PdfRevisionDiffer.Change change : changes) {
+            String section = change.getSection();
+            if (PdfRevisionDiffer.REMOVED.equals(change.getType())) {
+                text.append("[删除] ").append(section).append("\n");
+                if (summaries == null) {
+                    text.append(change.getBefore().getText().trim()).append("\n");
+                }
             } else {
-                throw new RuntimeException("不支持的AI提供商: " + provider);
+                String after = summaries != null
+                        ? summaries.get(summaryIndex++).getContent().trim()
+                        : change.getAfter().getText().trim();
+                if (PdfRevisionDiffer.MODIFIED.equals(change.getType())) {
+                    text.append("[修改] ").append(section).append("\n");
+                    if (summaries == null) {
+                        text.append("修改前：\n").append(change.getBefore().getText().trim()).append("\n");
+                    }
+                    text.append(summaries != null ? "修改后（摘要）：\n" : "修改后：\n").append(after).append("\n");
+                } else {
+                    text.append("[新增] ").append(section).append("\n").append(after).append("\n");
+                }
             }
-        } catch (Exception e) {
-            log.error("调用LLM失败: {}", e.getMessage(), e);
-            throw new RuntimeException("AI服务调用失败: " + e.getMessage());
+            text.append("\n");
         }
+        return text.toString().trim();
     }
 
-    private String callOpenAI(String prompt) throws IOException {
-        // 验证API Key
-        if (apiKey == null || apiKey.isEmpty() || "your-api-key-here".equals(apiKey)) {
-            log.warn("AI API Key未配置，返回模拟分析结果");
-            log.warn("当前apiKey值: {}", apiKey != null ? (apiKey.length() > 10 ? apiKey.substring(0, 10) + "..." : apiKey) : "null");
-            return getMockAnalysisResponse();
+    /**
+     * 为已有分析补充常见问答（分析时未生成FAQ的历史记录使用），在后台优先级下调用
+     */
+    public CompletableFuture<List<PdfAnalysisService.FaqItem>> generateFaqAsync(List<PdfTextChunk> chunks, Long userId) {
+        aiUsageService.checkBudget(userId);
+        long start = System.currentTimeMillis();
+        int templateTokens = tokenEstimator.estimate(FAQ_PROMPT_HEAD) + tokenEstimator.estimate(FAQ_PROMPT_TAIL);
+        String prompt = FAQ_PROMPT_HEAD + promptContextBuilder.buildAnalysisContext(chunks, templateTokens) + FAQ_PROMPT_TAIL;
+        return callLLM(prompt, sourceHash(chunks), LlmTask.ANALYSIS, LlmPriority.BACKGROUND).thenApply(reply -> {
+            aiUsageService.record(userId, reply.getUsage(), System.currentTimeMillis() - start);
+            return parseFaq(reply.getContent());
+        });
+    }
+
+    private static String buildSummaryPrompt(List<PdfTextChunk> group, String text) {
+        StringBuilder sections = new StringBuilder();
+        for (PdfTextChunk chunk : group) {
+            if (chunk.getHeading() != null) {
+                sections.append(sections.length() > 0 ? "、" : "").append(chunk.getHeading());
+            }
         }
-        
-        log.debug("调用AI服务 - baseUrl: {}, model: {}, prompt长度: {}", baseUrl, model, prompt.length());
+        return "请概括以下科研论文片段的要点，保留研究问题、方法细节、关键数据、实验指标和结论，不要添加片段以外的信息，300字以内。\n\n" +
+                (sections.length() > 0 ? "所属章节：" + sections + "\n\n" : "") +
+                "论文片段：\n" + text;
+    }
 
-        String url = baseUrl + "/chat/completions";
+    /**
+     * 异步问答，LLM调用期间不占用调用方线程；调用前检查用量预算，完成后累计用量
+     */
+    public CompletableFuture<LlmReply> answerQuestionAsync(List<PdfTextChunk> chunks, String question, Long userId) {
+        aiUsageService.checkBudget(userId);
+        long start = System.currentTimeMillis();
+        String sourceHash = sourceHash(chunks);
+        String prompt = buildQAPrompt(chunks, question, sourceHash);
+        return callLLM(prompt, sourceHash, LlmTask.QA, AiRequestContext.getPriority()).thenApply(reply -> {
+            aiUsageService.record(userId, reply.getUsage(), System.currentTimeMillis() - start);
+            return reply;
+        });
+    }
 
-        String requestBody = objectMapper.writeValueAsString(new Object() {
-            public final String model = AiService.this.model;
-            public final Object[] messages = new Object[]{
-                    new Object() {
-                        public final String role = "user";
-                        public final String content = prompt;
-                    }
-            };
-            public final int max_tokens = maxTokens;
-            public final double temperature = AiService.this.temperature;
+    /**
+     * 批量问答：同一篇论文的多个问题共享一份上下文，每次调用打包至多 questions-per-call 个问题，
+     * 要求模型按编号返回JSON数组；未能解析出回答的问题再单独提问
+     *
+     * @return 与questions顺序一致的回答，打包调用的Token用量分摊到各问题
+     */
+    public CompletableFuture<List<LlmReply>> answerQuestionsAsync(List<PdfTextChunk> chunks, List<String> questions,
+                                                                  Long userId) {
+        aiUsageService.checkBudget(userId);
+        long start = System.currentTimeMillis();
+        String sourceHash = sourceHash(chunks);
+        LlmPriority priority = AiRequestContext.getPriority();
+        List<CompletableFuture<List<LlmReply>>> groups = new ArrayList<>();
+        for (int from = 0; from < questions.size(); from += batchQuestionsPerCall) {
+            List<String> group = questions.subList(from, Math.min(questions.size(), from + batchQuestionsPerCall));
+            groups.add(answerGroup(chunks, group, sourceHash, priority));
+        }
+        return CompletableFuture.allOf(groups.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            List<LlmReply> replies = new ArrayList<>(questions.size());
+            TokenUsage total = TokenUsage.NONE;
+            for (CompletableFuture<List<LlmReply>> group : groups) {
+                for (LlmReply reply : group.join()) {
+                    replies.add(reply);
+                    total = total.plus(reply.getUsage());
+                }
+            }
+            aiUsageService.record(userId, total, System.currentTimeMillis() - start);
+            return replies;
         });
+    }
+
+    private CompletableFuture<List<LlmReply>> answerGroup(List<PdfTextChunk> chunks, List<String> group,
+                                                          String sourceHash, LlmPriority priority) {
+        if (group.size() == 1) {
+            return callLLM(buildQAPrompt(chunks, group.get(0), sourceHash), sourceHash, LlmTask.QA, priority)
+                    .thenApply(Collections::singletonList);
+        }
+        return callLLM(buildBatchQAPrompt(chunks, group, sourceHash), sourceHash, LlmTask.QA, priority).thenCompose(packed -> {
+            Map<Integer, String> answers = parseBatchAnswers(packed.getContent());
+            List<TokenUsage> shares = splitUsage(packed.getUsage(), group.size(), answers);
+            List<CompletableFuture<LlmReply>> replies = new ArrayList<>(group.size());
+            for (int i = 0; i < group.size(); i++) {
+                String answer = answers.get(i + 1);
+                TokenUsage share = shares.get(i);
+                if (answer != null) {
+                    replies.add(CompletableFuture.completedFuture(packed.withContent(answer, share)));
+                } else {
+                    log.warn("批量问答未解析出第{}个问题的回答，单独提问", i + 1);
+                    replies.add(callLLM(buildQAPrompt(chunks, group.get(i), sourceHash), sourceHash, LlmTask.QA, priority)
+                            .thenApply(single -> single.withUsage(share.plus(single.getUsage()))));
+                }
+            }
+            return CompletableFuture.allOf(replies.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+                List<LlmReply> ordered = new ArrayList<>(replies.size());
+                for (CompletableFuture<LlmReply> reply : replies) {
+                    ordered.add(reply.join());
+                }
+                return ordered;
+            });
+        });
+    }
+
+    /**
+     * 解析批量问答的JSON数组，返回 编号 -> 回答；模型在数组前后附加说明或代码块标记时截取数组部分
+     */
+    private Map<Integer, String> parseBatchAnswers(String response) {
+        Map<Integer, String> answers = new HashMap<>();
+        int begin = response.indexOf('[');
+        int end = response.lastIndexOf(']');
+        if (begin < 0 || end <= begin) {
+            return answers;
+        }
+        try {
+            JsonNode items = objectMapper.readTree(response.substring(begin, end + 1));
+            for (int i = 0; i < items.size(); i++) {
+                JsonNode item = items.get(i);
+                String answer = item.path("answer").asText("").trim();
+                if (!answer.isEmpty()) {
+                    answers.put(item.path("index").asInt(i + 1), answer);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("解析批量问答响应失败: {}", e.getMessage());
+        }
+        return answers;
+    }
+
+    /**
+     * 分摊打包调用的用量：输入Token平均分摊，输出Token按回答长度分摊（都未解析出时平均分摊），余数计入第一个问题
+     */
+    private static List<TokenUsage> splitUsage(TokenUsage usage, int count, Map<Integer, String> answers) {
+        long answerChars = 0;
+        for (int i = 1; i <= count; i++) {
+            answerChars += answers.containsKey(i) ? answers.get(i).length() : 0;
+        }
+        List<TokenUsage> shares = new ArrayList<>(count);
+        int promptLeft = usage.getPromptTokens();
+        int completionLeft = usage.getCompletionTokens();
+        for (int i = 1; i <= count; i++) {
+            int prompt = usage.getPromptTokens() / count;
+            int completion = answerChars > 0
+                    ? (int) ((long) usage.getCompletionTokens() * (answers.containsKey(i) ? answers.get(i).length() : 0) / answerChars)
+                    : usage.getCompletionTokens() / count;
+            shares.add(new TokenUsage(prompt, completion));
+            promptLeft -= prompt;
+            completionLeft -= completion;
+        }
+        shares.set(0, shares.get(0).plus(new TokenUsage(promptLeft, completionLeft)));
+        return shares;
+    }
+
+    /**
+     * 流式回答：以 stream=true 调用接口，逐段回调回答内容，结束后回调完整回答。
+     * 缓存命中或未配置API Key时一次性回调完整内容
+     *
+     * @return 取消本次请求的回调（客户端断开或超时时调用）
+     */
+    public Runnable streamAnswer(List<PdfTextChunk> chunks, String question, Long userId, StreamListener listener) {
+        try {
+            aiUsageService.checkBudget(userId);
+        } catch (BusinessException e) {
+            listener.onError(e);
+            return () -> { };
+        }
+        long start = System.currentTimeMillis();
+        String sourceHash = sourceHash(chunks);
+        String prompt = buildQAPrompt(chunks, question, sourceHash);
+        if (!isApiKeyConfigured()) {
+            log.warn("AI API Key未配置，返回模拟分析结果");
+            replyAtOnce(primaryReply(getMockAnalysisResponse(), LlmTask.QA), listener);
+            aiUsageService.record(userId, TokenUsage.NONE, System.currentTimeMillis() - start);
+            return () -> { };
+        }
+
+        String cacheKey = llmResponseCache.isEnabled()
+                ? llmResponseCache.key(llmRouter.getModelKey(LlmTask.QA), prompt, sourceHash) : null;
+        if (cacheKey != null) {
+            Optional<String> cached = llmResponseCache.get(cacheKey);
+            if (cached.isPresent()) {
+                log.debug("LLM响应缓存命中: model={}", getModelName());
+                replyAtOnce(primaryReply(cached.get(), LlmTask.QA), listener);
+                aiUsageService.record(userId, TokenUsage.NONE, System.currentTimeMillis() - start);
+                return () -> { };
+            }
+        }
 
-        Request request = new Request.Builder()
-                .url(url)
-                .header("Authorization", "Bearer " + apiKey)
-                .header("Content-Type", "application/json")
-                .post(RequestBody.create(requestBody, MediaType.get("application/json")))
-                .build();
-
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                String errorBody = response.body() != null ? response.body().string() : "无错误详情";
-                log.error("OpenAI API调用失败: status={}, body={}", response.code(), errorBody);
-                
-                // 处理特定错误码
-                if (response.code() == 402) {
-                    throw new IOException("AI服务账户余额不足，请充值后重试。错误详情: " + errorBody);
-                } else if (response.code() == 401) {
-                    throw new IOException("AI API Key无效或已过期，请检查配置。错误详情: " + errorBody);
-                } else if (response.code() == 429) {
-                    throw new IOException("AI服务请求频率过高，请稍后重试。错误详情: " + errorBody);
+        // 首个片段输出前失败时由路由转移到下一个端点
+        AtomicReference<Call> currentCall = new AtomicReference<>();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        CompletableFuture<LlmReply> future = llmRouter.stream(LlmTask.QA, prompt, AiRequestContext.getPriority(),
+                listener::onToken, currentCall, cancelled);
+        future.whenComplete((reply, error) -> {
+            if (error == null) {
+                if (cacheKey != null) {
+                    // 按实际回答的端点缓存，转移到其他端点的回答不会在首选模型名下命中
+                    llmResponseCache.put(llmResponseCache.key(reply.getModelKey(), prompt, sourceHash), reply.getContent());
                 }
-                
-                throw new IOException("OpenAI API调用失败: HTTP " + response.code() + " - " + errorBody);
+                aiUsageService.record(userId, reply.getUsage(), System.currentTimeMillis() - start);
+                listener.onComplete(reply);
+            } else if (!cancelled.get()) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                log.warn("流式回答中断: {}", cause.getMessage());
+                listener.onError(cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+            }
+        });
+        return () -> {
+            cancelled.set(true);
+            Call call = currentCall.get();
+            if (call != null) {
+                call.cancel();
+            }
+            future.cancel(false);
+        };
+    }
+
+    private static void replyAtOnce(LlmReply reply, StreamListener listener) {
+        try {
+            listener.onToken(reply.getContent());
+            listener.onComplete(reply);
+        } catch (Exception e) {
+            listener.onError(e);
+        }
+    }
+
+    /**
+     * 流式回答回调
+     */
+    public interface StreamListener {
+        void onToken(String token) throws IOException;
+
+        /**
+         * @param reply 完整回答、本次消耗的Token数（缓存命中或模拟结果时为0）及实际回答的模型
+         */
+        void onComplete(LlmReply reply);
+
+        void onError(Exception e);
+    }
+
+    private String buildAnalysisPrompt(List<PdfTextChunk> chunks) {
+        // 按章节分配Token预算，避免超出上下文窗口的同时覆盖方法、实验和结论
+        String truncatedText = promptContextBuilder.buildAnalysisContext(chunks, analysisTemplateTokens());
+        return ANALYSIS_PROMPT_HEAD + truncatedText + ANALYSIS_PROMPT_TAIL;
+    }
+
+    private int analysisTemplateTokens() {
+        return tokenEstimator.estimate(ANALYSIS_PROMPT_HEAD) + tokenEstimator.estimate(ANALYSIS_PROMPT_TAIL);
+    }
+
+    private String buildQAPrompt(List<PdfTextChunk> chunks, String question, String sourceHash) {
+        String head = "基于以下论文内容回答用户问题。如果论文中没有相关信息，请说明。\n\n" +
+                "论文内容：\n";
+        String tail = "\n\n" +
+                "用户问题：" + question + "\n\n" +
+                "请提供准确、简洁的回答：";
+
+        // 只放入与问题相关的分块，而不是固定截取论文开头
+        String truncatedText = promptContextBuilder.buildQaContext(chunks, question, sourceHash,
+                tokenEstimator.estimate(head) + tokenEstimator.estimate(tail));
+        return head + truncatedText + tail;
+    }
+
+    private String buildBatchQAPrompt(List<PdfTextChunk> chunks, List<String> questions, String sourceHash) {
+        String head = "基于以下论文内容依次回答用户的多个问题。如果论文中没有相关信息，请在对应回答中说明。\n\n" +
+                "论文内容：\n";
+        StringBuilder tail = new StringBuilder("\n\n用户问题：\n");
+        for (int i = 0; i < questions.size(); i++) {
+            tail.append(i + 1).append(". ").append(questions.get(i)).append("\n");
+        }
+        tail.append("\n请对每个问题提供准确、简洁的回答，并以JSON数组返回，按编号顺序每个问题一项，格式如下：\n")
+                .append("[\n")
+                .append("  {\"index\": 1, \"answer\": \"问题1的回答\"},\n")
+                .append("  {\"index\": 2, \"answer\": \"问题2的回答\"}\n")
+                .append("]");
+
+        // 各问题分别检索相关分块，合并为一份共享上下文，只发送一次
+        String truncatedText = promptContextBuilder.buildBatchQaContext(chunks, questions, sourceHash,
+                tokenEstimator.estimate(head) + tokenEstimator.estimate(tail.toString()));
+        return head + truncatedText + tail;
+    }
+
+    /**
+     * 论文内容哈希，作为响应缓存键的一部分
+     */
+    private static String sourceHash(List<PdfTextChunk> chunks) {
+        StringBuilder content = new StringBuilder();
+        for (PdfTextChunk chunk : chunks) {
+            content.append(chunk.getText());
+        }
+        return HashUtil.sha256(content.toString());
+    }
+
+    /**
+     * 调用LLM，相同模型、Prompt和论文内容的请求优先返回缓存结果（模拟结果不缓存）
+     */
+    private CompletableFuture<LlmReply> callLLM(String prompt, String sourceHash, LlmTask task, LlmPriority priority) {
+        boolean cacheable = llmResponseCache.isEnabled() && isApiKeyConfigured();
+        String cacheKey = cacheable ? llmResponseCache.key(llmRouter.getModelKey(task), prompt, sourceHash) : null;
+        if (cacheable) {
+            Optional<String> cached = llmResponseCache.get(cacheKey);
+            if (cached.isPresent()) {
+                log.debug("LLM响应缓存命中: model={}", getModelName(task));
+                return CompletableFuture.completedFuture(primaryReply(cached.get(), task));
             }
+        }
 
-            String responseBody = response.body().string();
-            JsonNode jsonNode = objectMapper.readTree(responseBody);
-            
-            if (!jsonNode.has("choices") || jsonNode.get("choices").size() == 0) {
-                throw new IOException("OpenAI API响应格式错误: " + responseBody);
+        return submitLLM(prompt, task, priority).thenApply(reply -> {
+            if (cacheable) {
+                // 按实际回答的端点缓存，转移到其他端点的回答不会在首选模型名下命中
+                llmResponseCache.put(llmResponseCache.key(reply.getModelKey(), prompt, sourceHash), reply.getContent());
             }
-            
-            return jsonNode.get("choices").get(0).get("message").get("content").asText();
+            return reply;
+        });
+    }
+
+    /**
+     * 不经LLM得到的回答（缓存命中、已有摘要、模拟结果）记在调用类型的首选端点下
+     */
+    private LlmReply primaryReply(String content, LlmTask task) {
+        return new LlmReply(content, TokenUsage.NONE, llmRouter.getProviderName(task), llmRouter.getModelName(task));
+    }
+
+    /**
+     * 是否调用真实AI服务（所有提供商都未配置API Key时返回模拟结果）
+     */
+    public boolean isApiKeyConfigured() {
+        return llmRouter.hasConfiguredProvider();
+    }
+
+    /**
+     * 按调用类型路由到提供商：经调度器排队（受限速和并发上限约束，429时自动重试），失败时故障转移
+     */
+    private CompletableFuture<LlmReply> submitLLM(String prompt, LlmTask task, LlmPriority priority) {
+        if (!isApiKeyConfigured()) {
+            // 未配置API Key时直接返回模拟结果，不占用调度名额
+            log.warn("AI API Key未配置，返回模拟分析结果");
+            return CompletableFuture.completedFuture(primaryReply(getMockAnalysisResponse(), task));
         }
+        // 统一转换失败原因，调用方拿到的是业务异常或带“AI服务调用失败”前缀的异常
+        CompletableFuture<LlmReply> mapped = new CompletableFuture<>();
+        llmRouter.execute(task, prompt, priority).whenComplete((response, error) -> {
+            if (error == null) {
+                mapped.complete(response);
+            } else {
+                mapped.completeExceptionally(llmFailure(error));
+            }
+        });
+        return mapped;
     }
 
-    private String callAnthropic(String prompt) throws IOException {
-        // Anthropic API调用实现（类似OpenAI）
-        // 这里简化处理，实际需要根据Anthropic API文档实现
-        throw new UnsupportedOperationException("Anthropic API暂未实现");
+    private RuntimeException llmFailure(Throwable cause) {
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof BusinessException) {
+            return (BusinessException) cause;
+        }
+        log.error("调用LLM失败: {}", cause.getMessage(), cause);
+        return new RuntimeException("AI服务调用失败: " + cause.getMessage());
     }
 
     /**
@@ -201,7 +693,11 @@ public class AiService {
                 "  \"researchBackground\": \"这是模拟的研究背景内容。在实际使用中，需要配置有效的AI API Key才能获得真实的AI分析结果。研究背景部分通常包括该领域的研究现状、核心问题及研究动机。\",\n" +
                 "  \"coreContent\": \"这是模拟的核心内容。核心内容部分概括了论文提出的方法、模型、算法或关键技术。请配置AI_API_KEY环境变量以获取真实的AI分析。\",\n" +
                 "  \"experimentResults\": \"这是模拟的实验结果分析。实验结果部分总结了实验设计、关键数据、性能指标及主要结论。配置AI服务后，将获得基于实际PDF内容的分析结果。\",\n" +
-                "  \"additionalInfo\": \"这是模拟的其他补充信息。其他补充包括创新点、局限性、潜在应用场景及未来研究方向。要获取真实分析，请在IDEA运行配置中设置AI_API_KEY环境变量。\"\n" +
+                "  \"additionalInfo\": \"这是模拟的其他补充信息。其他补充包括创新点、局限性、潜在应用场景及未来研究方向。要获取真实分析，请在IDEA运行配置中设置AI_API_KEY环境变量。\",\n" +
+                "  \"faq\": [\n" +
+                "    {\"question\": \"这篇论文解决了什么问题？\", \"answer\": \"这是模拟的常见问答。配置AI服务后，将根据论文内容生成常见问题及回答。\"},\n" +
+                "    {\"question\": \"论文的主要贡献是什么？\", \"answer\": \"这是模拟的常见问答。请配置AI_API_KEY环境变量以获取真实的AI分析。\"}\n" +
+                "  ]\n" +
                 "}";
     }
 
@@ -214,6 +710,7 @@ public class AiService {
             result.setCoreContent(jsonNode.get("coreContent").asText());
             result.setExperimentResults(jsonNode.get("experimentResults").asText());
             result.setAdditionalInfo(jsonNode.get("additionalInfo").asText());
+            result.setFaq(parseFaq(jsonNode.path("faq")));
             return result;
         } catch (Exception e) {
             log.warn("解析AI响应失败，使用原始响应: {}", e.getMessage());
@@ -226,5 +723,33 @@ public class AiService {
             return result;
         }
     }
-}
 
+    /**
+     * 解析常见问答JSON数组；模型在数组前后附加说明或代码块标记时截取数组部分
+     */
+    private List<PdfAnalysisService.FaqItem> parseFaq(String response) {
+        int begin = response.indexOf('[');
+        int end = response.lastIndexOf(']');
+        if (begin < 0 || end <= begin) {
+            return new ArrayList<>();
+        }
+        try {
+            return parseFaq(objectMapper.readTree(response.substring(begin, end + 1)));
+        } catch (IOException e) {
+            log.warn("解析常见问答响应失败: {}", e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    private static List<PdfAnalysisService.FaqItem> parseFaq(JsonNode items) {
+        List<PdfAnalysisService.FaqItem> faq = new ArrayList<>();
+        for (JsonNode item : items) {
+            String question = item.path("question").asText("").trim();
+            String answer = item.path("answer").asText("").trim();
+            if (!question.isEmpty() && !answer.isEmpty()) {
+                faq.add(new PdfAnalysisService.FaqItem(question, answer));
+            }
+        }
+        return faq;
+    }
+}
@@ -0,0 +1,178 @@
+package com.litmind.service.ai;
+
+import com.litmind.common.exception.BusinessException;
+import com.litmind.model.entity.AiUsageCounter;
+import com.litmind.model.entity.User;
+import com.litmind.repository.AiUsageCounterRepository;
+import com.litmind.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * AI用量统计与预算
+ * 每次LLM调用完成后按用户和部门原子递增当月计数；调用前检查当月用量，超过硬预算时拒绝请求，
+ * 超过软预算时只记录告警。预算为每月Token数，0表示不限制
+ */
+@Service
+@Slf4j
+public class AiUsageService {
+
+    private final AiUsageCounterRepository aiUsageCounterRepository;
+    private final UserRepository userRepository;
+
+    @Value("${ai.budget.user-soft-tokens:0}")
+    private long userSoftTokens;
+
+    @Value("${ai.budget.user-hard-tokens:0}")
+    private long userHardTokens;
+
+    @Value("${ai.budget.department-soft-tokens:0}")
+    private long departmentSoftTokens;
+
+    @Value("${ai.budget.department-hard-tokens:0}")
+    private long departmentHardTokens;
+
+    public AiUsageService(AiUsageCounterRepository aiUsageCounterRepository, UserRepository userRepository) {
+        this.aiUsageCounterRepository = aiUsageCounterRepository;
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * 调用LLM前检查用户和所在部门的当月用量
+     *
+     * @param userId 发起请求的用户，为空时（如系统任务）不检查
+     */
+    public void checkBudget(Long userId) {
+        if (userId == null || (userHardTokens <= 0 && userSoftTokens <= 0
+                && departmentHardTokens <= 0 && departmentSoftTokens <= 0)) {
+            return;
+        }
+        String period = currentPeriod();
+        long userTokens = totalTokens(AiUsageCounter.SCOPE_USER, userId, period);
+        if (userHardTokens > 0 && userTokens >= userHardTokens) {
+            throw new BusinessException(429, "本月AI用量已达到个人上限（" + userHardTokens + " Token），请下月再试或联系管理员");
+        }
+        if (userSoftTokens > 0 && userTokens >= userSoftTokens) {
+            log.warn("用户AI用量超过软预算: userId={}, period={}, tokens={}, softBudget={}",
+                    userId, period, userTokens, userSoftTokens);
+        }
+
+        Long departmentId = departmentOf(userId);
+        if (departmentId == null) {
+            return;
+        }
+        long departmentTokens = totalTokens(AiUsageCounter.SCOPE_DEPARTMENT, departmentId, period);
+        if (departmentHardTokens > 0 && departmentTokens >= departmentHardTokens) {
+            throw new BusinessException(429, "本月AI用量已达到部门上限（" + departmentHardTokens + " Token），请下月再试或联系管理员");
+        }
+        if (departmentSoftTokens > 0 && departmentTokens >= departmentSoftTokens) {
+            log.warn("部门AI用量超过软预算: departmentId={}, period={}, tokens={}, softBudget={}",
+                    departmentId, period, departmentTokens, departmentSoftTokens);
+        }
+    }
+
+    /**
+     * 记录一次AI请求的用量（缓存命中、模拟结果同样计入请求次数和耗时，Token为0）
+     */
+    public void record(Long userId, TokenUsage usage, long latencyMs) {
+        if (userId == null) {
+            return;
+        }
+        String period = currentPeriod();
+        try {
+            aiUsageCounterRepository.increment(AiUsageCounter.SCOPE_USER, userId, period,
+                    usage.getPromptTokens(), usage.getCompletionTokens(), latencyMs);
+            Long departmentId = departmentOf(userId);
+            if (departmentId != null) {
+                aiUsageCounterRepository.increment(AiUsageCounter.SCOPE_DEPARTMENT, departmentId, period,
+                        usage.getPromptTokens(), usage.getCompletionTokens(), latencyMs);
+            }
+        } catch (Exception e) {
+            // 统计失败不影响已完成的请求
+            log.warn("记录AI用量失败: userId={}, error={}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * 用户及所在部门的当月用量和预算
+     */
+    public Map<String, Object> getUsage(Long userId) {
+        String period = currentPeriod();
+        Map<String, Object> usage = new LinkedHashMap<>();
+        usage.put("period", period);
+        usage.put("user", toView(AiUsageCounter.SCOPE_USER, userId, period, userSoftTokens, userHardTokens));
+        Long departmentId = departmentOf(userId);
+        usage.put("department", departmentId == null ? null
+                : toView(AiUsageCounter.SCOPE_DEPARTMENT, departmentId, period, departmentSoftTokens, departmentHardTokens));
+        return usage;
+    }
+
+    /**
+     * 用户所在部门内的当月Token用量排行（不返回其他部门的数据；未加入部门时只返回本人）
+     */
+    public List<Map<String, Object>> getDepartmentRanking(Long userId, int limit) {
+        String period = currentPeriod();
+        Long departmentId = departmentOf(userId);
+        if (departmentId == null) {
+            return Collections.singletonList(toView(AiUsageCounter.SCOPE_USER, userId, period, userSoftTokens, userHardTokens));
+        }
+        List<Map<String, Object>> ranking = new ArrayList<>();
+        for (AiUsageCounter counter : aiUsageCounterRepository.findTopUsersByDepartment(AiUsageCounter.SCOPE_USER,
+                period, departmentId, PageRequest.of(0, Math.max(1, Math.min(limit, 100))))) {
+            ranking.add(toView(counter, userSoftTokens, userHardTokens));
+        }
+        return ranking;
+    }
+
+    private Map<String, Object> toView(String scope, Long scopeId, String period, long softTokens, long hardTokens) {
+        AiUsageCounter counter = aiUsageCounterRepository.findByScopeAndScopeIdAndPeriod(scope, scopeId, period)
+                .orElseGet(() -> {
+                    AiUsageCounter empty = new AiUsageCounter();
+                    empty.setScope(scope);
+                    empty.setScopeId(scopeId);
+                    empty.setPeriod(period);
+                    return empty;
+                });
+        return toView(counter, softTokens, hardTokens);
+    }
+
+    private static Map<String, Object> toView(AiUsageCounter counter, long softTokens, long hardTokens) {
+        long total = counter.getTotalTokens();
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("scope", counter.getScope());
+        view.put("id", counter.getScopeId());
+        view.put("requestCount", counter.getRequestCount());
+        view.put("promptTokens", counter.getPromptTokens());
+        view.put("completionTokens", counter.getCompletionTokens());
+        view.put("totalTokens", total);
+        view.put("avgLatencyMs", counter.getRequestCount() == 0 ? 0 : counter.getLatencyMs() / counter.getRequestCount());
+        view.put("softBudget", softTokens);
+        view.put("hardBudget", hardTokens);
+        view.put("softExceeded", softTokens > 0 && total >= softTokens);
+        view.put("hardExceeded", hardTokens > 0 && total >= hardTokens);
+        return view;
+    }
+
+    private long totalTokens(String scope, Long scopeId, String period) {
+        return aiUsageCounterRepository.findByScopeAndScopeIdAndPeriod(scope, scopeId, period)
+                .map(AiUsageCounter::getTotalTokens)
+                .orElse(0L);
+    }
+
+    private Long departmentOf(Long userId) {
+        return userRepository.findById(userId).map(User::getDepartmentId).orElse(null);
+    }
+
+    private static String currentPeriod() {
+        return YearMonth.now().toString();
+    }
+}
@@ -0,0 +1,229 @@
+package com.litmind.service.ai;
+
+import com.litmind.model.entity.PdfTextChunk;
+import com.litmind.service.ai.vector.ChunkVectorIndex;
+import com.litmind.service.ai.vector.ChunkVectorService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 问答检索：对论文分块建立BM25索引，按问题相关度排序分块；论文已写入向量索引时，
+ * 再与向量检索结果做倒数排名融合（RRF）。BM25索引按论文内容哈希缓存，同一篇论文的多次提问不重复分词
+ */
+@Component
+@Slf4j
+public class ChunkRetriever {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /**
+     * 倒数排名融合的平滑常数
+     */
+    private static final int RRF_K = 60;
+
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "the", "a", "an", "of", "in", "on", "for", "to", "and", "or", "is", "are", "was", "were", "be",
+            "by", "with", "as", "at", "from", "that", "this", "these", "those", "it", "its", "what", "which",
+            "how", "why", "who", "when", "where", "does", "do", "did", "paper", "we", "our", "they", "their",
+            "本文", "论文", "什么", "哪些", "如何", "怎么", "为什么", "是否", "作者"));
+
+    private final Map<String, Bm25Index> indexCache;
+    private final ChunkVectorService chunkVectorService;
+
+    public ChunkRetriever(ChunkVectorService chunkVectorService,
+                          @Value("${ai.retrieval.index-cache-size:200}") int indexCacheSize) {
+        this.chunkVectorService = chunkVectorService;
+        this.indexCache = new LinkedHashMap<String, Bm25Index>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Bm25Index> eldest) {
+                return size() > indexCacheSize;
+            }
+        };
+    }
+
+    /**
+     * 按与问题的相关度从高到低返回得分大于0的分块
+     *
+     * @param indexKey 论文内容哈希，用于复用索引
+     */
+    public List<ScoredChunk> rank(String indexKey, List<PdfTextChunk> chunks, String question) {
+        Bm25Index index;
+        synchronized (indexCache) {
+            index = indexCache.get(indexKey);
+        }
+        if (index == null || index.documentCount != chunks.size()) {
+            index = new Bm25Index(chunks);
+            synchronized (indexCache) {
+                indexCache.put(indexKey, index);
+            }
+        }
+
+        Set<String> queryTerms = new HashSet<>(tokenize(question));
+        List<ScoredChunk> ranked = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            double score = index.score(i, queryTerms);
+            if (score > 0) {
+                ranked.add(new ScoredChunk(chunks.get(i), score));
+            }
+        }
+        ranked.sort((left, right) -> Double.compare(right.getScore(), left.getScore()));
+        log.debug("问答检索: 问题词项{}个, 命中分块{}/{}", queryTerms.size(), ranked.size(), chunks.size());
+
+        Long fileId = chunks.isEmpty() ? null : chunks.get(0).getFileId();
+        if (fileId == null || !chunkVectorService.isIndexed(fileId)) {
+            return ranked;
+        }
+        return fuse(ranked, chunkVectorService.searchInFile(fileId, question, chunks.size()), chunks);
+    }
+
+    /**
+     * 倒数排名融合：分块得分为其在BM25和向量检索结果中 1/(RRF_K+名次) 之和
+     */
+    private static List<ScoredChunk> fuse(List<ScoredChunk> lexical, List<ChunkVectorIndex.Hit> semantic,
+                                          List<PdfTextChunk> chunks) {
+        Map<Long, PdfTextChunk> byId = new HashMap<>();
+        Map<Integer, PdfTextChunk> byIndex = new HashMap<>();
+        for (PdfTextChunk chunk : chunks) {
+            byId.put(chunk.getId(), chunk);
+            byIndex.put(chunk.getChunkIndex(), chunk);
+        }
+        Map<Integer, Double> fused = new HashMap<>();
+        for (int i = 0; i < lexical.size(); i++) {
+            fused.merge(lexical.get(i).getChunk().getChunkIndex(), 1.0 / (RRF_K + i + 1), Double::sum);
+        }
+        int rank = 0;
+        for (ChunkVectorIndex.Hit hit : semantic) {
+            PdfTextChunk chunk = byId.get(hit.getChunkId());
+            if (chunk == null || hit.getScore() <= 0) {
+                continue;
+            }
+            fused.merge(chunk.getChunkIndex(), 1.0 / (RRF_K + ++rank), Double::sum);
+        }
+
+        List<ScoredChunk> ranked = new ArrayList<>(fused.size());
+        for (Map.Entry<Integer, Double> entry : fused.entrySet()) {
+            ranked.add(new ScoredChunk(byIndex.get(entry.getKey()), entry.getValue()));
+        }
+        ranked.sort((left, right) -> Double.compare(right.getScore(), left.getScore()));
+        return ranked;
+    }
+
+    /**
+     * 分词：英文按单词（小写、去停用词），中日韩文字按相邻两字切分
+     */
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        char previousCjk = 0;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (isCjk(c)) {
+                flushWord(word, terms);
+                if (previousCjk != 0) {
+                    addTerm(terms, new String(new char[]{previousCjk, c}));
+                } else if (i + 1 >= text.length() || !isCjk(text.charAt(i + 1))) {
+                    // 孤立的单个汉字
+                    addTerm(terms, String.valueOf(c));
+                }
+                previousCjk = c;
+            } else {
+                previousCjk = 0;
+                if (Character.isLetterOrDigit(c)) {
+                    word.append(Character.toLowerCase(c));
+                } else {
+                    flushWord(word, terms);
+                }
+            }
+        }
+        return terms;
+    }
+
+    private static void flushWord(StringBuilder word, List<String> terms) {
+        if (word.length() >= 2) {
+            addTerm(terms, word.toString());
+        }
+        word.setLength(0);
+    }
+
+    private static void addTerm(List<String> terms, String term) {
+        if (!STOP_WORDS.contains(term.toLowerCase(Locale.ROOT))) {
+            terms.add(term);
+        }
+    }
+
+    private static boolean isCjk(char c) {
+        return Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+    }
+
+    /**
+     * 单篇论文的BM25索引
+     */
+    private static class Bm25Index {
+        private final int documentCount;
+        private final List<Map<String, Integer>> termFrequencies = new ArrayList<>();
+        private final int[] lengths;
+        private final Map<String, Integer> documentFrequencies = new HashMap<>();
+        private final double averageLength;
+
+        Bm25Index(List<PdfTextChunk> chunks) {
+            documentCount = chunks.size();
+            lengths = new int[documentCount];
+            long totalLength = 0;
+            for (int i = 0; i < documentCount; i++) {
+                List<String> terms = tokenize(chunks.get(i).getText());
+                Map<String, Integer> frequencies = new HashMap<>();
+                for (String term : terms) {
+                    frequencies.merge(term, 1, Integer::sum);
+                }
+                for (String term : frequencies.keySet()) {
+                    documentFrequencies.merge(term, 1, Integer::sum);
+                }
+                termFrequencies.add(frequencies);
+                lengths[i] = terms.size();
+                totalLength += terms.size();
+            }
+            averageLength = documentCount == 0 ? 0 : (double) totalLength / documentCount;
+        }
+
+        double score(int document, Set<String> queryTerms) {
+            Map<String, Integer> frequencies = termFrequencies.get(document);
+            double score = 0;
+            for (String term : queryTerms) {
+                Integer tf = frequencies.get(term);
+                if (tf == null) {
+                    continue;
+                }
+                int df = documentFrequencies.get(term);
+                double idf = Math.log(1 + (documentCount - df + 0.5) / (df + 0.5));
+                double norm = tf + K1 * (1 - B + B * lengths[document] / Math.max(averageLength, 1));
+                score += idf * tf * (K1 + 1) / norm;
+            }
+            return score;
+        }
+    }
+
+    public static class ScoredChunk {
+        private final PdfTextChunk chunk;
+        private final double score;
+
+        public ScoredChunk(PdfTextChunk chunk, double score) {
+            this.chunk = chunk;
+            this.score = score;
+        }
+
+        public PdfTextChunk getChunk() { return chunk; }
+        public double getScore() { return score; }
+    }
+}
@@ -0,0 +1,33 @@
+package com.litmind.service.ai;
+
+import java.io.IOException;
+
+/**
+ * LLM接口返回的HTTP错误，保留状态码和Retry-After供调度器判断是否重试
+ */
+public class LlmHttpException extends IOException {
+
+    private final int statusCode;
+    private final long retryAfterMs;
+
+    public LlmHttpException(int statusCode, String message, long retryAfterMs) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * 服务端要求的重试等待时间，未提供时为0
+     */
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+
+    public boolean isRateLimited() {
+        return statusCode == 429;
+    }
+}
@@ -0,0 +1,15 @@
+package com.litmind.service.ai;
+
+/**
+ * LLM请求优先级（声明顺序即调度顺序）
+ */
+public enum LlmPriority {
+    /**
+     * 用户正在等待结果的请求，如问答
+     */
+    INTERACTIVE,
+    /**
+     * 后台任务，如Kafka触发的论文分析
+     */
+    BACKGROUND
+}
@@ -0,0 +1,61 @@
+package com.litmind.service.ai;
+
+/**
+ * LLM回答内容、本次消耗的Token数及实际回答的端点和模型
+ */
+public final class LlmReply {
+
+    private final String content;
+    private final TokenUsage usage;
+    private final String provider;
+    private final String model;
+
+    public LlmReply(String content, TokenUsage usage) {
+        this(content, usage, null, null);
+    }
+
+    /**
+     * @param provider 实际回答的端点名称（对冲或故障转移时不是首选端点；缓存命中和模拟结果为首选端点）
+     * @param model    该端点的模型
+     */
+    public LlmReply(String content, TokenUsage usage, String provider, String model) {
+        this.content = content;
+        this.usage = usage;
+        this.provider = provider;
+        this.model = model;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public TokenUsage getUsage() {
+        return usage;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * 实际回答的端点标识（端点名:模型），用于响应缓存和分段摘要的键
+     */
+    public String getModelKey() {
+        return provider + ":" + model;
+    }
+
+    /**
+     * 同一端点的回答，替换内容和用量（拆分批量回答、合并多次调用的用量时使用）
+     */
+    public LlmReply withContent(String content, TokenUsage usage) {
+        return new LlmReply(content, usage, provider, model);
+    }
+
+    public LlmReply withUsage(TokenUsage usage) {
+        return withContent(content, usage);
+    }
+}
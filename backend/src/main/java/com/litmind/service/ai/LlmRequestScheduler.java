@@ -0,0 +1,376 @@
+package com.litmind.service.ai;
+
+import com.litmind.common.exception.BusinessException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * LLM请求调度器
+ * 所有LLM调用按优先级排队（交互请求优先于后台分析），每个提供商按令牌桶限速，并限制该提供商同时进行的请求数；
+ * 遇到429时按抖动退避自动重试，而不是直接返回“频率过高”。
+ * 调度线程从不等待：提供商没有令牌、被暂停或并发已满时，请求暂存在该提供商下，其他提供商的请求照常派发。
+ * 异步调用（OkHttp enqueue）在等待响应期间不占用线程，进行中的请求数只受并发上限约束
+ */
+@Component
+@Slf4j
+public class LlmRequestScheduler {
+
+    /**
+     * 每个提供商同时进行的请求上限
+     */
+    @Value("${ai.scheduler.max-concurrency:4}")
+    private int maxConcurrency;
+
+    @Value("${ai.scheduler.requests-per-minute:60}")
+    private int requestsPerMinute;
+
+    @Value("${ai.scheduler.burst:5}")
+    private int burst;
+
+    @Value("${ai.scheduler.queue-capacity:200}")
+    private int queueCapacity;
+
+    @Value("${ai.scheduler.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${ai.scheduler.base-backoff-ms:1000}")
+    private long baseBackoffMs;
+
+    @Value("${ai.scheduler.max-backoff-ms:30000}")
+    private long maxBackoffMs;
+
+    private final PriorityBlockingQueue<Task<?>> queue = new PriorityBlockingQueue<>();
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicInteger active = new AtomicInteger();
+
+    private ThreadPoolExecutor workers;
+    private ScheduledExecutorService retryTimer;
+    private Thread dispatcher;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        // 阻塞式调用的线程数由各提供商的并发上限约束，线程池本身不再限制
+        workers = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "llm-worker-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        retryTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "llm-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        dispatcher = new Thread(this::dispatchLoop, "llm-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        log.info("LLM请求调度器已启动: 每个提供商并发上限={}, 每分钟请求数={}, 突发={}, 最大重试={}",
+                maxConcurrency, requestsPerMinute, burst, maxRetries);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        dispatcher.interrupt();
+        retryTimer.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * 提交一次阻塞式LLM调用（如流式读取），在调度器工作线程中执行，返回调用结果的Future
+     *
+     * @param provider 提供商名称，每个提供商使用独立的令牌桶
+     */
+    public <T> CompletableFuture<T> submit(String provider, LlmPriority priority, Callable<T> call) {
+        return submitAsync(provider, priority, () -> {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            workers.execute(() -> {
+                try {
+                    result.complete(call.call());
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+            });
+            return result;
+        });
+    }
+
+    /**
+     * 提交一次异步LLM调用（如OkHttp enqueue），调用返回的Future完成时才释放并发名额；
+     * 等待中的请求不占用任何线程
+     *
+     * @param call 每次尝试（含429重试）都会重新调用，返回本次尝试的结果
+     */
+    public <T> CompletableFuture<T> submitAsync(String provider, LlmPriority priority,
+                                                Supplier<CompletableFuture<T>> call) {
+        if (queue.size() + parkedCount() >= queueCapacity) {
+            throw new BusinessException(503, "AI请求排队已满，请稍后重试");
+        }
+        Task<T> task = new Task<>(provider, priority, call, sequence.incrementAndGet());
+        queue.add(task);
+        return task.future;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queued", queue.size() + parkedCount());
+        stats.put("active", active.get());
+        stats.put("retries", retries.get());
+        Map<String, Object> providers = new LinkedHashMap<>();
+        lanes.forEach((name, lane) -> {
+            synchronized (lane) {
+                Map<String, Object> laneStats = new LinkedHashMap<>();
+                laneStats.put("active", lane.active);
+                laneStats.put("parked", lane.parked.size());
+                providers.put(name, laneStats);
+            }
+        });
+        stats.put("providers", providers);
+        return stats;
+    }
+
+    private int parkedCount() {
+        int parked = 0;
+        for (Lane lane : lanes.values()) {
+            synchronized (lane) {
+                parked += lane.parked.size();
+            }
+        }
+        return parked;
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            try {
+                Task<?> task = queue.take();
+                Lane lane = lane(task.provider);
+                if (task.future.isDone()) {
+                    // 调用方已取消；它可能是从暂存中放回的，由下一个暂存请求接替
+                    releaseParked(lane);
+                    continue;
+                }
+                synchronized (lane) {
+                    if (lane.active >= maxConcurrency) {
+                        // 并发已满，有请求完成时放回
+                        lane.parked.add(task);
+                        continue;
+                    }
+                    long waitMs = lane.bucket.tryAcquire();
+                    if (waitMs > 0) {
+                        // 没有令牌或被暂停，到时放回，不阻塞其他提供商
+                        lane.parked.add(task);
+                        scheduleWake(lane, waitMs);
+                        continue;
+                    }
+                    lane.active++;
+                }
+                start(task, lane);
+                // 取得名额后，让该提供商下一个暂存请求重新参与调度
+                releaseParked(lane);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("LLM请求调度异常: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 把提供商暂存中优先级最高的请求放回队列
+     */
+    private void releaseParked(Lane lane) {
+        Task<?> next;
+        synchronized (lane) {
+            next = lane.parked.poll();
+        }
+        if (next != null) {
+            queue.add(next);
+        }
+    }
+
+    private void scheduleWake(Lane lane, long delayMs) {
+        if (lane.wakeScheduled) {
+            return;
+        }
+        lane.wakeScheduled = true;
+        retryTimer.schedule(() -> {
+            synchronized (lane) {
+                lane.wakeScheduled = false;
+            }
+            releaseParked(lane);
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private <T> void start(Task<T> task, Lane lane) {
+        active.incrementAndGet();
+        CompletableFuture<T> attempt;
+        try {
+            attempt = task.call.get();
+        } catch (Exception e) {
+            attempt = new CompletableFuture<>();
+            attempt.completeExceptionally(e);
+        }
+        // 调用方取消（客户端断开、对冲请求中另一端点先返回）时取消进行中的尝试，释放并发名额
+        CompletableFuture<T> running = attempt;
+        task.future.whenComplete((result, error) -> {
+            if (task.future.isCancelled()) {
+                running.cancel(false);
+            }
+        });
+        attempt.whenComplete((result, error) -> {
+            try {
+                if (error == null) {
+                    task.future.complete(result);
+                } else {
+                    retryOrFail(task, error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error);
+                }
+            } finally {
+                active.decrementAndGet();
+                synchronized (lane) {
+                    lane.active--;
+                }
+                releaseParked(lane);
+            }
+        });
+    }
+
+    private <T> void retryOrFail(Task<T> task, Throwable error) {
+        if (error instanceof LlmHttpException && ((LlmHttpException) error).isRateLimited()
+                && task.attempt < maxRetries && !task.future.isDone()) {
+            long delay = backoff(task.attempt, ((LlmHttpException) error).getRetryAfterMs());
+            task.attempt++;
+            retries.incrementAndGet();
+            // 限流时整个提供商一起暂停，避免其他排队请求继续触发429
+            lane(task.provider).bucket.pause(delay);
+            log.warn("LLM请求被限流(429)，{}ms后第{}次重试: provider={}, priority={}",
+                    delay, task.attempt, task.provider, task.priority);
+            retryTimer.schedule(() -> queue.add(task), delay, TimeUnit.MILLISECONDS);
+        } else {
+            task.future.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * 指数退避加抖动：等待时间在 [上限/2, 上限] 之间随机，且不少于服务端要求的Retry-After
+     */
+    private long backoff(int attempt, long retryAfterMs) {
+        long ceiling = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempt, 20));
+        long jittered = ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+        return Math.max(jittered, retryAfterMs);
+    }
+
+    private Lane lane(String provider) {
+        return lanes.computeIfAbsent(provider, key -> new Lane(new TokenBucket(burst, requestsPerMinute / 60000.0)));
+    }
+
+    /**
+     * 单个提供商的调度状态：令牌桶、进行中的请求数和暂存的请求，访问时以Lane加锁
+     */
+    private static class Lane {
+        private final TokenBucket bucket;
+        private final PriorityQueue<Task<?>> parked = new PriorityQueue<>();
+        private int active;
+        private boolean wakeScheduled;
+
+        Lane(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+
+    /**
+     * 令牌桶限速，获取令牌不等待
+     */
+    private static class TokenBucket {
+        private final int capacity;
+        private final double tokensPerMs;
+        private double tokens;
+        private long lastRefill;
+        private long pausedUntil;
+
+        TokenBucket(int capacity, double tokensPerMs) {
+            this.capacity = capacity;
+            this.tokensPerMs = tokensPerMs;
+            this.tokens = capacity;
+            this.lastRefill = System.currentTimeMillis();
+        }
+
+        /**
+         * 尝试取得一个令牌
+         *
+         * @return 0表示已取得，否则为还需等待的毫秒数
+         */
+        synchronized long tryAcquire() {
+            long now = System.currentTimeMillis();
+            if (now < pausedUntil) {
+                return pausedUntil - now;
+            }
+            if (tokensPerMs <= 0) {
+                // 未配置限速
+                return 0;
+            }
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerMs);
+            lastRefill = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerMs));
+        }
+
+        synchronized void pause(long delayMs) {
+            pausedUntil = Math.max(pausedUntil, System.currentTimeMillis() + delayMs);
+            tokens = 0;
+        }
+    }
+
+    private static class Task<T> implements Comparable<Task<?>> {
+        private final String provider;
+        private final LlmPriority priority;
+        private final Supplier<CompletableFuture<T>> call;
+        private final long sequence;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private int attempt;
+
+        Task(String provider, LlmPriority priority, Supplier<CompletableFuture<T>> call, long sequence) {
+            this.provider = provider;
+            this.priority = priority;
+            this.call = call;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Task<?> other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.litmind.service.ai;
+
+import com.litmind.common.util.HashUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LLM响应缓存
+ * 以 模型 + 规范化Prompt哈希 + 论文内容哈希 为键，先查本地LRU，再查Redis（如果可用），
+ * 同一部门多人对同一篇公共论文提出相同问题时直接返回缓存结果
+ */
+@Component
+@Slf4j
+public class LlmResponseCache {
+
+    private static final String REDIS_KEY_PREFIX = "llm:response:";
+
+    private final Optional<RedisTemplate<String, Object>> redisTemplate;
+
+    @Value("${ai.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.cache.ttl-seconds:86400}")
+    private long ttlSeconds;
+
+    private final Map<String, CacheEntry> localCache;
+
+    private final AtomicLong localHits = new AtomicLong();
+    private final AtomicLong redisHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong puts = new AtomicLong();
+
+    public LlmResponseCache(Optional<RedisTemplate<String, Object>> redisTemplate,
+                            @Value("${ai.cache.local-max-entries:1000}") int localMaxEntries) {
+        this.redisTemplate = redisTemplate;
+        // 按访问顺序淘汰最久未使用的条目
+        this.localCache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > localMaxEntries;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 生成缓存键：Prompt做Unicode兼容规范化并压缩空白，避免全半角、多余空格导致缓存不命中
+     */
+    public String key(String model, String prompt, String sourceHash) {
+        String normalizedPrompt = Normalizer.normalize(prompt, Normalizer.Form.NFKC)
+                .replaceAll("\\s+", " ")
+                .trim();
+        return HashUtil.sha256(model + "\n" + (sourceHash != null ? sourceHash : "") + "\n" + normalizedPrompt);
+    }
+
+    public Optional<String> get(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        synchronized (localCache) {
+            CacheEntry entry = localCache.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > System.currentTimeMillis()) {
+                    localHits.incrementAndGet();
+                    return Optional.of(entry.value);
+                }
+                localCache.remove(key);
+            }
+        }
+
+        if (redisTemplate.isPresent()) {
+            try {
+                Object cached = redisTemplate.get().opsForValue().get(REDIS_KEY_PREFIX + key);
+                if (cached instanceof String) {
+                    redisHits.incrementAndGet();
+                    putLocal(key, (String) cached);
+                    return Optional.of((String) cached);
+                }
+            } catch (Exception e) {
+                log.warn("读取Redis LLM缓存失败: {}", e.getMessage());
+            }
+        }
+
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    public void put(String key, String response) {
+        if (!enabled || response == null) {
+            return;
+        }
+        puts.incrementAndGet();
+        putLocal(key, response);
+        redisTemplate.ifPresent(rt -> {
+            try {
+                rt.opsForValue().set(REDIS_KEY_PREFIX + key, response, ttlSeconds, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                log.warn("写入Redis LLM缓存失败: {}", e.getMessage());
+            }
+        });
+    }
+
+    private void putLocal(String key, String response) {
+        synchronized (localCache) {
+            localCache.put(key, new CacheEntry(response, System.currentTimeMillis() + ttlSeconds * 1000));
+        }
+    }
+
+    /**
+     * 缓存命中统计
+     */
+    public Map<String, Object> getStats() {
+        long local = localHits.get();
+        long redis = redisHits.get();
+        long miss = misses.get();
+        long total = local + redis + miss;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("localHits", local);
+        stats.put("redisHits", redis);
+        stats.put("misses", miss);
+        stats.put("puts", puts.get());
+        stats.put("hitRate", total == 0 ? 0.0 : (double) (local + redis) / total);
+        synchronized (localCache) {
+            stats.put("localEntries", localCache.size());
+        }
+        stats.put("redisEnabled", redisTemplate.isPresent());
+        return stats;
+    }
+
+    private static class CacheEntry {
+        private final String value;
+        private final long expiresAt;
+
+        CacheEntry(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.litmind.service.ai;
+
+/**
+ * LLM调用类型，按类型路由到不同的提供商（ai.routing）
+ */
+public enum LlmTask {
+    /**
+     * 问答（含批量、流式），适合响应快、成本低的模型
+     */
+    QA,
+    /**
+     * 整篇论文分析（含map-reduce汇总和常见问答），适合能力更强的模型
+     */
+    ANALYSIS,
+    /**
+     * 长论文map阶段的分段摘要
+     */
+    SUMMARY
+}
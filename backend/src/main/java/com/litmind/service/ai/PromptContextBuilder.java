@@ -0,0 +1,334 @@
+package com.litmind.service.ai;
+
+import com.litmind.model.entity.PdfTextChunk;
+import com.litmind.service.pdf.PdfSectionChunker;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Prompt论文内容组装
+ * 按章节分配Token预算，从摘要、方法、实验、结论等章节中选取内容，而不是只截取全文开头。
+ * 预算取配置值与模型上下文窗口剩余空间（扣除输出Token和Prompt模板）中的较小者
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PromptContextBuilder {
+
+    private static final String GAP_MARKER = "\n...\n";
+
+    /**
+     * 分析任务的章节权重（顺序即剩余预算的再分配优先级）
+     */
+    private static final Map<String, Double> ANALYSIS_WEIGHTS = new LinkedHashMap<>();
+
+    /**
+     * 问答任务的章节权重
+     */
+    private static final Map<String, Double> QA_WEIGHTS = new LinkedHashMap<>();
+
+    static {
+        ANALYSIS_WEIGHTS.put(PdfSectionChunker.ABSTRACT, 0.10);
+        ANALYSIS_WEIGHTS.put(PdfSectionChunker.METHOD, 0.22);
+        ANALYSIS_WEIGHTS.put(PdfSectionChunker.EXPERIMENT, 0.22);
+        ANALYSIS_WEIGHTS.put(PdfSectionChunker.CONCLUSION, 0.12);
+        ANALYSIS_WEIGHTS.put(PdfSectionChunker.INTRODUCTION, 0.14);
+        ANALYSIS_WEIGHTS.put(PdfSectionChunker.DISCUSSION, 0.06);
+        ANALYSIS_WEIGHTS.put(PdfSectionChunker.FRONT, 0.04);
+        ANALYSIS_WEIGHTS.put(PdfSectionChunker.RELATED_WORK, 0.04);
+        ANALYSIS_WEIGHTS.put(PdfSectionChunker.OTHER, 0.04);
+        ANALYSIS_WEIGHTS.put(PdfSectionChunker.APPENDIX, 0.02);
+
+        QA_WEIGHTS.put(PdfSectionChunker.ABSTRACT, 0.12);
+        QA_WEIGHTS.put(PdfSectionChunker.EXPERIMENT, 0.20);
+        QA_WEIGHTS.put(PdfSectionChunker.METHOD, 0.20);
+        QA_WEIGHTS.put(PdfSectionChunker.CONCLUSION, 0.12);
+        QA_WEIGHTS.put(PdfSectionChunker.INTRODUCTION, 0.12);
+        QA_WEIGHTS.put(PdfSectionChunker.DISCUSSION, 0.06);
+        QA_WEIGHTS.put(PdfSectionChunker.FRONT, 0.04);
+        QA_WEIGHTS.put(PdfSectionChunker.RELATED_WORK, 0.05);
+        QA_WEIGHTS.put(PdfSectionChunker.OTHER, 0.05);
+        QA_WEIGHTS.put(PdfSectionChunker.APPENDIX, 0.04);
+    }
+
+    private final TokenEstimator tokenEstimator;
+    private final ChunkRetriever chunkRetriever;
+
+    @Value("${ai.prompt.analysis-token-budget:6000}")
+    private int analysisTokenBudget;
+
+    @Value("${ai.prompt.qa-token-budget:4000}")
+    private int qaTokenBudget;
+
+    /**
+     * 问答时最多选取的相关分块数
+     */
+    @Value("${ai.retrieval.top-k:6}")
+    private int retrievalTopK;
+
+    /**
+     * 预留给估算误差的Token数
+     */
+    @Value("${ai.prompt.safety-margin-tokens:256}")
+    private int safetyMarginTokens;
+
+    /**
+     * @param templateTokens Prompt模板（不含论文内容）的Token数
+     */
+    public String buildAnalysisContext(List<PdfTextChunk> chunks, int templateTokens) {
+        return build(chunks, ANALYSIS_WEIGHTS, budget(LlmTask.ANALYSIS, analysisTokenBudget, templateTokens));
+    }
+
+    /**
+     * 参与分析的章节内容能否在一次Prompt的Token预算内放下
+     */
+    public boolean fitsAnalysisBudget(List<PdfTextChunk> chunks, int templateTokens) {
+        int budget = budget(LlmTask.ANALYSIS, analysisTokenBudget, templateTokens);
+        int total = 0;
+        for (PdfTextChunk chunk : chunks) {
+            if (ANALYSIS_WEIGHTS.containsKey(chunk.getSectionType())) {
+                total += tokenEstimator.estimate(chunk.getText());
+                if (total > budget) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 将参与分析的章节按原文顺序合并为若干分段，每段不超过指定Token数（单个超长分块单独成段并截断）
+     */
+    public List<List<PdfTextChunk>> groupForSummary(List<PdfTextChunk> chunks, int groupTokens) {
+        List<List<PdfTextChunk>> groups = new ArrayList<>();
+        List<PdfTextChunk> current = new ArrayList<>();
+        int currentTokens = 0;
+        for (PdfTextChunk chunk : chunks) {
+            if (!ANALYSIS_WEIGHTS.containsKey(chunk.getSectionType())) {
+                continue;
+            }
+            int tokens = tokenEstimator.estimate(chunk.getText());
+            if (!current.isEmpty() && currentTokens + tokens > groupTokens) {
+                groups.add(current);
+                current = new ArrayList<>();
+                currentTokens = 0;
+            }
+            current.add(chunk);
+            currentTokens += tokens;
+        }
+        if (!current.isEmpty()) {
+            groups.add(current);
+        }
+        return groups;
+    }
+
+    /**
+     * 问答上下文：按BM25相关度选取前top-k个分块填充Token预算；问题与论文没有共同词项时退回按章节分配
+     *
+     * @param indexKey 论文内容哈希，用于复用检索索引
+     */
+    public String buildQaContext(List<PdfTextChunk> chunks, String question, String indexKey, int templateTokens) {
+        int budget = budget(LlmTask.QA, qaTokenBudget, templateTokens);
+        List<PdfTextChunk> candidates = new ArrayList<>();
+        for (PdfTextChunk chunk : chunks) {
+            if (QA_WEIGHTS.containsKey(chunk.getSectionType())) {
+                candidates.add(chunk);
+            }
+        }
+        List<ChunkRetriever.ScoredChunk> ranked = chunkRetriever.rank(indexKey, candidates, question);
+        if (ranked.isEmpty()) {
+            return build(chunks, QA_WEIGHTS, budget);
+        }
+
+        List<Selection> selections = new ArrayList<>();
+        int left = budget;
+        for (ChunkRetriever.ScoredChunk scored : ranked) {
+            if (selections.size() >= retrievalTopK || left <= 0) {
+                break;
+            }
+            String text = scored.getChunk().getText();
+            int tokens = tokenEstimator.estimate(text);
+            String taken = tokens <= left ? text : tokenEstimator.truncate(text, left);
+            selections.add(new Selection(scored.getChunk(), taken));
+            left -= Math.min(tokens, left);
+        }
+        return render(selections, chunks);
+    }
+
+    /**
+     * 批量问答上下文：各问题分别检索，按名次轮流选取分块（去重），使每个问题都有相关内容进入共享上下文
+     */
+    public String buildBatchQaContext(List<PdfTextChunk> chunks, List<String> questions, String indexKey,
+                                      int templateTokens) {
+        int budget = budget(LlmTask.QA, qaTokenBudget, templateTokens);
+        List<PdfTextChunk> candidates = new ArrayList<>();
+        for (PdfTextChunk chunk : chunks) {
+            if (QA_WEIGHTS.containsKey(chunk.getSectionType())) {
+                candidates.add(chunk);
+            }
+        }
+        List<List<ChunkRetriever.ScoredChunk>> rankings = new ArrayList<>();
+        int deepest = 0;
+        for (String question : questions) {
+            List<ChunkRetriever.ScoredChunk> ranked = chunkRetriever.rank(indexKey, candidates, question);
+            rankings.add(ranked);
+            deepest = Math.max(deepest, ranked.size());
+        }
+        if (deepest == 0) {
+            return build(chunks, QA_WEIGHTS, budget);
+        }
+
+        List<Selection> selections = new ArrayList<>();
+        Set<Integer> selected = new HashSet<>();
+        int maxSelections = retrievalTopK + questions.size();
+        int left = budget;
+        for (int rank = 0; rank < deepest && left > 0 && selections.size() < maxSelections; rank++) {
+            for (List<ChunkRetriever.ScoredChunk> ranked : rankings) {
+                if (rank >= ranked.size() || left <= 0 || selections.size() >= maxSelections
+                        || !selected.add(ranked.get(rank).getChunk().getChunkIndex())) {
+                    continue;
+                }
+                String text = ranked.get(rank).getChunk().getText();
+                int tokens = tokenEstimator.estimate(text);
+                String taken = tokens <= left ? text : tokenEstimator.truncate(text, left);
+                selections.add(new Selection(ranked.get(rank).getChunk(), taken));
+                left -= Math.min(tokens, left);
+            }
+        }
+        return render(selections, chunks);
+    }
+
+    /**
+     * 分析Prompt中可用于论文内容的Token数
+     */
+    public int analysisBudget(int templateTokens) {
+        return budget(LlmTask.ANALYSIS, analysisTokenBudget, templateTokens);
+    }
+
+    /**
+     * 分段摘要Prompt中可用于论文片段的Token数
+     */
+    public int summaryBudget(int configured, int templateTokens) {
+        return budget(LlmTask.SUMMARY, configured, templateTokens);
+    }
+
+    /**
+     * 配置的预算与调用类型路由中最小输入窗口的较小者
+     */
+    private int budget(LlmTask task, int configured, int templateTokens) {
+        int available = tokenEstimator.getInputWindow(task) - templateTokens - safetyMarginTokens;
+        if (available < configured) {
+            log.debug("论文内容Token预算受上下文窗口限制: task={}, 配置{}, 可用{}", task, configured, available);
+        }
+        return Math.max(0, Math.min(configured, available));
+    }
+
+    /**
+     * 按章节权重分配Token预算：每个章节先取 min(章节Token数, 预算×权重)，剩余预算按优先级分给仍有内容的章节，
+     * 最后按原文顺序输出选中的内容，不相邻的片段之间用省略标记分隔
+     */
+    private String build(List<PdfTextChunk> chunks, Map<String, Double> weights, int budget) {
+        Map<String, List<PdfTextChunk>> bySection = new HashMap<>();
+        Map<String, Integer> sectionTokens = new HashMap<>();
+        Map<Integer, Integer> chunkTokens = new HashMap<>();
+        for (PdfTextChunk chunk : chunks) {
+            if (!weights.containsKey(chunk.getSectionType())) {
+                continue;
+            }
+            int tokens = tokenEstimator.estimate(chunk.getText());
+            chunkTokens.put(chunk.getChunkIndex(), tokens);
+            bySection.computeIfAbsent(chunk.getSectionType(), k -> new ArrayList<>()).add(chunk);
+            sectionTokens.merge(chunk.getSectionType(), tokens, Integer::sum);
+        }
+
+        double totalWeight = 0;
+        for (String type : bySection.keySet()) {
+            totalWeight += weights.get(type);
+        }
+        if (totalWeight == 0) {
+            return "";
+        }
+
+        Map<String, Integer> quota = new HashMap<>();
+        int remaining = budget;
+        for (String type : weights.keySet()) {
+            if (!bySection.containsKey(type)) {
+                continue;
+            }
+            int share = (int) (budget * weights.get(type) / totalWeight);
+            int granted = Math.min(sectionTokens.get(type), share);
+            quota.put(type, granted);
+            remaining -= granted;
+        }
+        for (String type : weights.keySet()) {
+            if (remaining <= 0) {
+                break;
+            }
+            if (!bySection.containsKey(type)) {
+                continue;
+            }
+            int extra = Math.min(remaining, sectionTokens.get(type) - quota.get(type));
+            quota.put(type, quota.get(type) + extra);
+            remaining -= extra;
+        }
+
+        List<Selection> selections = new ArrayList<>();
+        for (Map.Entry<String, List<PdfTextChunk>> entry : bySection.entrySet()) {
+            int left = quota.get(entry.getKey());
+            for (PdfTextChunk chunk : entry.getValue()) {
+                if (left <= 0) {
+                    break;
+                }
+                int tokens = chunkTokens.get(chunk.getChunkIndex());
+                String taken = tokens <= left ? chunk.getText() : tokenEstimator.truncate(chunk.getText(), left);
+                selections.add(new Selection(chunk, taken));
+                left -= Math.min(tokens, left);
+            }
+        }
+        return render(selections, chunks);
+    }
+
+    /**
+     * 按原文顺序输出选中的内容，不相邻或被截断的片段之间用省略标记分隔
+     */
+    private static String render(List<Selection> selections, List<PdfTextChunk> chunks) {
+        selections.sort(Comparator.comparing(selection -> selection.chunk.getChunkIndex()));
+
+        StringBuilder context = new StringBuilder();
+        Selection previous = null;
+        for (Selection selection : selections) {
+            if (previous != null && (selection.chunk.getChunkIndex() != previous.chunk.getChunkIndex() + 1
+                    || previous.text.length() < previous.chunk.getText().length())) {
+                context.append(GAP_MARKER);
+            }
+            context.append(selection.text);
+            previous = selection;
+        }
+        if (previous != null && (!previous.chunk.getChunkIndex().equals(chunks.get(chunks.size() - 1).getChunkIndex())
+                || previous.text.length() < previous.chunk.getText().length())) {
+            context.append("...");
+        }
+        return context.toString();
+    }
+
+    private static class Selection {
+        private final PdfTextChunk chunk;
+        private final String text;
+
+        Selection(PdfTextChunk chunk, String text) {
+            this.chunk = chunk;
+            this.text = text;
+        }
+    }
+}
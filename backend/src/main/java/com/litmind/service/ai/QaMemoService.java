@@ -0,0 +1,243 @@
+package com.litmind.service.ai;
+
+import com.litmind.common.util.HashUtil;
+import com.litmind.model.entity.AiQaRecord;
+import com.litmind.repository.AiQaRecordRepository;
+import com.litmind.service.pdf.PdfAnalysisService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 问答复用
+ * 同一文件、同一模型下已回答过的问题直接返回历史回答：先按规范化问题哈希精确匹配，
+ * 再在最近的问答记录中按词项Jaccard相似度查找近似问题。问题中的数字、疑问词和否定词必须一致，
+ * 避免“表2”匹配到“表3”、“how”匹配到“why”、“是否使用”匹配到“是否没有使用”。
+ * 分析时预生成的常见问答同样参与匹配
+ */
+@Service
+@Slf4j
+public class QaMemoService {
+
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+
+    /**
+     * 只去掉不影响问题含义的虚词；疑问词和否定词保留在词项中，并且必须一致
+     */
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "the", "a", "an", "of", "in", "on", "for", "to", "and", "is", "are", "was", "were", "be",
+            "by", "with", "as", "at", "from", "this", "these", "it", "its", "does", "do", "did",
+            "paper", "本文", "论文", "文中"));
+
+    private static final Set<String> CUE_WORDS = new HashSet<>(Arrays.asList(
+            "what", "which", "how", "why", "who", "whom", "whose", "when", "where", "whether", "if",
+            "not", "no", "never", "without", "cannot", "none", "nor", "neither"));
+
+    private static final String[] CJK_CUES = {
+            "什么", "哪些", "哪个", "哪里", "如何", "怎么", "怎样", "为什么", "为何", "是否", "多少", "谁", "何时",
+            "不", "没", "无", "未", "非", "否"};
+
+    private final AiQaRecordRepository aiQaRecordRepository;
+    private final AiService aiService;
+    private final PdfAnalysisService pdfAnalysisService;
+
+    @Value("${ai.qa-memo.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.qa-memo.similarity-threshold:0.8}")
+    private double similarityThreshold;
+
+    public QaMemoService(AiQaRecordRepository aiQaRecordRepository, AiService aiService,
+                         PdfAnalysisService pdfAnalysisService) {
+        this.aiQaRecordRepository = aiQaRecordRepository;
+        this.aiService = aiService;
+        this.pdfAnalysisService = pdfAnalysisService;
+    }
+
+    /**
+     * 查找可复用的历史回答；未配置API Key时（模拟回答）不复用
+     */
+    public Optional<AiQaRecord> lookup(Long fileId, String question) {
+        if (!enabled || !aiService.isApiKeyConfigured()) {
+            return Optional.empty();
+        }
+        String model = aiService.getModelName();
+        String hash = questionHash(question);
+        Optional<AiQaRecord> exact = aiQaRecordRepository
+                .findFirstByFileIdAndModelUsedAndQuestionHashOrderByCreatedAtDesc(fileId, model, hash)
+                .filter(QaMemoService::hasAnswer);
+        if (exact.isPresent()) {
+            log.debug("问答复用(精确匹配): fileId={}, recordId={}", fileId, exact.get().getId());
+            return exact;
+        }
+
+        // 预生成的常见问答转换为未保存的问答记录参与匹配
+        List<AiQaRecord> faq = new ArrayList<>();
+        for (PdfAnalysisService.FaqItem item : pdfAnalysisService.findFaq(fileId, aiService.getModelName(LlmTask.ANALYSIS))) {
+            AiQaRecord record = new AiQaRecord();
+            record.setFileId(fileId);
+            record.setQuestion(item.getQuestion());
+            record.setAnswer(item.getAnswer());
+            record.setModelUsed(model);
+            if (hash.equals(questionHash(item.getQuestion()))) {
+                log.debug("问答复用(常见问答): fileId={}", fileId);
+                return Optional.of(record);
+            }
+            faq.add(record);
+        }
+
+        Set<String> terms = terms(question);
+        if (terms.size() < 2) {
+            // 词项太少时相似度不可靠
+            return Optional.empty();
+        }
+        List<String> digits = digits(question);
+        Set<String> cues = cues(question);
+        List<AiQaRecord> candidates = new ArrayList<>(faq);
+        candidates.addAll(aiQaRecordRepository.findTop200ByFileIdAndModelUsedOrderByCreatedAtDesc(fileId, model));
+        AiQaRecord best = null;
+        double bestScore = similarityThreshold;
+        for (AiQaRecord record : candidates) {
+            if (!hasAnswer(record) || !digits.equals(digits(record.getQuestion()))
+                    || !cues.equals(cues(record.getQuestion()))) {
+                continue;
+            }
+            double score = jaccard(terms, terms(record.getQuestion()));
+            if (score > bestScore || (score == bestScore && best == null)) {
+                best = record;
+                bestScore = score;
+            }
+        }
+        if (best != null) {
+            log.debug("问答复用(近似匹配): fileId={}, recordId={}, 相似度={}", fileId, best.getId(), bestScore);
+        }
+        return Optional.ofNullable(best);
+    }
+
+    /**
+     * 规范化问题的哈希：Unicode兼容规范化、转小写，去掉空白和标点
+     */
+    public static String questionHash(String question) {
+        return HashUtil.sha256(normalize(question).replaceAll("[\\p{P}\\p{S}\\s]+", ""));
+    }
+
+    private static String normalize(String question) {
+        return Normalizer.normalize(question, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT).trim();
+    }
+
+    /**
+     * 展开英文否定缩写（can't、don't），使否定词成为独立词项
+     */
+    private static String expandNegations(String normalized) {
+        return normalized.replace('\u2019', '\'')
+                .replace("can't", "can not")
+                .replace("won't", "will not")
+                .replace("n't", " not");
+    }
+
+    /**
+     * 问题词项：英文按词、中文按相邻两字切分（与问答检索一致），但只去掉虚词，保留疑问词和否定词；英文词去掉复数后缀
+     */
+    private static Set<String> terms(String question) {
+        Set<String> terms = new HashSet<>();
+        String text = expandNegations(normalize(question));
+        StringBuilder word = new StringBuilder();
+        char previousCjk = 0;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (isCjk(c)) {
+                addWord(word, terms);
+                if (previousCjk != 0) {
+                    addTerm(new String(new char[]{previousCjk, c}), terms);
+                } else if (i + 1 >= text.length() || !isCjk(text.charAt(i + 1))) {
+                    addTerm(String.valueOf(c), terms);
+                }
+                previousCjk = c;
+            } else {
+                previousCjk = 0;
+                if (Character.isLetterOrDigit(c)) {
+                    word.append(c);
+                } else {
+                    addWord(word, terms);
+                }
+            }
+        }
+        return terms;
+    }
+
+    private static void addWord(StringBuilder word, Set<String> terms) {
+        String term = word.toString();
+        word.setLength(0);
+        if (term.length() < 2 && !CUE_WORDS.contains(term)) {
+            return;
+        }
+        boolean plural = term.length() > 3 && term.endsWith("s") && !term.endsWith("ss");
+        addTerm(plural ? term.substring(0, term.length() - 1) : term, terms);
+    }
+
+    private static void addTerm(String term, Set<String> terms) {
+        if (!STOP_WORDS.contains(term)) {
+            terms.add(term);
+        }
+    }
+
+    private static boolean isCjk(char c) {
+        return Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+    }
+
+    /**
+     * 问题中的疑问词和否定词
+     */
+    private static Set<String> cues(String question) {
+        String text = expandNegations(normalize(question));
+        Set<String> cues = new HashSet<>();
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (CUE_WORDS.contains(word)) {
+                cues.add(word);
+            }
+        }
+        for (String cue : CJK_CUES) {
+            if (text.contains(cue)) {
+                cues.add(cue);
+            }
+        }
+        return cues;
+    }
+
+    private static List<String> digits(String question) {
+        List<String> digits = new ArrayList<>();
+        Matcher matcher = DIGITS.matcher(Normalizer.normalize(question, Normalizer.Form.NFKC));
+        while (matcher.find()) {
+            digits.add(matcher.group());
+        }
+        return digits;
+    }
+
+    private static double jaccard(Set<String> left, Set<String> right) {
+        if (right.isEmpty()) {
+            return 0;
+        }
+        int common = 0;
+        for (String term : left) {
+            if (right.contains(term)) {
+                common++;
+            }
+        }
+        return (double) common / (left.size() + right.size() - common);
+    }
+
+    private static boolean hasAnswer(AiQaRecord record) {
+        return record.getAnswer() != null && !record.getAnswer().trim().isEmpty();
+    }
+}
@@ -0,0 +1,215 @@
+package com.litmind.service.ai;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import com.litmind.service.ai.provider.LlmProviderProperties;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 本地Token估算
+ * 按配置的 ai.model 选择分词特征：中日韩字符按每字符Token数计算，英文字母数字按每Token字符数计算，
+ * 标点符号单独计数。估算值偏保守，用于在发送前控制Prompt长度，不追求与服务端计数完全一致。
+ * 配置多个提供商时，按各调用类型路由到的全部端点（含对冲和故障转移目标）取最小的输入窗口，
+ * 并按最保守的分词特征估算，Prompt发往路由中任一端点都不会超出上下文窗口
+ */
+@Component
+@Slf4j
+public class TokenEstimator {
+
+    /**
+     * 模型名前缀 -> 分词特征（按匹配优先级排列，长前缀在前）
+     */
+    private static final Map<String, ModelProfile> PROFILES = new LinkedHashMap<>();
+
+    private static final ModelProfile DEFAULT_PROFILE = new ModelProfile(1.5, 3.5, 8192);
+
+    static {
+        PROFILES.put("gpt-4o", new ModelProfile(0.9, 4.0, 128000));
+        PROFILES.put("gpt-4-turbo", new ModelProfile(1.3, 4.0, 128000));
+        PROFILES.put("gpt-4", new ModelProfile(1.3, 4.0, 8192));
+        PROFILES.put("gpt-3.5", new ModelProfile(1.3, 4.0, 16385));
+        PROFILES.put("deepseek", new ModelProfile(0.7, 3.3, 64000));
+        PROFILES.put("qwen", new ModelProfile(0.8, 3.5, 32000));
+        PROFILES.put("glm", new ModelProfile(0.8, 3.5, 128000));
+        PROFILES.put("claude", new ModelProfile(1.4, 3.5, 200000));
+    }
+
+    @Value("${ai.model:}")
+    private String model;
+
+    /**
+     * 上下文窗口大小，0表示使用模型的默认值
+     */
+    @Value("${ai.context-window:0}")
+    private int contextWindowConfig;
+
+    @Value("${ai.max-tokens:4000}")
+    private int maxOutputTokens;
+
+    private volatile ModelProfile profile = DEFAULT_PROFILE;
+
+    /**
+     * 调用类型 -> 可用输入Token数（路由中各端点上下文窗口减去输出上限的最小值）
+     */
+    private final Map<LlmTask, Integer> inputWindows = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        profile = resolveProfile(model);
+        log.info("Token估算配置 - model: {}, 中日韩Token/字符: {}, 字符/Token: {}, 上下文窗口: {}",
+                model, profile.cjkTokensPerChar, profile.charsPerToken, getContextWindow());
+    }
+
+    /**
+     * 估算文本的Token数
+     */
+    public int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        double tokens = 0;
+        for (int i = 0; i < text.length(); i++) {
+            tokens += cost(text.charAt(i));
+        }
+        return (int) Math.ceil(tokens);
+    }
+
+    /**
+     * 截取不超过指定Token数的最长前缀
+     */
+    public String truncate(String text, int maxTokens) {
+        if (maxTokens <= 0) {
+            return "";
+        }
+        double tokens = 0;
+        for (int i = 0; i < text.length(); i++) {
+            tokens += cost(text.charAt(i));
+            if (tokens > maxTokens) {
+                return text.substring(0, i);
+            }
+        }
+        return text;
+    }
+
+    /**
+     * 模型上下文窗口（输入+输出）的Token数
+     */
+    public int getContextWindow() {
+        return contextWindowConfig > 0 ? contextWindowConfig : profile.contextWindow;
+    }
+
+    /**
+     * 调用类型的可用输入Token数；未登记路由时按 ai.model 和 ai.max-tokens 计算
+     */
+    public int getInputWindow(LlmTask task) {
+        Integer window = inputWindows.get(task);
+        return window != null ? window : getContextWindow() - maxOutputTokens;
+    }
+
+    /**
+     * 登记调用类型路由到的端点（由LlmRouter启动时调用，endpoints为空时不登记）
+     */
+    public synchronized void registerRoute(LlmTask task, List<LlmProviderProperties.Endpoint> endpoints) {
+        if (endpoints.isEmpty()) {
+            return;
+        }
+        int window = Integer.MAX_VALUE;
+        ModelProfile merged = profile;
+        for (LlmProviderProperties.Endpoint endpoint : endpoints) {
+            String profileName = endpoint.getModelProfile() != null && !endpoint.getModelProfile().isEmpty()
+                    ? endpoint.getModelProfile() : endpoint.getModel();
+            ModelProfile endpointProfile = resolveProfile(profileName);
+            int contextWindow;
+            if (endpoint.getContextWindow() != null && endpoint.getContextWindow() > 0) {
+                contextWindow = endpoint.getContextWindow();
+            } else if (contextWindowConfig > 0 && Objects.equals(endpoint.getModel(), model)) {
+                contextWindow = contextWindowConfig;
+            } else {
+                contextWindow = endpointProfile.contextWindow;
+            }
+            int outputTokens = endpoint.getMaxTokens() != null ? endpoint.getMaxTokens() : maxOutputTokens;
+            window = Math.min(window, contextWindow - outputTokens);
+            merged = merged.conservative(endpointProfile);
+        }
+        profile = merged;
+        inputWindows.put(task, window);
+        log.info("Token预算 - {}: 输入窗口{}（端点{}个）, 中日韩Token/字符: {}, 字符/Token: {}",
+                task, window, endpoints.size(), merged.cjkTokensPerChar, merged.charsPerToken);
+    }
+
+    private double cost(char c) {
+        if (Character.isWhitespace(c)) {
+            return 0.1;
+        }
+        if (isCjk(c)) {
+            return profile.cjkTokensPerChar;
+        }
+        if (c < 128 && Character.isLetterOrDigit(c)) {
+            return 1.0 / profile.charsPerToken;
+        }
+        if (Character.isLetterOrDigit(c)) {
+            // 带重音的拉丁字母、希腊字母等通常会被拆成多个字节级Token
+            return 0.5;
+        }
+        return 1.0;
+    }
+
+    private static boolean isCjk(char c) {
+        Character.UnicodeBlock block = Character.UnicodeBlock.of(c);
+        return block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS
+                || block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_A
+                || block == Character.UnicodeBlock.CJK_COMPATIBILITY_IDEOGRAPHS
+                || block == Character.UnicodeBlock.CJK_SYMBOLS_AND_PUNCTUATION
+                || block == Character.UnicodeBlock.HALFWIDTH_AND_FULLWIDTH_FORMS
+                || block == Character.UnicodeBlock.HIRAGANA
+                || block == Character.UnicodeBlock.KATAKANA
+                || block == Character.UnicodeBlock.HANGUL_SYLLABLES;
+    }
+
+    private static ModelProfile resolveProfile(String model) {
+        if (model == null) {
+            return DEFAULT_PROFILE;
+        }
+        String name = model.toLowerCase(Locale.ROOT);
+        // OpenRouter等网关的模型名带厂商前缀，如 deepseek/deepseek-r1
+        int slash = name.lastIndexOf('/');
+        if (slash >= 0) {
+            name = name.substring(slash + 1);
+        }
+        for (Map.Entry<String, ModelProfile> entry : PROFILES.entrySet()) {
+            if (name.startsWith(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return DEFAULT_PROFILE;
+    }
+
+    private static class ModelProfile {
+        private final double cjkTokensPerChar;
+        private final double charsPerToken;
+        private final int contextWindow;
+
+        ModelProfile(double cjkTokensPerChar, double charsPerToken, int contextWindow) {
+            this.cjkTokensPerChar = cjkTokensPerChar;
+            this.charsPerToken = charsPerToken;
+            this.contextWindow = contextWindow;
+        }
+
+        /**
+         * 两者中估算Token数较多的分词特征（上下文窗口保留当前值）
+         */
+        ModelProfile conservative(ModelProfile other) {
+            return new ModelProfile(Math.max(cjkTokensPerChar, other.cjkTokensPerChar),
+                    Math.min(charsPerToken, other.charsPerToken), contextWindow);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.litmind.service.ai;
+
+/**
+ * 一次或多次LLM调用消耗的Token数
+ * 优先取接口返回的usage，未返回时按TokenEstimator估算
+ */
+public final class TokenUsage {
+
+    /**
+     * 未实际调用接口（缓存命中、模拟结果）
+     */
+    public static final TokenUsage NONE = new TokenUsage(0, 0);
+
+    private final int promptTokens;
+    private final int completionTokens;
+
+    public TokenUsage(int promptTokens, int completionTokens) {
+        this.promptTokens = promptTokens;
+        this.completionTokens = completionTokens;
+    }
+
+    public int getPromptTokens() {
+        return promptTokens;
+    }
+
+    public int getCompletionTokens() {
+        return completionTokens;
+    }
+
+    public int getTotalTokens() {
+        return promptTokens + completionTokens;
+    }
+
+    public TokenUsage plus(TokenUsage other) {
+        return new TokenUsage(promptTokens + other.promptTokens, completionTokens + other.completionTokens);
+    }
+}
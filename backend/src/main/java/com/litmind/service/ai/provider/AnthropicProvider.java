@@ -0,0 +1,106 @@
+package com.litmind.service.ai.provider;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.litmind.service.ai.LlmReply;
+import com.litmind.service.ai.TokenEstimator;
+import com.litmind.service.ai.TokenUsage;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+
+import java.io.IOException;
+
+/**
+ * Anthropic Messages API（/v1/messages）
+ */
+public class AnthropicProvider extends HttpLlmProvider {
+
+    private static final String API_VERSION = "2023-06-01";
+
+    public AnthropicProvider(LlmProviderProperties.Endpoint endpoint, int maxTokens, double temperature,
+                             OkHttpClient httpClient, TokenEstimator tokenEstimator) {
+        super(endpoint, maxTokens, temperature, httpClient, tokenEstimator);
+    }
+
+    @Override
+    protected Request buildRequest(String prompt, boolean streaming) throws IOException {
+        String requestBody = objectMapper.writeValueAsString(new Object() {
+            public final String model = endpoint.getModel();
+            public final Object[] messages = new Object[]{
+                    new Object() {
+                        public final String role = "user";
+                        public final String content = prompt;
+                    }
+            };
+            public final int max_tokens = maxTokens;
+            public final double temperature = AnthropicProvider.this.temperature;
+            public final boolean stream = streaming;
+        });
+
+        return new Request.Builder()
+                .url(endpoint.getBaseUrl() + "/messages")
+                .header("x-api-key", endpoint.getApiKey())
+                .header("anthropic-version", API_VERSION)
+                .header("Content-Type", "application/json")
+                .post(RequestBody.create(requestBody, MediaType.get("application/json")))
+                .build();
+    }
+
+    @Override
+    protected LlmReply parseReply(JsonNode body) throws IOException {
+        JsonNode blocks = body.path("content");
+        if (!blocks.isArray() || blocks.size() == 0) {
+            throw new IOException("Anthropic API响应格式错误: " + body);
+        }
+        StringBuilder content = new StringBuilder();
+        for (JsonNode block : blocks) {
+            if ("text".equals(block.path("type").asText())) {
+                content.append(block.path("text").asText());
+            }
+        }
+        JsonNode usage = body.path("usage");
+        return new LlmReply(content.toString(), usage.isObject()
+                ? new TokenUsage(usage.path("input_tokens").asInt(), usage.path("output_tokens").asInt())
+                : null);
+    }
+
+    @Override
+    protected String streamDelta(JsonNode event) {
+        if (!"content_block_delta".equals(event.path("type").asText())) {
+            return null;
+        }
+        JsonNode text = event.path("delta").path("text");
+        return text.isTextual() ? text.asText() : null;
+    }
+
+    /**
+     * message_start 携带输入Token数，message_delta 携带累计输出Token数
+     */
+    @Override
+    protected TokenUsage streamUsage(JsonNode event, TokenUsage usage) {
+        String type = event.path("type").asText();
+        if ("message_start".equals(type)) {
+            JsonNode started = event.path("message").path("usage");
+            return new TokenUsage(started.path("input_tokens").asInt(), started.path("output_tokens").asInt());
+        }
+        if ("message_delta".equals(type) && event.path("usage").isObject()) {
+            return new TokenUsage(usage != null ? usage.getPromptTokens() : 0,
+                    event.path("usage").path("output_tokens").asInt());
+        }
+        return usage;
+    }
+
+    @Override
+    protected boolean isStreamEnd(JsonNode event) {
+        return "message_stop".equals(event.path("type").asText());
+    }
+
+    /**
+     * Anthropic余额不足时返回400，错误信息为 credit balance is too low
+     */
+    @Override
+    protected boolean isInsufficientBalance(int status, String errorBody) {
+        return status == 402 || (status == 400 && errorBody != null && errorBody.contains("credit balance"));
+    }
+}
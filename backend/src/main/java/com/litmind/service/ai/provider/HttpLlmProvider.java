@@ -0,0 +1,220 @@
+package com.litmind.service.ai.provider;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.litmind.service.ai.LlmHttpException;
+import com.litmind.service.ai.LlmReply;
+import com.litmind.service.ai.TokenEstimator;
+import com.litmind.service.ai.TokenUsage;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 基于HTTP JSON接口的提供商：异步调用、SSE流式读取和错误转换，请求格式和响应解析由子类实现
+ */
+@Slf4j
+public abstract class HttpLlmProvider implements LlmProvider {
+
+    protected final LlmProviderProperties.Endpoint endpoint;
+    protected final int maxTokens;
+    protected final double temperature;
+    protected final ObjectMapper objectMapper = new ObjectMapper();
+    private final OkHttpClient httpClient;
+    private final TokenEstimator tokenEstimator;
+
+    protected HttpLlmProvider(LlmProviderProperties.Endpoint endpoint, int maxTokens, double temperature,
+                              OkHttpClient httpClient, TokenEstimator tokenEstimator) {
+        this.endpoint = endpoint;
+        this.maxTokens = maxTokens;
+        this.temperature = temperature;
+        this.httpClient = httpClient;
+        this.tokenEstimator = tokenEstimator;
+    }
+
+    @Override
+    public String getName() {
+        return endpoint.getName();
+    }
+
+    @Override
+    public String getModel() {
+        return endpoint.getModel();
+    }
+
+    @Override
+    public boolean isConfigured() {
+        String apiKey = endpoint.getApiKey();
+        return apiKey != null && !apiKey.isEmpty() && !"your-api-key-here".equals(apiKey);
+    }
+
+    protected abstract Request buildRequest(String prompt, boolean streaming) throws IOException;
+
+    /**
+     * 解析非流式响应，未返回usage时返回null
+     */
+    protected abstract LlmReply parseReply(JsonNode body) throws IOException;
+
+    /**
+     * 流式事件中的回答片段，没有时返回null
+     */
+    protected abstract String streamDelta(JsonNode event);
+
+    /**
+     * 根据流式事件更新用量，事件不含用量时原样返回
+     */
+    protected abstract TokenUsage streamUsage(JsonNode event, TokenUsage usage);
+
+    /**
+     * 是否为流式结束事件（OpenAI以 [DONE] 结束，由基类处理）
+     */
+    protected boolean isStreamEnd(JsonNode event) {
+        return false;
+    }
+
+    /**
+     * 是否为余额不足（部分提供商不返回402而是在错误信息中说明）
+     */
+    protected boolean isInsufficientBalance(int status, String errorBody) {
+        return status == 402;
+    }
+
+    @Override
+    public CompletableFuture<LlmReply> complete(String prompt) {
+        log.debug("调用AI服务 - provider: {}, model: {}, prompt长度: {}, 估算Token: {}", getName(), getModel(),
+                prompt.length(), tokenEstimator.estimate(prompt));
+
+        CompletableFuture<LlmReply> result = new CompletableFuture<>();
+        Call call;
+        try {
+            call = httpClient.newCall(buildRequest(prompt, false));
+        } catch (IOException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call failed, IOException e) {
+                result.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call completed, Response response) {
+                try (Response closeable = response) {
+                    if (!closeable.isSuccessful()) {
+                        throw httpError(closeable);
+                    }
+                    LlmReply reply = parseReply(objectMapper.readTree(closeable.body().string()));
+                    result.complete(new LlmReply(reply.getContent(), reply.getUsage() != null ? reply.getUsage()
+                            : estimateUsage(prompt, reply.getContent()), getName(), getModel()));
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        });
+        // 调用方取消（如客户端断开、对冲请求中另一端点先返回）时取消上游请求
+        result.whenComplete((response, error) -> {
+            if (result.isCancelled()) {
+                call.cancel();
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public LlmReply stream(String prompt, TokenConsumer onToken, AtomicReference<Call> currentCall) throws IOException {
+        log.debug("调用AI服务(流式) - provider: {}, model: {}, 估算Token: {}", getName(), getModel(),
+                tokenEstimator.estimate(prompt));
+        Call call = httpClient.newCall(buildRequest(prompt, true));
+        currentCall.set(call);
+        try (Response streamed = call.execute()) {
+            if (!streamed.isSuccessful()) {
+                throw httpError(streamed);
+            }
+            StringBuilder answer = new StringBuilder();
+            TokenUsage usage = null;
+            boolean ended = false;
+            okio.BufferedSource source = streamed.body().source();
+            String line;
+            while ((line = source.readUtf8Line()) != null) {
+                // SSE格式：每个事件为 "data: {json}"
+                if (!line.startsWith("data:")) {
+                    continue;
+                }
+                String data = line.substring(5).trim();
+                if ("[DONE]".equals(data)) {
+                    ended = true;
+                    break;
+                }
+                JsonNode event = objectMapper.readTree(data);
+                String delta = streamDelta(event);
+                if (delta != null && !delta.isEmpty()) {
+                    answer.append(delta);
+                    onToken.accept(delta);
+                }
+                usage = streamUsage(event, usage);
+                if (isStreamEnd(event)) {
+                    ended = true;
+                    break;
+                }
+            }
+            if (!ended) {
+                // 连接在结束事件之前断开，回答不完整，不能作为成功结果缓存和保存
+                throw new IOException("AI服务(" + getName() + ")流式响应未正常结束，已收到" + answer.length() + "字符");
+            }
+            return new LlmReply(answer.toString(), usage != null ? usage : estimateUsage(prompt, answer.toString()),
+                    getName(), getModel());
+        } catch (IOException e) {
+            // 客户端断开时推送失败，取消上游请求避免继续消耗Token
+            call.cancel();
+            throw e;
+        }
+    }
+
+    /**
+     * 接口未返回usage时（部分兼容接口、流式未带usage）按估算值统计
+     */
+    private TokenUsage estimateUsage(String prompt, String completion) {
+        return new TokenUsage(tokenEstimator.estimate(prompt), tokenEstimator.estimate(completion));
+    }
+
+    private LlmHttpException httpError(Response response) throws IOException {
+        String errorBody = response.body() != null ? response.body().string() : "无错误详情";
+        int status = response.code();
+        log.error("AI服务调用失败: provider={}, status={}, body={}", getName(), status, errorBody);
+        long retryAfterMs = parseRetryAfter(response.header("Retry-After"));
+
+        // 处理特定错误码
+        if (isInsufficientBalance(status, errorBody)) {
+            return new LlmHttpException(402, "AI服务账户余额不足，请充值后重试。错误详情: " + errorBody, retryAfterMs);
+        } else if (status == 401) {
+            return new LlmHttpException(status, "AI API Key无效或已过期，请检查配置。错误详情: " + errorBody, retryAfterMs);
+        } else if (status == 429) {
+            return new LlmHttpException(status, "AI服务请求频率过高，请稍后重试。错误详情: " + errorBody, retryAfterMs);
+        }
+
+        return new LlmHttpException(status, "AI服务(" + getName() + ")调用失败: HTTP " + status + " - " + errorBody,
+                retryAfterMs);
+    }
+
+    /**
+     * 解析Retry-After（秒数形式），无法解析时返回0
+     */
+    private static long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null) {
+            return 0;
+        }
+        try {
+            return (long) (Double.parseDouble(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.litmind.service.ai.provider;
+
+import com.litmind.service.ai.LlmReply;
+import okhttp3.Call;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 一个已配置的LLM服务端点（提供商接口 + 模型）
+ */
+public interface LlmProvider {
+
+    /**
+     * 配置中的端点名称，用于路由、调度器限速和统计
+     */
+    String getName();
+
+    String getModel();
+
+    /**
+     * 是否配置了有效的API Key
+     */
+    boolean isConfigured();
+
+    /**
+     * 异步调用，等待响应期间不占用线程；返回的Future被取消时取消上游请求
+     */
+    CompletableFuture<LlmReply> complete(String prompt);
+
+    /**
+     * 流式调用（阻塞读取），逐段回调回答内容
+     *
+     * @param currentCall 保存进行中的请求，调用方据此取消
+     */
+    LlmReply stream(String prompt, TokenConsumer onToken, AtomicReference<Call> currentCall) throws IOException;
+
+    interface TokenConsumer {
+        void accept(String token) throws IOException;
+    }
+}
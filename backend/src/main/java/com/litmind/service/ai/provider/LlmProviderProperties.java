@@ -0,0 +1,90 @@
+package com.litmind.service.ai.provider;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 多提供商配置（ai.providers）和路由规则（ai.routing）
+ * 未配置 ai.providers 时使用 ai.provider/api-key/base-url/model 作为唯一提供商
+ */
+@Component
+@ConfigurationProperties(prefix = "ai")
+@Data
+public class LlmProviderProperties {
+
+    private List<Endpoint> providers = new ArrayList<>();
+
+    private Routing routing = new Routing();
+
+    @Data
+    public static class Endpoint {
+        /**
+         * 端点名称，在路由规则中引用
+         */
+        private String name;
+        /**
+         * 接口类型：openai（OpenAI兼容接口）或 anthropic
+         */
+        private String type = "openai";
+        private String baseUrl;
+        private String apiKey;
+        private String model;
+        /**
+         * 为空时使用 ai.max-tokens
+         */
+        private Integer maxTokens;
+        /**
+         * Token估算使用的分词特征（模型名前缀，如 deepseek、claude），为空时按 model 匹配
+         */
+        private String modelProfile;
+        /**
+         * 上下文窗口Token数，为空时按分词特征的默认值（model 与 ai.model 相同时使用 ai.context-window）
+         */
+        private Integer contextWindow;
+        /**
+         * 为空时使用 ai.temperature
+         */
+        private Double temperature;
+        /**
+         * 读取超时（流式为两个片段之间的间隔）
+         */
+        private long timeoutMs = 60000;
+    }
+
+    @Data
+    public static class Routing {
+        /**
+         * 各调用类型使用的端点名称，第一个为首选，其余依次用于对冲和故障转移；为空时按 ai.providers 的顺序
+         */
+        private List<String> qa = new ArrayList<>();
+        private List<String> analysis = new ArrayList<>();
+        private List<String> summary = new ArrayList<>();
+        /**
+         * 返回402（余额不足）后暂停使用该端点的时间
+         */
+        private long suspendMs = 600000;
+        private Hedge hedge = new Hedge();
+    }
+
+    @Data
+    public static class Hedge {
+        /**
+         * 用户等待中的请求在首选端点超过延迟分位数仍未返回时，向下一个端点发出对冲请求，先返回者胜出
+         */
+        private boolean enabled = true;
+        private int percentile = 95;
+        /**
+         * 样本数不足时使用 initial-delay-ms 作为对冲等待时间
+         */
+        private int minSamples = 20;
+        private long initialDelayMs = 10000;
+        /**
+         * 对冲等待时间下限，避免响应很快的端点频繁触发对冲
+         */
+        private long minDelayMs = 1000;
+    }
+}
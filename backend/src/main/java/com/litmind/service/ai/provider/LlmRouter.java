@@ -0,0 +1,514 @@
+package com.litmind.service.ai.provider;
+
+import com.litmind.service.ai.LlmHttpException;
+import com.litmind.service.ai.LlmPriority;
+import com.litmind.service.ai.LlmReply;
+import com.litmind.service.ai.LlmRequestScheduler;
+import com.litmind.service.ai.LlmTask;
+import com.litmind.service.ai.TokenEstimator;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 多提供商路由
+ * 按调用类型选择端点列表（ai.routing），首选端点失败（5xx、402余额不足、429重试耗尽、网络错误）时依次故障转移；
+ * 用户等待中的请求在首选端点超过其延迟分位数（默认p95）仍未返回时，向下一个端点发出对冲请求，先返回者胜出、另一个被取消。
+ * 返回402的端点暂停使用一段时间，避免每个请求都先失败一次
+ */
+@Component
+@Slf4j
+public class LlmRouter {
+
+    private final LlmProviderProperties properties;
+    private final LlmRequestScheduler llmRequestScheduler;
+    private final TokenEstimator tokenEstimator;
+    private final OkHttpClient httpClient;
+
+    @Value("${ai.provider}")
+    private String defaultProvider;
+
+    @Value("${ai.api-key}")
+    private String defaultApiKey;
+
+    @Value("${ai.base-url}")
+    private String defaultBaseUrl;
+
+    @Value("${ai.model}")
+    private String defaultModel;
+
+    @Value("${ai.max-tokens:4000}")
+    private int maxTokens;
+
+    @Value("${ai.temperature:0.7}")
+    private double temperature;
+
+    private final Map<String, ProviderState> providers = new LinkedHashMap<>();
+    private ScheduledExecutorService hedgeTimer;
+
+    public LlmRouter(LlmProviderProperties properties, LlmRequestScheduler llmRequestScheduler,
+                     TokenEstimator tokenEstimator, @Value("${ai.http.max-requests:64}") int maxHttpRequests) {
+        this.properties = properties;
+        this.llmRequestScheduler = llmRequestScheduler;
+        this.tokenEstimator = tokenEstimator;
+        // 异步调用(enqueue)受Dispatcher并发限制，默认每个主机只有5个
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxHttpRequests);
+        dispatcher.setMaxRequestsPerHost(maxHttpRequests);
+        this.httpClient = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectTimeout(30, TimeUnit.SECONDS)
+                .readTimeout(60, TimeUnit.SECONDS)
+                .writeTimeout(60, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @PostConstruct
+    public void init() {
+        List<LlmProviderProperties.Endpoint> endpoints = properties.getProviders();
+        if (endpoints.isEmpty()) {
+            // 兼容单提供商配置
+            LlmProviderProperties.Endpoint endpoint = new LlmProviderProperties.Endpoint();
+            endpoint.setName(defaultProvider);
+            endpoint.setType(defaultProvider);
+            endpoint.setApiKey(defaultApiKey);
+            endpoint.setBaseUrl(defaultBaseUrl);
+            endpoint.setModel(defaultModel);
+            endpoints = Collections.singletonList(endpoint);
+        }
+        Map<String, LlmProviderProperties.Endpoint> endpointsByName = new HashMap<>();
+        for (LlmProviderProperties.Endpoint endpoint : endpoints) {
+            endpointsByName.put(endpoint.getName(), endpoint);
+            if (providers.containsKey(endpoint.getName())) {
+                throw new IllegalStateException("AI提供商名称重复: " + endpoint.getName());
+            }
+            LlmProvider provider = createProvider(endpoint);
+            providers.put(endpoint.getName(), new ProviderState(provider));
+            // 打印配置信息（隐藏敏感信息）
+            String apiKey = endpoint.getApiKey();
+            String maskedApiKey = apiKey != null && apiKey.length() > 10 ? apiKey.substring(0, 10) + "..." : apiKey;
+            log.info("AI提供商 - name: {}, type: {}, apiKey: {}, baseUrl: {}, model: {}", endpoint.getName(),
+                    endpoint.getType(), maskedApiKey, endpoint.getBaseUrl(), endpoint.getModel());
+        }
+        for (LlmTask task : LlmTask.values()) {
+            log.info("AI路由 - {}: {}", task, routeNames(task));
+            // Prompt按路由中所有可用端点的最小上下文窗口打包，对冲和故障转移时同样不超限
+            List<LlmProviderProperties.Endpoint> routed = new ArrayList<>();
+            for (String name : routeNames(task)) {
+                ProviderState state = providers.get(name);
+                if (state != null && state.provider.isConfigured()) {
+                    routed.add(endpointsByName.get(name));
+                }
+            }
+            tokenEstimator.registerRoute(task, routed);
+        }
+
+        if (!hasConfiguredProvider()) {
+            log.warn("⚠️ AI API Key未配置或使用默认值，将返回模拟分析结果");
+            log.warn("⚠️ 请在IDEA运行配置中设置环境变量: AI_API_KEY=your-actual-api-key");
+        } else {
+            log.info("✅ AI API Key已配置，将使用真实的AI服务");
+        }
+
+        hedgeTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "llm-hedge");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hedgeTimer.shutdownNow();
+    }
+
+    private LlmProvider createProvider(LlmProviderProperties.Endpoint endpoint) {
+        int endpointMaxTokens = endpoint.getMaxTokens() != null ? endpoint.getMaxTokens() : maxTokens;
+        double endpointTemperature = endpoint.getTemperature() != null ? endpoint.getTemperature() : temperature;
+        // 共享连接池和Dispatcher，按端点设置读取超时
+        OkHttpClient client = httpClient.newBuilder()
+                .readTimeout(endpoint.getTimeoutMs(), TimeUnit.MILLISECONDS)
+                .build();
+        if ("openai".equals(endpoint.getType())) {
+            return new OpenAiCompatibleProvider(endpoint, endpointMaxTokens, endpointTemperature, client, tokenEstimator);
+        } else if ("anthropic".equals(endpoint.getType())) {
+            return new AnthropicProvider(endpoint, endpointMaxTokens, endpointTemperature, client, tokenEstimator);
+        }
+        throw new IllegalStateException("不支持的AI提供商: " + endpoint.getType());
+    }
+
+    /**
+     * 是否有配置了API Key的端点（都未配置时返回模拟结果）
+     */
+    public boolean hasConfiguredProvider() {
+        for (ProviderState state : providers.values()) {
+            if (state.provider.isConfigured()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 调用类型的首选端点名称
+     */
+    public String getProviderName(LlmTask task) {
+        List<ProviderState> route = route(task, false);
+        return route.isEmpty() ? defaultProvider : route.get(0).provider.getName();
+    }
+
+    /**
+     * 调用类型的首选模型名称。实际回答的模型可能是对冲或故障转移的端点，以 LlmReply.getModel() 为准
+     */
+    public String getModelName(LlmTask task) {
+        List<ProviderState> route = route(task, false);
+        return route.isEmpty() ? defaultModel : route.get(0).provider.getModel();
+    }
+
+    /**
+     * 调用类型的首选端点标识（端点名:模型），查找响应缓存和分段摘要时使用；写入时使用实际回答的端点
+     */
+    public String getModelKey(LlmTask task) {
+        List<ProviderState> route = route(task, false);
+        return route.isEmpty() ? defaultProvider + ":" + defaultModel
+                : route.get(0).provider.getName() + ":" + route.get(0).provider.getModel();
+    }
+
+    /**
+     * 按路由调用：经调度器排队，失败时故障转移，用户等待中的请求超过首选端点的延迟分位数时发出对冲请求
+     */
+    public CompletableFuture<LlmReply> execute(LlmTask task, String prompt, LlmPriority priority) {
+        List<ProviderState> route = route(task, true);
+        if (route.isEmpty()) {
+            return failed(new IllegalStateException("没有可用的AI提供商: " + task));
+        }
+        boolean hedge = properties.getRouting().getHedge().isEnabled()
+                && priority == LlmPriority.INTERACTIVE && route.size() > 1;
+        RoutedCall call = new RoutedCall(task, route, prompt, priority, hedge);
+        call.launch();
+        return call.result;
+    }
+
+    /**
+     * 流式调用：无法合并两个流，不做对冲；首个片段输出前失败时故障转移到下一个端点
+     */
+    public CompletableFuture<LlmReply> stream(LlmTask task, String prompt, LlmPriority priority,
+                                              LlmProvider.TokenConsumer onToken, AtomicReference<Call> currentCall,
+                                              AtomicBoolean cancelled) {
+        List<ProviderState> route = route(task, true);
+        if (route.isEmpty()) {
+            return failed(new IllegalStateException("没有可用的AI提供商: " + task));
+        }
+        return streamAt(route, 0, prompt, priority, onToken, currentCall, cancelled);
+    }
+
+    private CompletableFuture<LlmReply> streamAt(List<ProviderState> route, int index, String prompt,
+                                                 LlmPriority priority, LlmProvider.TokenConsumer onToken,
+                                                 AtomicReference<Call> currentCall, AtomicBoolean cancelled) {
+        ProviderState state = route.get(index);
+        AtomicBoolean emitted = new AtomicBoolean();
+        state.requests.incrementAndGet();
+        // 流式请求同样经过调度器排队，占用并发名额直到流结束；429发生在首个片段之前，可安全重试
+        return llmRequestScheduler.submit(state.provider.getName(), priority, () -> {
+            if (cancelled.get()) {
+                throw new IOException("客户端已取消");
+            }
+            return state.provider.stream(prompt, token -> {
+                emitted.set(true);
+                onToken.accept(token);
+            }, currentCall);
+        }).handle((reply, error) -> {
+            if (error == null) {
+                return CompletableFuture.completedFuture(reply);
+            }
+            Throwable cause = unwrap(error);
+            if (cancelled.get()) {
+                return LlmRouter.<LlmReply>failed(cause);
+            }
+            state.onFailure(cause);
+            if (!emitted.get() && isFailover(cause) && index + 1 < route.size()) {
+                state.failovers.incrementAndGet();
+                log.warn("AI提供商 {} 流式调用失败，转移到 {}: {}", state.provider.getName(),
+                        route.get(index + 1).provider.getName(), cause.getMessage());
+                return streamAt(route, index + 1, prompt, priority, onToken, currentCall, cancelled);
+            }
+            return LlmRouter.<LlmReply>failed(cause);
+        }).thenCompose(next -> next);
+    }
+
+    /**
+     * 各端点的请求数、失败数、对冲和故障转移次数、延迟分位数及暂停状态
+     */
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (ProviderState state : providers.values()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("name", state.provider.getName());
+            item.put("model", state.provider.getModel());
+            item.put("configured", state.provider.isConfigured());
+            item.put("requests", state.requests.get());
+            item.put("failures", state.failures.get());
+            item.put("hedges", state.hedges.get());
+            item.put("failovers", state.failovers.get());
+            item.put("p50Ms", state.latency.percentile(50));
+            item.put("p95Ms", state.latency.percentile(95));
+            item.put("hedgeDelayMs", hedgeDelay(state));
+            item.put("suspended", state.isSuspended());
+            stats.add(item);
+        }
+        return stats;
+    }
+
+    /**
+     * 调用类型的端点列表：只包含已配置API Key的端点；skipSuspended时跳过暂停中的端点（全部暂停时仍按原顺序尝试）
+     */
+    private List<ProviderState> route(LlmTask task, boolean skipSuspended) {
+        List<ProviderState> route = new ArrayList<>();
+        List<ProviderState> suspended = new ArrayList<>();
+        for (String name : routeNames(task)) {
+            ProviderState state = providers.get(name);
+            if (state == null || !state.provider.isConfigured()) {
+                continue;
+            }
+            (skipSuspended && state.isSuspended() ? suspended : route).add(state);
+        }
+        route.addAll(suspended);
+        return route;
+    }
+
+    private List<String> routeNames(LlmTask task) {
+        LlmProviderProperties.Routing routing = properties.getRouting();
+        List<String> names = task == LlmTask.QA ? routing.getQa()
+                : task == LlmTask.ANALYSIS ? routing.getAnalysis() : routing.getSummary();
+        if (names == null || names.isEmpty()) {
+            return new ArrayList<>(providers.keySet());
+        }
+        return names;
+    }
+
+    private long hedgeDelay(ProviderState state) {
+        LlmProviderProperties.Hedge hedge = properties.getRouting().getHedge();
+        if (state.latency.size() < hedge.getMinSamples()) {
+            return hedge.getInitialDelayMs();
+        }
+        return Math.max(hedge.getMinDelayMs(), state.latency.percentile(hedge.getPercentile()));
+    }
+
+    /**
+     * 是否转移到下一个端点：5xx、402余额不足、408、429（调度器重试耗尽后）以及网络错误和超时
+     */
+    private static boolean isFailover(Throwable error) {
+        if (error instanceof LlmHttpException) {
+            int status = ((LlmHttpException) error).getStatusCode();
+            return status >= 500 || status == 402 || status == 408 || status == 429;
+        }
+        return error instanceof IOException;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+
+    /**
+     * 一次路由调用：依次尝试路由中的端点，同时进行的尝试（对冲）中先成功者胜出
+     */
+    private class RoutedCall {
+        private final LlmTask task;
+        private final List<ProviderState> route;
+        private final String prompt;
+        private final LlmPriority priority;
+        private final boolean hedge;
+        private final CompletableFuture<LlmReply> result = new CompletableFuture<>();
+        private final List<CompletableFuture<LlmReply>> attempts = new CopyOnWriteArrayList<>();
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicBoolean hedgeScheduled = new AtomicBoolean();
+
+        RoutedCall(LlmTask task, List<ProviderState> route, String prompt, LlmPriority priority, boolean hedge) {
+            this.task = task;
+            this.route = route;
+            this.prompt = prompt;
+            this.priority = priority;
+            this.hedge = hedge;
+            // 调用方取消时取消所有进行中的尝试
+            result.whenComplete((reply, error) -> {
+                if (result.isCancelled()) {
+                    cancelAttempts(null);
+                }
+            });
+        }
+
+        /**
+         * 向下一个端点发出请求，没有剩余端点时返回false
+         */
+        boolean launch() {
+            int index = next.getAndIncrement();
+            if (index >= route.size()) {
+                return false;
+            }
+            ProviderState state = route.get(index);
+            state.requests.incrementAndGet();
+            running.incrementAndGet();
+            CompletableFuture<LlmReply> attempt;
+            try {
+                attempt = llmRequestScheduler.submitAsync(state.provider.getName(), priority, () -> {
+                    // 从实际发出请求开始计时，排队时间不计入延迟统计和对冲等待
+                    long start = System.currentTimeMillis();
+                    if (hedge && index == 0 && hedgeScheduled.compareAndSet(false, true)) {
+                        scheduleHedge(state);
+                    }
+                    CompletableFuture<LlmReply> reply = state.provider.complete(prompt);
+                    reply.whenComplete((completed, error) -> {
+                        if (error == null) {
+                            state.latency.record(System.currentTimeMillis() - start);
+                        }
+                    });
+                    return reply;
+                });
+            } catch (RuntimeException e) {
+                // 排队已满等
+                attempt = failed(e);
+            }
+            attempts.add(attempt);
+            CompletableFuture<LlmReply> current = attempt;
+            attempt.whenComplete((reply, error) -> onAttempt(state, current, reply, error));
+            return true;
+        }
+
+        private void scheduleHedge(ProviderState primary) {
+            long delay = hedgeDelay(primary);
+            hedgeTimer.schedule(() -> {
+                if (!result.isDone() && launch()) {
+                    primary.hedges.incrementAndGet();
+                    log.info("AI提供商 {} 超过{}ms未返回，发出对冲请求: task={}, 对冲端点={}", primary.provider.getName(),
+                            delay, task, route.get(1).provider.getName());
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        private void onAttempt(ProviderState state, CompletableFuture<LlmReply> attempt, LlmReply reply, Throwable error) {
+            int stillRunning = running.decrementAndGet();
+            if (error == null) {
+                if (result.complete(reply)) {
+                    cancelAttempts(attempt);
+                }
+                return;
+            }
+            if (result.isDone() || attempt.isCancelled()) {
+                return;
+            }
+            Throwable cause = unwrap(error);
+            state.onFailure(cause);
+            if (isFailover(cause)) {
+                if (launch()) {
+                    state.failovers.incrementAndGet();
+                    log.warn("AI提供商 {} 调用失败，转移到下一个端点: task={}, error={}",
+                            state.provider.getName(), task, cause.getMessage());
+                    return;
+                }
+            }
+            // 没有可转移的端点，且没有进行中的对冲请求时失败
+            if (stillRunning == 0) {
+                result.completeExceptionally(cause);
+            }
+        }
+
+        private void cancelAttempts(CompletableFuture<LlmReply> winner) {
+            for (CompletableFuture<LlmReply> attempt : attempts) {
+                if (attempt != winner) {
+                    attempt.cancel(false);
+                }
+            }
+        }
+    }
+
+    private class ProviderState {
+        private final LlmProvider provider;
+        private final LatencyWindow latency = new LatencyWindow(200);
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong hedges = new AtomicLong();
+        private final AtomicLong failovers = new AtomicLong();
+        private volatile long suspendedUntil;
+
+        ProviderState(LlmProvider provider) {
+            this.provider = provider;
+        }
+
+        void onFailure(Throwable error) {
+            failures.incrementAndGet();
+            if (error instanceof LlmHttpException && ((LlmHttpException) error).getStatusCode() == 402) {
+                long suspendMs = properties.getRouting().getSuspendMs();
+                suspendedUntil = System.currentTimeMillis() + suspendMs;
+                log.warn("AI提供商 {} 余额不足，暂停使用{}秒", provider.getName(), suspendMs / 1000);
+            }
+        }
+
+        boolean isSuspended() {
+            return System.currentTimeMillis() < suspendedUntil;
+        }
+    }
+
+    /**
+     * 最近N次成功调用的延迟
+     */
+    private static class LatencyWindow {
+        private final long[] samples;
+        private int count;
+        private int nextIndex;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        synchronized void record(long latencyMs) {
+            samples[nextIndex] = latencyMs;
+            nextIndex = (nextIndex + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        synchronized int size() {
+            return count;
+        }
+
+        synchronized long percentile(int percent) {
+            if (count == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percent / 100.0 * count) - 1;
+            return sorted[Math.max(0, Math.min(index, count - 1))];
+        }
+    }
+}
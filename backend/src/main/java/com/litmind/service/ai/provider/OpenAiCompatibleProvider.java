@@ -0,0 +1,78 @@
+package com.litmind.service.ai.provider;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.litmind.service.ai.LlmReply;
+import com.litmind.service.ai.TokenEstimator;
+import com.litmind.service.ai.TokenUsage;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * OpenAI兼容接口（OpenAI、DeepSeek、OpenRouter、Ollama等）的 /chat/completions
+ */
+public class OpenAiCompatibleProvider extends HttpLlmProvider {
+
+    public OpenAiCompatibleProvider(LlmProviderProperties.Endpoint endpoint, int maxTokens, double temperature,
+                                    OkHttpClient httpClient, TokenEstimator tokenEstimator) {
+        super(endpoint, maxTokens, temperature, httpClient, tokenEstimator);
+    }
+
+    @Override
+    protected Request buildRequest(String prompt, boolean streaming) throws IOException {
+        String requestBody = objectMapper.writeValueAsString(new Object() {
+            public final String model = endpoint.getModel();
+            public final Object[] messages = new Object[]{
+                    new Object() {
+                        public final String role = "user";
+                        public final String content = prompt;
+                    }
+            };
+            public final int max_tokens = maxTokens;
+            public final double temperature = OpenAiCompatibleProvider.this.temperature;
+            public final boolean stream = streaming;
+            // 流式响应默认不含usage，需显式请求在最后一个事件中返回
+            @JsonInclude(JsonInclude.Include.NON_NULL)
+            public final Map<String, Object> stream_options = streaming
+                    ? Collections.<String, Object>singletonMap("include_usage", true) : null;
+        });
+
+        return new Request.Builder()
+                .url(endpoint.getBaseUrl() + "/chat/completions")
+                .header("Authorization", "Bearer " + endpoint.getApiKey())
+                .header("Content-Type", "application/json")
+                .post(RequestBody.create(requestBody, MediaType.get("application/json")))
+                .build();
+    }
+
+    @Override
+    protected LlmReply parseReply(JsonNode body) throws IOException {
+        if (!body.has("choices") || body.get("choices").size() == 0) {
+            throw new IOException("OpenAI API响应格式错误: " + body);
+        }
+        String content = body.get("choices").get(0).get("message").get("content").asText();
+        return new LlmReply(content, body.path("usage").isObject() ? parseUsage(body.path("usage")) : null);
+    }
+
+    @Override
+    protected String streamDelta(JsonNode event) {
+        JsonNode delta = event.path("choices").path(0).path("delta").path("content");
+        return delta.isTextual() ? delta.asText() : null;
+    }
+
+    @Override
+    protected TokenUsage streamUsage(JsonNode event, TokenUsage usage) {
+        // 请求了 include_usage 时，最后一个事件携带整次请求的usage
+        return event.path("usage").isObject() ? parseUsage(event.path("usage")) : usage;
+    }
+
+    private static TokenUsage parseUsage(JsonNode usage) {
+        return new TokenUsage(usage.path("prompt_tokens").asInt(), usage.path("completion_tokens").asInt());
+    }
+}
@@ -0,0 +1,694 @@
+package com.litmind.service.ai.vector;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 进程内近似最近邻向量索引（HNSW）
+ * 向量按槽位顺序写入内存映射文件（不占用堆内存），槽位对应的 fileId/chunkId 写入元数据文件；
+ * 图结构只保存在内存中，启动时由后台线程根据元数据重建。删除只做标记，查询时跳过；
+ * 已删除的向量超过一定比例时在后台压缩：只保留有效向量重写文件，并重建图结构
+ */
+@Component
+@Slf4j
+public class ChunkVectorIndex {
+
+    /**
+     * 元数据记录：fileId(8) + chunkId(8) + 删除标记(1)
+     */
+    private static final int META_RECORD_BYTES = 17;
+
+    /**
+     * 已删除的向量少于该数量时不压缩，避免小索引频繁重写
+     */
+    private static final int COMPACT_MIN_DELETED = 1024;
+
+    private final EmbeddingProvider embeddingProvider;
+    private final int dimension;
+
+    @Value("${ai.vector.data-dir:}")
+    private String dataDirConfig;
+
+    @Value("${file.storage.local.path:./uploads}")
+    private String storagePath;
+
+    @Value("${ai.vector.segment-vectors:65536}")
+    private int segmentVectors;
+
+    @Value("${ai.vector.compact-deleted-ratio:0.3}")
+    private double compactDeletedRatio;
+
+    @Value("${ai.vector.hnsw.m:16}")
+    private int m;
+
+    @Value("${ai.vector.hnsw.ef-construction:100}")
+    private int efConstruction;
+
+    @Value("${ai.vector.hnsw.ef-search:64}")
+    private int efSearch;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    private Path vectorPath;
+    private Path metaPath;
+    private FileChannel vectorChannel;
+    private RandomAccessFile metaFile;
+    private final List<FloatBuffer> segments = new ArrayList<>();
+    private final List<MappedByteBuffer> mappedSegments = new ArrayList<>();
+
+    private int size;
+    private int deletedCount;
+    private long[] fileIds = new long[1024];
+    private long[] chunkIds = new long[1024];
+    private boolean[] deleted = new boolean[1024];
+    private final Map<Long, List<Integer>> fileSlots = new HashMap<>();
+
+    /**
+     * links[slot][level] = {邻居数, 邻居1, 邻居2, ...}；未加入图的槽位为null
+     */
+    private int[][][] links = new int[1024][][];
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private double levelMultiplier;
+
+    private final ThreadLocal<VisitedSet> visitedSets = ThreadLocal.withInitial(VisitedSet::new);
+
+    public ChunkVectorIndex(EmbeddingProvider embeddingProvider) {
+        this.embeddingProvider = embeddingProvider;
+        this.dimension = embeddingProvider.dimension();
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        // 默认放在PDF本地存储目录旁（./uploads -> ./vectors），不放临时目录，避免重启或系统清理后全量重新向量化
+        Path dataDir = dataDirConfig == null || dataDirConfig.isEmpty()
+                ? Paths.get(storagePath).toAbsolutePath().normalize().resolveSibling("vectors")
+                : Paths.get(dataDirConfig);
+        Files.createDirectories(dataDir);
+        // 文件名包含向量化方式和维度，切换实现后不会读到不兼容的向量
+        String baseName = embeddingProvider.name() + "-" + dimension;
+        vectorPath = dataDir.resolve(baseName + ".vec");
+        metaPath = dataDir.resolve(baseName + ".meta");
+        levelMultiplier = 1 / Math.log(m);
+
+        openFiles();
+        loadMeta();
+        log.info("向量索引已加载: dir={}, embedding={}, 向量数={}, 已删除={}, 有效文件数={}",
+                dataDir, baseName, size, deletedCount, fileSlots.size());
+        if (shouldCompact()) {
+            // 启动时图结构尚未重建，压缩只需重写文件
+            compactLocked();
+        }
+
+        // 重建图结构耗时与向量数成正比，放在后台进行；重建期间单篇论文内的检索不受影响
+        Thread rebuild = new Thread(this::rebuildGraph, "vector-index-rebuild");
+        rebuild.setDaemon(true);
+        rebuild.start();
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            for (MappedByteBuffer segment : mappedSegments) {
+                segment.force();
+            }
+            if (vectorChannel != null) {
+                vectorChannel.close();
+            }
+            if (metaFile != null) {
+                metaFile.close();
+            }
+        } catch (IOException e) {
+            log.warn("关闭向量索引文件失败: {}", e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 写入一篇论文的分块向量（先删除该论文已有的向量）
+     */
+    public void upsert(long fileId, List<Long> chunkIdList, List<float[]> vectors) throws IOException {
+        lock.writeLock().lock();
+        try {
+            deleteLocked(fileId);
+            List<Integer> slots = new ArrayList<>(chunkIdList.size());
+            for (int i = 0; i < chunkIdList.size(); i++) {
+                int slot = appendLocked(fileId, chunkIdList.get(i), vectors.get(i));
+                insertIntoGraph(slot);
+                slots.add(slot);
+            }
+            fileSlots.put(fileId, slots);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        scheduleCompaction();
+    }
+
+    public void delete(long fileId) throws IOException {
+        lock.writeLock().lock();
+        try {
+            deleteLocked(fileId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        scheduleCompaction();
+    }
+
+    public boolean contains(long fileId) {
+        lock.readLock().lock();
+        try {
+            return fileSlots.containsKey(fileId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 全库近似检索最相似的k个分块
+     */
+    public List<Hit> search(float[] query, int k) {
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return Collections.emptyList();
+            }
+            int live = size - deletedCount;
+            if (live <= 0) {
+                return Collections.emptyList();
+            }
+            int current = entryPoint;
+            for (int level = maxLevel; level > 0; level--) {
+                current = greedyClosest(query, current, level);
+            }
+            // 已删除的节点仍在图中并占用候选位置，按删除比例放大ef；有效结果仍不足k个时继续加倍，直到覆盖全部节点
+            int ef = (int) Math.min(size, (long) Math.ceil((double) Math.max(efSearch, k) * size / live));
+            while (true) {
+                PriorityQueue<Candidate> found = searchLayer(query, current, ef, 0);
+                List<Candidate> sorted = new ArrayList<>(found);
+                sorted.sort((left, right) -> Float.compare(right.similarity, left.similarity));
+                List<Hit> hits = new ArrayList<>(k);
+                for (Candidate candidate : sorted) {
+                    if (hits.size() >= k) {
+                        break;
+                    }
+                    if (!deleted[candidate.slot]) {
+                        hits.add(toHit(candidate));
+                    }
+                }
+                if (hits.size() >= Math.min(k, live) || ef >= size) {
+                    return hits;
+                }
+                ef = (int) Math.min(size, (long) ef * 2);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 在单篇论文的分块内精确检索（论文分块数很少，直接逐个计算）
+     */
+    public List<Hit> searchInFile(long fileId, float[] query, int k) {
+        lock.readLock().lock();
+        try {
+            List<Integer> slots = fileSlots.get(fileId);
+            if (slots == null) {
+                return Collections.emptyList();
+            }
+            List<Candidate> candidates = new ArrayList<>(slots.size());
+            for (int slot : slots) {
+                candidates.add(new Candidate(slot, similarity(slot, query)));
+            }
+            candidates.sort((left, right) -> Float.compare(right.similarity, left.similarity));
+            List<Hit> hits = new ArrayList<>(Math.min(k, candidates.size()));
+            for (int i = 0; i < candidates.size() && i < k; i++) {
+                hits.add(toHit(candidates.get(i)));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    // ========== 存储 ==========
+
+    private void openFiles() throws IOException {
+        vectorChannel = FileChannel.open(vectorPath,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        metaFile = new RandomAccessFile(metaPath.toFile(), "rw");
+    }
+
+    private void loadMeta() throws IOException {
+        int count = (int) (metaFile.length() / META_RECORD_BYTES);
+        long vectorCount = vectorChannel.size() / ((long) dimension * Float.BYTES);
+        // 向量先于元数据写入，元数据条数为准
+        count = (int) Math.min(count, vectorCount);
+        byte[] buffer = new byte[count * META_RECORD_BYTES];
+        metaFile.seek(0);
+        metaFile.readFully(buffer);
+        ByteBuffer records = ByteBuffer.wrap(buffer);
+        for (int slot = 0; slot < count; slot++) {
+            ensureCapacity(slot + 1);
+            fileIds[slot] = records.getLong();
+            chunkIds[slot] = records.getLong();
+            deleted[slot] = records.get() != 0;
+            if (deleted[slot]) {
+                deletedCount++;
+            } else {
+                fileSlots.computeIfAbsent(fileIds[slot], key -> new ArrayList<>()).add(slot);
+            }
+        }
+        size = count;
+        while ((long) segments.size() * segmentVectors < size) {
+            mapSegment();
+        }
+    }
+
+    private int appendLocked(long fileId, long chunkId, float[] vector) throws IOException {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("向量维度不匹配: " + vector.length + " != " + dimension);
+        }
+        int slot = size;
+        ensureCapacity(slot + 1);
+        while ((long) segments.size() * segmentVectors <= slot) {
+            mapSegment();
+        }
+        FloatBuffer segment = segments.get(slot / segmentVectors);
+        int base = (slot % segmentVectors) * dimension;
+        for (int i = 0; i < dimension; i++) {
+            segment.put(base + i, vector[i]);
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(META_RECORD_BYTES);
+        record.putLong(fileId).putLong(chunkId).put((byte) 0);
+        metaFile.seek((long) slot * META_RECORD_BYTES);
+        metaFile.write(record.array());
+
+        fileIds[slot] = fileId;
+        chunkIds[slot] = chunkId;
+        deleted[slot] = false;
+        size = slot + 1;
+        return slot;
+    }
+
+    private void deleteLocked(long fileId) throws IOException {
+        List<Integer> slots = fileSlots.remove(fileId);
+        if (slots == null) {
+            return;
+        }
+        for (int slot : slots) {
+            deleted[slot] = true;
+            metaFile.seek((long) slot * META_RECORD_BYTES + 16);
+            metaFile.write(1);
+        }
+        deletedCount += slots.size();
+    }
+
+    private boolean shouldCompact() {
+        return deletedCount >= COMPACT_MIN_DELETED && deletedCount > size * compactDeletedRatio;
+    }
+
+    private void scheduleCompaction() {
+        if (!shouldCompact() || !compacting.compareAndSet(false, true)) {
+            return;
+        }
+        Thread compact = new Thread(this::compact, "vector-index-compact");
+        compact.setDaemon(true);
+        compact.start();
+    }
+
+    private void compact() {
+        try {
+            lock.writeLock().lock();
+            try {
+                if (!shouldCompact()) {
+                    return;
+                }
+                compactLocked();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            // 压缩后槽位重新编号，图结构需重建；重建期间单篇论文内的检索不受影响
+            rebuildGraph();
+        } catch (IOException e) {
+            log.warn("压缩向量索引失败: {}", e.getMessage());
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    /**
+     * 将有效向量按原顺序写入新文件后替换原文件，并清空图结构
+     */
+    private void compactLocked() throws IOException {
+        long start = System.currentTimeMillis();
+        int before = size;
+        Path vectorTemp = vectorPath.resolveSibling(vectorPath.getFileName() + ".compact");
+        Path metaTemp = metaPath.resolveSibling(metaPath.getFileName() + ".compact");
+        try (FileChannel vectorOut = FileChannel.open(vectorTemp,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+             FileChannel metaOut = FileChannel.open(metaTemp,
+                     StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING,
+                     StandardOpenOption.WRITE)) {
+            ByteBuffer vectorBuffer = ByteBuffer.allocate(dimension * Float.BYTES);
+            ByteBuffer record = ByteBuffer.allocate(META_RECORD_BYTES);
+            for (int slot = 0; slot < size; slot++) {
+                if (deleted[slot]) {
+                    continue;
+                }
+                vectorBuffer.clear();
+                vectorBuffer.asFloatBuffer().put(vector(slot));
+                writeFully(vectorOut, vectorBuffer);
+                record.clear();
+                record.putLong(fileIds[slot]).putLong(chunkIds[slot]).put((byte) 0);
+                record.flip();
+                writeFully(metaOut, record);
+            }
+            vectorOut.force(true);
+            metaOut.force(true);
+        }
+
+        vectorChannel.close();
+        metaFile.close();
+        segments.clear();
+        mappedSegments.clear();
+        try {
+            // 先删除原元数据：替换中途失败时索引为空，论文在下次访问时补写向量
+            Files.deleteIfExists(metaPath);
+            Files.move(vectorTemp, vectorPath, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(metaTemp, metaPath, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            openFiles();
+            size = 0;
+            deletedCount = 0;
+            fileIds = new long[1024];
+            chunkIds = new long[1024];
+            deleted = new boolean[1024];
+            links = new int[1024][][];
+            fileSlots.clear();
+            entryPoint = -1;
+            maxLevel = -1;
+            loadMeta();
+        }
+        log.info("向量索引已压缩: 向量数 {} -> {}, 耗时={}ms", before, size, System.currentTimeMillis() - start);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void mapSegment() throws IOException {
+        long segmentBytes = (long) segmentVectors * dimension * Float.BYTES;
+        MappedByteBuffer mapped = vectorChannel.map(FileChannel.MapMode.READ_WRITE,
+                segments.size() * segmentBytes, segmentBytes);
+        mappedSegments.add(mapped);
+        segments.add(mapped.asFloatBuffer());
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= fileIds.length) {
+            return;
+        }
+        int capacity = Math.max(required, fileIds.length * 2);
+        fileIds = Arrays.copyOf(fileIds, capacity);
+        chunkIds = Arrays.copyOf(chunkIds, capacity);
+        deleted = Arrays.copyOf(deleted, capacity);
+        links = Arrays.copyOf(links, capacity);
+    }
+
+    private float similarity(int slot, float[] query) {
+        FloatBuffer segment = segments.get(slot / segmentVectors);
+        int base = (slot % segmentVectors) * dimension;
+        float dot = 0;
+        for (int i = 0; i < dimension; i++) {
+            dot += segment.get(base + i) * query[i];
+        }
+        return dot;
+    }
+
+    private float[] vector(int slot) {
+        FloatBuffer segment = segments.get(slot / segmentVectors);
+        int base = (slot % segmentVectors) * dimension;
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = segment.get(base + i);
+        }
+        return vector;
+    }
+
+    private Hit toHit(Candidate candidate) {
+        return new Hit(fileIds[candidate.slot], chunkIds[candidate.slot], candidate.similarity);
+    }
+
+    // ========== HNSW图 ==========
+
+    private void rebuildGraph() {
+        long start = System.currentTimeMillis();
+        int rebuilt = 0;
+        int slot = 0;
+        while (true) {
+            lock.writeLock().lock();
+            try {
+                // 分批持有写锁，重建期间查询和写入仍可穿插进行
+                int batchEnd = Math.min(size, slot + 1000);
+                for (; slot < batchEnd; slot++) {
+                    if (!deleted[slot] && links[slot] == null) {
+                        insertIntoGraph(slot);
+                        rebuilt++;
+                    }
+                }
+                if (slot >= size) {
+                    break;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        log.info("向量索引图结构重建完成: 节点数={}, 耗时={}ms", rebuilt, System.currentTimeMillis() - start);
+    }
+
+    private void insertIntoGraph(int slot) {
+        int level = (int) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * levelMultiplier);
+        int[][] nodeLinks = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            nodeLinks[l] = new int[maxNeighbors(l) + 1];
+        }
+        links[slot] = nodeLinks;
+
+        if (entryPoint < 0) {
+            entryPoint = slot;
+            maxLevel = level;
+            return;
+        }
+
+        float[] query = vector(slot);
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedyClosest(query, current, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            PriorityQueue<Candidate> found = searchLayer(query, current, efConstruction, l);
+            List<Candidate> nearest = new ArrayList<>(found);
+            nearest.sort((left, right) -> Float.compare(right.similarity, left.similarity));
+            for (int i = 0; i < nearest.size() && i < m; i++) {
+                int neighbor = nearest.get(i).slot;
+                addLink(slot, neighbor, l);
+                addLink(neighbor, slot, l);
+            }
+            if (!nearest.isEmpty()) {
+                current = nearest.get(0).slot;
+            }
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = slot;
+        }
+    }
+
+    private int maxNeighbors(int level) {
+        return level == 0 ? m * 2 : m;
+    }
+
+    /**
+     * 添加一条有向边，邻居已满时保留与节点最相似的邻居
+     */
+    private void addLink(int from, int to, int level) {
+        int[] neighbors = links[from][level];
+        int count = neighbors[0];
+        if (count < neighbors.length - 1) {
+            neighbors[count + 1] = to;
+            neighbors[0] = count + 1;
+            return;
+        }
+        float[] base = vector(from);
+        int weakest = -1;
+        float weakestSimilarity = similarity(to, base);
+        for (int i = 1; i <= count; i++) {
+            float s = similarity(neighbors[i], base);
+            if (s < weakestSimilarity) {
+                weakestSimilarity = s;
+                weakest = i;
+            }
+        }
+        if (weakest > 0) {
+            neighbors[weakest] = to;
+        }
+    }
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float best = similarity(current, query);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbors = links[current][level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                float s = similarity(neighbors[i], query);
+                if (s > best) {
+                    best = s;
+                    current = neighbors[i];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 在指定层做束搜索，返回最相似的ef个节点（小顶堆，堆顶为其中最不相似的）
+     */
+    private PriorityQueue<Candidate> searchLayer(float[] query, int entry, int ef, int level) {
+        VisitedSet visited = visitedSets.get();
+        visited.reset(size);
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>((left, right) -> Float.compare(right.similarity, left.similarity));
+        PriorityQueue<Candidate> results = new PriorityQueue<>((left, right) -> Float.compare(left.similarity, right.similarity));
+
+        Candidate first = new Candidate(entry, similarity(entry, query));
+        visited.add(entry);
+        candidates.add(first);
+        results.add(first);
+        while (!candidates.isEmpty()) {
+            Candidate candidate = candidates.poll();
+            if (results.size() >= ef && candidate.similarity < results.peek().similarity) {
+                break;
+            }
+            int[][] nodeLinks = links[candidate.slot];
+            if (nodeLinks == null || nodeLinks.length <= level) {
+                continue;
+            }
+            int[] neighbors = nodeLinks[level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int neighbor = neighbors[i];
+                if (!visited.add(neighbor)) {
+                    continue;
+                }
+                float s = similarity(neighbor, query);
+                if (results.size() < ef || s > results.peek().similarity) {
+                    Candidate next = new Candidate(neighbor, s);
+                    candidates.add(next);
+                    results.add(next);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private static class Candidate {
+        private final int slot;
+        private final float similarity;
+
+        Candidate(int slot, float similarity) {
+            this.slot = slot;
+            this.similarity = similarity;
+        }
+    }
+
+    /**
+     * 按代数标记已访问节点，避免每次查询分配和清空数组
+     */
+    private static class VisitedSet {
+        private int[] marks = new int[0];
+        private int generation;
+
+        void reset(int capacity) {
+            if (marks.length < capacity) {
+                marks = new int[Math.max(capacity, marks.length * 2)];
+                generation = 0;
+            }
+            generation++;
+            if (generation == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        boolean add(int slot) {
+            if (marks[slot] == generation) {
+                return false;
+            }
+            marks[slot] = generation;
+            return true;
+        }
+    }
+
+    /**
+     * 检索结果
+     */
+    public static class Hit {
+        private final long fileId;
+        private final long chunkId;
+        private final float score;
+
+        public Hit(long fileId, long chunkId, float score) {
+            this.fileId = fileId;
+            this.chunkId = chunkId;
+            this.score = score;
+        }
+
+        public long getFileId() { return fileId; }
+        public long getChunkId() { return chunkId; }
+        public float getScore() { return score; }
+    }
+}
@@ -0,0 +1,148 @@
+package com.litmind.service.ai.vector;
+
+import com.litmind.model.entity.PdfTextChunk;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 论文分块语义检索
+ * 分块入库后在后台向量化写入索引，文件删除时同步删除；问答时在单篇论文内检索，推荐时可全库检索
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChunkVectorService {
+
+    private final EmbeddingProvider embeddingProvider;
+    private final ChunkVectorIndex chunkVectorIndex;
+    private final TaskExecutor taskExecutor;
+
+    /**
+     * 等待或正在写入索引的论文及其最新分块，同一论文只排队一个写入任务
+     */
+    private final Map<Long, List<PdfTextChunk>> pending = new ConcurrentHashMap<>();
+
+    @Value("${ai.vector.enabled:true}")
+    private boolean enabled;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 在后台向量化并写入一篇论文的分块（分块需已持久化，带有id）
+     * 该论文已在排队或写入中时不重复提交；分块已重新切分时由排队中的任务写入最新分块
+     */
+    public void indexChunks(Long fileId, List<PdfTextChunk> chunks) {
+        if (!enabled) {
+            return;
+        }
+        boolean[] submit = {false};
+        pending.compute(fileId, (key, queued) -> {
+            if (queued == null) {
+                submit[0] = true;
+                return chunks;
+            }
+            return sameChunks(queued, chunks) ? queued : chunks;
+        });
+        if (!submit[0]) {
+            return;
+        }
+        try {
+            taskExecutor.execute(() -> indexPending(fileId));
+        } catch (TaskRejectedException e) {
+            pending.remove(fileId);
+            log.warn("提交向量索引任务失败: fileId={}, error={}", fileId, e.getMessage());
+        }
+    }
+
+    private void indexPending(Long fileId) {
+        List<PdfTextChunk> chunks = pending.get(fileId);
+        while (chunks != null) {
+            try {
+                writeIndex(fileId, chunks);
+            } finally {
+                // 写入期间提交了新的分块时继续写入最新分块，否则（含失败）结束，下次访问时重试
+                chunks = pending.remove(fileId, chunks) ? null : pending.get(fileId);
+            }
+        }
+    }
+
+    private void writeIndex(Long fileId, List<PdfTextChunk> chunks) {
+        try {
+            long start = System.currentTimeMillis();
+            List<Long> chunkIds = new ArrayList<>(chunks.size());
+            List<float[]> vectors = new ArrayList<>(chunks.size());
+            for (PdfTextChunk chunk : chunks) {
+                if (chunk.getId() == null) {
+                    return;
+                }
+                chunkIds.add(chunk.getId());
+                vectors.add(embeddingProvider.embed(chunk.getText()));
+            }
+            chunkVectorIndex.upsert(fileId, chunkIds, vectors);
+            log.debug("论文分块向量已写入索引: fileId={}, 分块数={}, 耗时={}ms",
+                    fileId, chunks.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            // 向量索引只用于增强检索，失败不影响问答
+            log.warn("写入向量索引失败: fileId={}, error={}", fileId, e.getMessage());
+        }
+    }
+
+    private boolean sameChunks(List<PdfTextChunk> left, List<PdfTextChunk> right) {
+        if (left.size() != right.size()) {
+            return false;
+        }
+        for (int i = 0; i < left.size(); i++) {
+            Long leftId = left.get(i).getId();
+            if (leftId == null || !leftId.equals(right.get(i).getId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isIndexed(Long fileId) {
+        return enabled && chunkVectorIndex.contains(fileId);
+    }
+
+    public void deleteFile(Long fileId) {
+        // 尚未开始的写入任务不再写入已删除的论文
+        pending.remove(fileId);
+        try {
+            chunkVectorIndex.delete(fileId);
+        } catch (Exception e) {
+            log.warn("删除向量索引失败: fileId={}, error={}", fileId, e.getMessage());
+        }
+    }
+
+    /**
+     * 在单篇论文的分块中检索与文本最相似的k个分块
+     */
+    public List<ChunkVectorIndex.Hit> searchInFile(Long fileId, String text, int k) {
+        if (!enabled) {
+            return Collections.emptyList();
+        }
+        return chunkVectorIndex.searchInFile(fileId, embeddingProvider.embed(text), k);
+    }
+
+    /**
+     * 在全部论文的分块中近似检索与文本最相似的k个分块
+     */
+    public List<ChunkVectorIndex.Hit> search(String text, int k) {
+        if (!enabled) {
+            return Collections.emptyList();
+        }
+        return chunkVectorIndex.search(embeddingProvider.embed(text), k);
+    }
+}
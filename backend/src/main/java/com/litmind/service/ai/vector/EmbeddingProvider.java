@@ -0,0 +1,17 @@
+package com.litmind.service.ai.vector;
+
+/**
+ * 文本向量化接口
+ * 实现需返回L2归一化的向量，索引以点积作为余弦相似度
+ */
+public interface EmbeddingProvider {
+
+    /**
+     * 向量化方式名称，与维度一起决定索引文件，切换实现后会使用新的索引
+     */
+    String name();
+
+    int dimension();
+
+    float[] embed(String text);
+}
@@ -0,0 +1,75 @@
+package com.litmind.service.ai.vector;
+
+import com.litmind.service.ai.ChunkRetriever;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 本地特征哈希向量化（无需外部模型，可离线使用）
+ * 词项与检索分词一致，按哈希映射到固定维度并带符号，权重为 1+log(tf)
+ */
+@Component
+@ConditionalOnProperty(name = "ai.vector.embedding", havingValue = "hashing", matchIfMissing = true)
+public class HashingEmbeddingProvider implements EmbeddingProvider {
+
+    private final int dimension;
+
+    public HashingEmbeddingProvider(@Value("${ai.vector.dimension:256}") int dimension) {
+        this.dimension = dimension;
+    }
+
+    @Override
+    public String name() {
+        return "hashing";
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : ChunkRetriever.tokenize(text)) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+
+        float[] vector = new float[dimension];
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            int hash = mix(entry.getKey().hashCode());
+            int bucket = Math.floorMod(hash, dimension);
+            // 用另一部分哈希位决定符号，减少哈希冲突带来的偏差
+            float sign = (hash >>> 31) == 0 ? 1f : -1f;
+            vector[bucket] += sign * (float) (1 + Math.log(entry.getValue()));
+        }
+
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < dimension; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    /**
+     * MurmurHash3的最终混合步骤，打散String.hashCode的低位规律
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
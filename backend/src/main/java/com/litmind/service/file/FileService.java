@@ -8,11 +8,20 @@ import com.litmind.repository.FileRepository;
 import com.litmind.repository.FolderRepository;
 import com.litmind.repository.UserRepository;
 import com.litmind.service.file.AttachmentService;
+import com.litmind.service.ai.vector.ChunkVectorService;
+import com.litmind.service.pdf.PdfMetadataProbe;
+import com.litmind.service.pdf.PdfPreflightService;
+import com.litmind.service.pdf.PdfTextStore;
+import com.litmind.service.pdf.PdfThumbnailService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.InputStream;
@@ -31,6 +40,11 @@ public class FileService {
     private final FolderRepository folderRepository;
     private final Optional<com.litmind.service.recommend.RecommendationService> recommendationService;
     private final AttachmentService attachmentService;
+    private final PdfTextStore pdfTextStore;
+    private final PdfPreflightService pdfPreflightService;
+    private final PdfThumbnailService pdfThumbnailService;
+    private final ChunkVectorService chunkVectorService;
+    private final TransactionTemplate transactionTemplate;
     
     @Autowired
     public FileService(
@@ -40,7 +54,12 @@ public class FileService {
             UserRepository userRepository,
             FolderRepository folderRepository,
             Optional<com.litmind.service.recommend.RecommendationService> recommendationService,
-            AttachmentService attachmentService) {
+            AttachmentService attachmentService,
+            PdfTextStore pdfTextStore,
+            PdfPreflightService pdfPreflightService,
+            PdfThumbnailService pdfThumbnailService,
+            ChunkVectorService chunkVectorService,
+            PlatformTransactionManager transactionManager) {
         this.fileRepository = fileRepository;
         this.fileStorageService = fileStorageService;
         this.kafkaTemplate = kafkaTemplate;
@@ -48,6 +67,11 @@ public class FileService {
         this.folderRepository = folderRepository;
         this.recommendationService = recommendationService;
         this.attachmentService = attachmentService;
+        this.pdfTextStore = pdfTextStore;
+        this.pdfPreflightService = pdfPreflightService;
+        this.pdfThumbnailService = pdfThumbnailService;
+        this.chunkVectorService = chunkVectorService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     public List<File> getUserFiles(Long userId, Long folderId) {
@@ -87,8 +111,16 @@ public class FileService {
         return fileRepository.findByUserIdAndFolderId(userId, folderId);
     }
 
-    @Transactional
-    public File uploadFile(Long userId, Long folderId, MultipartFile multipartFile, Boolean isPublic) {
+    /**
+     * 上传文件。MinIO上传和PDF预检在事务外进行，只有保存文件记录和附件时占用数据库连接
+     *
+     * @param previousVersionId 上一版本的文件ID（可选），分析时基于上一版本的分析结果增量更新
+     */
+    public File uploadFile(Long userId, Long folderId, MultipartFile multipartFile, Boolean isPublic,
+                           Long previousVersionId) {
+        if (previousVersionId != null && !fileRepository.findByIdAndUserId(previousVersionId, userId).isPresent()) {
+            throw new BusinessException(404, "上一版本文件不存在");
+        }
         try {
             // 生成唯一文件名
             String originalFilename = multipartFile.getOriginalFilename();
@@ -119,11 +151,21 @@ public class FileService {
             file.setIsPublic(isPublic != null ? isPublic : false);
             // 设置文件的部门ID
             file.setDepartmentId(user.getDepartmentId());
+            file.setPreviousVersionId(previousVersionId);
 
-            file = fileRepository.save(file);
-            
-            // 自动将文件添加为附件
-            attachmentService.addFileAttachment(file);
+            // 如果是PDF文件，预检文件头、加密、页数和文本层，并探测标题、作者、DOI（不提取全文）；
+            // 文档加载在PDF提取执行器中限时进行
+            if ("application/pdf".equals(multipartFile.getContentType())) {
+                applyPdfPreflight(file, multipartFile);
+            }
+
+            // 保存文件记录并自动将文件添加为附件
+            File unsaved = file;
+            file = transactionTemplate.execute(status -> {
+                File saved = fileRepository.save(unsaved);
+                attachmentService.addFileAttachment(saved);
+                return saved;
+            });
             
             final Long fileId = file.getId(); // 提取为final变量供lambda使用
 
@@ -138,8 +180,15 @@ public class FileService {
                 }
             });
 
-            // 如果是PDF文件，发送到Kafka进行异步分析（如果Kafka可用）
-            if ("application/pdf".equals(multipartFile.getContentType())) {
+            // 如果是PDF文件且能正常打开，事务提交后在后台生成缩略图
+            if ("application/pdf".equals(multipartFile.getContentType()) && isRenderable(file)) {
+                final String storedPath = file.getFilePath();
+                afterCommit(() -> pdfThumbnailService.generateThumbnails(fileId, storedPath));
+            }
+
+            // 如果是PDF文件且预检通过，发送到Kafka进行异步分析（如果Kafka可用）
+            if ("application/pdf".equals(multipartFile.getContentType())
+                    && PdfPreflightService.OK.equals(file.getPreflightStatus())) {
                 kafkaTemplate.ifPresent(template -> {
                     try {
                         template.send("pdf-analysis", String.valueOf(fileId));
@@ -157,11 +206,76 @@ public class FileService {
         }
     }
 
+    private void applyPdfPreflight(File file, MultipartFile multipartFile) {
+        try (InputStream inputStream = multipartFile.getInputStream()) {
+            PdfPreflightService.PreflightResult result = pdfPreflightService.check(inputStream);
+            file.setPreflightStatus(result.getStatus());
+            file.setPreflightMessage(result.getMessage() != null && result.getMessage().length() > 500
+                    ? result.getMessage().substring(0, 500) : result.getMessage());
+            PdfMetadataProbe.PdfMetadata metadata = result.getMetadata();
+            if (metadata != null) {
+                file.setTitle(metadata.getTitle());
+                file.setAuthors(metadata.getAuthors());
+                file.setDoi(metadata.getDoi());
+                file.setPageCount(metadata.getPageCount());
+            }
+            if (!result.isAnalyzable()) {
+                log.info("PDF预检未通过，跳过分析队列: fileName={}, status={}, message={}",
+                        multipartFile.getOriginalFilename(), result.getStatus(), result.getMessage());
+            }
+        } catch (Exception e) {
+            // 预检本身出错（临时文件读写失败、排队已满、超时等）不影响上传，按可分析处理，由后续提取得出结论
+            log.warn("PDF预检失败: fileName={}, error={}", multipartFile.getOriginalFilename(), e.getMessage());
+            file.setPreflightStatus(PdfPreflightService.OK);
+            file.setPreflightMessage("预检未完成: " + (e.getMessage() != null && e.getMessage().length() > 400
+                    ? e.getMessage().substring(0, 400) : e.getMessage()));
+        }
+    }
+
+    /**
+     * 损坏或加密的PDF无法渲染缩略图
+     */
+    private static boolean isRenderable(File file) {
+        return !PdfPreflightService.INVALID.equals(file.getPreflightStatus())
+                && !PdfPreflightService.ENCRYPTED.equals(file.getPreflightStatus());
+    }
+
     public File getFile(Long userId, Long fileId) {
         return fileRepository.findByIdAndUserId(fileId, userId)
                 .orElseThrow(() -> new BusinessException(404, "文件不存在"));
     }
 
+    /**
+     * 获取可阅读的文件：文件所有者，或同部门用户访问公共文件
+     */
+    public File getReadableFile(Long userId, Long fileId) {
+        File file = fileRepository.findById(fileId)
+                .orElseThrow(() -> new BusinessException(404, "文件不存在"));
+        if (!file.getUserId().equals(userId)) {
+            User user = userRepository.findById(userId)
+                    .orElseThrow(() -> new BusinessException(404, "用户不存在"));
+            boolean sameDepartmentPublic = Boolean.TRUE.equals(file.getIsPublic())
+                    && file.getDepartmentId() != null
+                    && file.getDepartmentId().equals(user.getDepartmentId());
+            if (!sameDepartmentPublic) {
+                throw new BusinessException(404, "文件不存在");
+            }
+        }
+        return file;
+    }
+
+    /**
+     * 获取缩略图：文件所有者或同部门的公共文件可访问；尚未生成时触发后台生成
+     */
+    public InputStream getThumbnail(Long userId, Long fileId, int page) {
+        File file = getReadableFile(userId, fileId);
+        if (file.getThumbnailCount() == null) {
+            pdfThumbnailService.generateThumbnails(file.getId(), file.getFilePath());
+            throw new BusinessException(404, "缩略图生成中，请稍后重试");
+        }
+        return pdfThumbnailService.getThumbnail(file, page);
+    }
+
     public InputStream downloadFile(String filePath) {
         return fileStorageService.downloadFile(filePath);
     }
@@ -178,10 +292,28 @@ public class FileService {
             log.error("删除MinIO文件失败: {}", e.getMessage(), e);
         }
 
+        // 删除缩略图、已提取的PDF文本和分块向量
+        pdfThumbnailService.deleteThumbnails(file);
+        pdfTextStore.delete(fileId);
+        chunkVectorService.deleteFile(fileId);
+
         // 删除数据库记录
         fileRepository.delete(file);
     }
 
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
     @Transactional
     public File updateFile(Long userId, Long fileId, String newName, Long newFolderId) {
         File file = fileRepository.findByIdAndUserId(fileId, userId)
@@ -88,6 +88,36 @@ public class FileStorageService {
         return objectName;
     }
 
+    /**
+     * 上传服务端生成的内容（如缩略图）
+     */
+    public String uploadBytes(byte[] data, String objectName, String contentType) {
+        try {
+            if ("local".equals(storageType)) {
+                Path filePath = Paths.get(localStoragePath).resolve(objectName);
+                Files.createDirectories(filePath.getParent());
+                Files.write(filePath, data);
+            } else {
+                if (!minioClient.isPresent() || !minioConfig.isPresent()) {
+                    throw new BusinessException(500, "MinIO客户端未配置");
+                }
+                ensureBucketExists();
+                minioClient.get().putObject(
+                        PutObjectArgs.builder()
+                                .bucket(minioConfig.get().getBucket())
+                                .object(objectName)
+                                .stream(new ByteArrayInputStream(data), data.length, -1)
+                                .contentType(contentType)
+                                .build()
+                );
+            }
+            return objectName;
+        } catch (Exception e) {
+            log.error("文件上传失败: {}", e.getMessage(), e);
+            throw new BusinessException(500, "文件上传失败: " + e.getMessage());
+        }
+    }
+
     public InputStream downloadFile(String objectName) {
         try {
             if ("local".equals(storageType)) {
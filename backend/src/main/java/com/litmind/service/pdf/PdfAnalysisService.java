@@ -1,20 +1,33 @@
 package com.litmind.service.pdf;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.litmind.common.exception.BusinessException;
 import com.litmind.model.entity.File;
 import com.litmind.model.entity.PdfAnalysis;
+import com.litmind.model.entity.PdfTextChunk;
 import com.litmind.repository.FileRepository;
 import com.litmind.repository.PdfAnalysisRepository;
+import com.litmind.service.ai.AiRequestContext;
 import com.litmind.service.ai.AiService;
+import com.litmind.service.ai.LlmPriority;
+import com.litmind.service.ai.vector.ChunkVectorService;
 import com.litmind.service.file.FileStorageService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @RequiredArgsConstructor
@@ -25,75 +38,276 @@ public class PdfAnalysisService {
     private final FileRepository fileRepository;
     private final FileStorageService fileStorageService;
     private final AiService aiService;
+    private final PdfTextStore pdfTextStore;
+    private final PdfDocumentLoader pdfDocumentLoader;
+    private final PdfExtractionExecutor pdfExtractionExecutor;
+    private final PdfSectionChunker pdfSectionChunker;
+    private final PdfTextNormalizer pdfTextNormalizer;
+    private final ChunkVectorService chunkVectorService;
+    private final PdfTaskExecutor pdfTaskExecutor;
+    private final PdfRevisionDiffer pdfRevisionDiffer;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${ai.analysis.incremental.enabled:true}")
+    private boolean incrementalEnabled;
+
+    /**
+     * 修改和新增内容超过新版本的该比例时不再增量更新，重新完整分析
+     */
+    @Value("${ai.analysis.incremental.max-changed-ratio:0.5}")
+    private double maxChangedRatio;
+
+    /**
+     * 正在后台补充常见问答的文件，避免重复提交
+     */
+    private final Set<Long> faqGenerating = ConcurrentHashMap.newKeySet();
 
     public PdfAnalysis getAnalysis(Long fileId) {
         return pdfAnalysisRepository.findByFileId(fileId)
                 .orElse(null);
     }
 
-    @Transactional
+    /**
+     * 获取分析时预生成的常见问答。分析已完成但没有问答的历史记录，在后台补充生成，本次返回空列表
+     */
+    public List<FaqItem> getFaq(Long fileId) {
+        PdfAnalysis analysis = pdfAnalysisRepository.findByFileId(fileId)
+                .orElseThrow(() -> new BusinessException(404, "分析记录不存在"));
+        if (!"COMPLETED".equals(analysis.getAnalysisStatus())) {
+            return new ArrayList<>();
+        }
+        if (analysis.getFaq() == null) {
+            generateFaqInBackground(fileId);
+            return new ArrayList<>();
+        }
+        return readFaq(analysis.getFaq());
+    }
+
+    /**
+     * 当前模型生成的常见问答，供问答复用匹配；没有或由其他模型生成时返回空列表
+     */
+    public List<FaqItem> findFaq(Long fileId, String model) {
+        return pdfAnalysisRepository.findByFileId(fileId)
+                .filter(analysis -> analysis.getFaq() != null && model.equals(analysis.getAnalysisModel()))
+                .map(analysis -> readFaq(analysis.getFaq()))
+                .orElseGet(ArrayList::new);
+    }
+
+    private void generateFaqInBackground(Long fileId) {
+        if (!faqGenerating.add(fileId)) {
+            return;
+        }
+        try {
+            File file = fileRepository.findById(fileId)
+                    .orElseThrow(() -> new BusinessException(404, "文件不存在"));
+            getPdfChunksAsync(file)
+                    .thenCompose(chunks -> aiService.generateFaqAsync(chunks, file.getUserId()))
+                    .whenComplete((faq, error) -> {
+                        faqGenerating.remove(fileId);
+                        if (error != null) {
+                            log.warn("补充常见问答失败: fileId={}, error={}", fileId, error.getMessage());
+                            return;
+                        }
+                        pdfAnalysisRepository.findByFileId(fileId).ifPresent(analysis -> {
+                            analysis.setFaq(writeFaq(faq));
+                            pdfAnalysisRepository.save(analysis);
+                            log.info("已补充常见问答: fileId={}, 问题{}个", fileId, faq.size());
+                        });
+                    });
+        } catch (RuntimeException e) {
+            // 预算不足、任务队列已满等，下次访问时重试
+            faqGenerating.remove(fileId);
+            log.warn("提交常见问答生成失败: fileId={}, error={}", fileId, e.getMessage());
+        }
+    }
+
+    private List<FaqItem> readFaq(String json) {
+        try {
+            return objectMapper.readValue(json, new TypeReference<List<FaqItem>>() {});
+        } catch (Exception e) {
+            log.warn("常见问答格式错误: {}", e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    private String writeFaq(List<FaqItem> faq) {
+        try {
+            return objectMapper.writeValueAsString(faq != null ? faq : new ArrayList<FaqItem>());
+        } catch (Exception e) {
+            log.warn("序列化常见问答失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 同步分析（Kafka后台任务使用），在当前线程等待异步分析完成
+     */
     public PdfAnalysis analyzePdf(Long fileId) {
+        try {
+            return analyzePdfAsync(fileId, null).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof BusinessException) {
+                throw (BusinessException) e.getCause();
+            }
+            throw new BusinessException(500, "PDF分析失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 异步分析：PDF解析在PDF任务执行器中执行，LLM调用异步等待，调用方线程只负责创建分析记录
+     *
+     * @param userId 发起分析的用户，用量计入该用户；为空时（后台任务）计入文件上传者
+     */
+    public CompletableFuture<PdfAnalysis> analyzePdfAsync(Long fileId, Long userId) {
         File file = fileRepository.findById(fileId)
                 .orElseThrow(() -> new BusinessException(404, "文件不存在"));
 
         // 检查是否已有分析结果
         PdfAnalysis existingAnalysis = pdfAnalysisRepository.findByFileId(fileId).orElse(null);
         if (existingAnalysis != null && "COMPLETED".equals(existingAnalysis.getAnalysisStatus())) {
-            return existingAnalysis;
+            return CompletableFuture.completedFuture(existingAnalysis);
         }
 
         // 创建或更新分析记录
-        PdfAnalysis analysis = existingAnalysis != null ? existingAnalysis : new PdfAnalysis();
-        analysis.setFileId(fileId);
-        analysis.setAnalysisStatus("PROCESSING");
+        PdfAnalysis pending = existingAnalysis != null ? existingAnalysis : new PdfAnalysis();
+        pending.setFileId(fileId);
+        pending.setAnalysisStatus("PROCESSING");
+        pending.setFailureReason(null);
+        PdfAnalysis analysis = pdfAnalysisRepository.save(pending);
 
-        if (existingAnalysis == null) {
-            analysis = pdfAnalysisRepository.save(analysis);
-        } else {
-            analysis = pdfAnalysisRepository.save(analysis);
+        // 调度优先级取自调用方线程（Kafka后台任务为BACKGROUND）
+        LlmPriority priority = AiRequestContext.getPriority();
+        Long billedUserId = userId != null ? userId : file.getUserId();
+        CompletableFuture<List<PdfTextChunk>> chunksReady;
+        try {
+            chunksReady = getPdfChunksAsync(file);
+        } catch (RuntimeException e) {
+            // PDF任务队列已满（503）等提交失败时记录失败原因，不留下停在PROCESSING的记录
+            throw analysisFailure(fileId, analysis, e);
         }
+        return chunksReady
+                // 调用AI服务生成分析，修订版本基于上一版本的分析增量更新
+                .thenCompose(chunks -> analyzeChunksAsync(file, chunks, billedUserId, priority))
+                .handle((result, error) -> {
+                    if (error != null) {
+                        throw analysisFailure(fileId, analysis,
+                                error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                    }
+                    // 保存分析结果
+                    analysis.setResearchBackground(result.getResearchBackground());
+                    analysis.setCoreContent(result.getCoreContent());
+                    analysis.setExperimentResults(result.getExperimentResults());
+                    analysis.setAdditionalInfo(result.getAdditionalInfo());
+                    // 同一次调用生成的常见问答；未解析出时保持为空，查询时在后台补充
+                    analysis.setFaq(result.getFaq() == null || result.getFaq().isEmpty() ? null : writeFaq(result.getFaq()));
+                    analysis.setAnalysisStatus("COMPLETED");
+                    analysis.setAnalysisModel(result.getAnalysisModel());
+                    analysis.setPromptTokens(result.getPromptTokens());
+                    analysis.setCompletionTokens(result.getCompletionTokens());
+                    analysis.setRevisedFromFileId(result.getRevisedFromFileId());
+                    return pdfAnalysisRepository.save(analysis);
+                });
+    }
 
-        try {
-            // 提取PDF文本
-            String pdfText = extractTextFromPdf(file.getFilePath());
+    /**
+     * 上一版本已有分析结果时，按分块差异只把修改、新增和删除的章节交给模型更新原分析；
+     * 没有上一版本、上一版本未分析、无法读取上一版本或改动过多时完整分析
+     */
+    private CompletableFuture<PdfAnalysisResult> analyzeChunksAsync(File file, List<PdfTextChunk> chunks,
+                                                                    Long userId, LlmPriority priority) {
+        Long previousId = file.getPreviousVersionId();
+        PdfAnalysis prior = incrementalEnabled && previousId != null
+                ? pdfAnalysisRepository.findByFileId(previousId)
+                        .filter(previous -> "COMPLETED".equals(previous.getAnalysisStatus()))
+                        .orElse(null)
+                : null;
+        File previousFile = prior != null ? fileRepository.findById(previousId).orElse(null) : null;
+        if (previousFile == null) {
+            return aiService.analyzePdfAsync(chunks, userId, priority);
+        }
 
-            // 调用AI服务生成分析
-            PdfAnalysisResult result = aiService.analyzePdf(pdfText);
+        return getPdfChunksAsync(previousFile)
+                .handle((previousChunks, error) -> {
+                    if (error != null) {
+                        log.warn("读取上一版本分块失败，完整分析: fileId={}, previousVersionId={}, error={}",
+                                file.getId(), previousId, error.getMessage());
+                        return null;
+                    }
+                    return pdfRevisionDiffer.diff(previousChunks, chunks);
+                })
+                .thenCompose(diff -> {
+                    if (diff == null) {
+                        return aiService.analyzePdfAsync(chunks, userId, priority);
+                    }
+                    log.info("修订版本差异: fileId={}, previousVersionId={}, 修改{}个, 新增{}个, 删除{}个, 未变{}个, 修改和新增{}字符, 删除{}字符, 原{}字符, 现{}字符",
+                            file.getId(), previousId, diff.count(PdfRevisionDiffer.MODIFIED),
+                            diff.count(PdfRevisionDiffer.ADDED), diff.count(PdfRevisionDiffer.REMOVED),
+                            diff.getUnchangedChunks(), diff.getChangedChars(), diff.getRemovedChars(),
+                            diff.getPreviousTotalChars(), diff.getTotalChars());
+                    if (!diff.hasChanges()) {
+                        // 内容未变（如仅重新导出），直接沿用上一版本的分析
+                        PdfAnalysisResult unchanged = toResult(prior);
+                        unchanged.setAnalysisModel(prior.getAnalysisModel());
+                        unchanged.setPromptTokens(0);
+                        unchanged.setCompletionTokens(0);
+                        unchanged.setRevisedFromFileId(previousId);
+                        return CompletableFuture.completedFuture(unchanged);
+                    }
+                    if (diff.getChangedRatio() > maxChangedRatio) {
+                        log.info("修订版本改动比例{}超过上限{}，完整分析: fileId={}",
+                                String.format("%.2f", diff.getChangedRatio()), maxChangedRatio, file.getId());
+                        return aiService.analyzePdfAsync(chunks, userId, priority);
+                    }
+                    return aiService.reviseAnalysisAsync(toResult(prior), diff, userId, priority)
+                            .thenApply(result -> {
+                                result.setRevisedFromFileId(previousId);
+                                return result;
+                            });
+                });
+    }
 
-            // 保存分析结果
-            analysis.setResearchBackground(result.getResearchBackground());
-            analysis.setCoreContent(result.getCoreContent());
-            analysis.setExperimentResults(result.getExperimentResults());
-            analysis.setAdditionalInfo(result.getAdditionalInfo());
-            analysis.setAnalysisStatus("COMPLETED");
-            analysis.setAnalysisModel(aiService.getModelName());
+    private PdfAnalysisResult toResult(PdfAnalysis analysis) {
+        PdfAnalysisResult result = new PdfAnalysisResult();
+        result.setResearchBackground(analysis.getResearchBackground());
+        result.setCoreContent(analysis.getCoreContent());
+        result.setExperimentResults(analysis.getExperimentResults());
+        result.setAdditionalInfo(analysis.getAdditionalInfo());
+        result.setFaq(analysis.getFaq() != null ? readFaq(analysis.getFaq()) : new ArrayList<>());
+        return result;
+    }
 
-            return pdfAnalysisRepository.save(analysis);
-        } catch (BusinessException e) {
+    /**
+     * 记录分析失败，并根据异常类型转换为更友好的业务异常
+     */
+    private BusinessException analysisFailure(Long fileId, PdfAnalysis analysis, Throwable e) {
+        log.error("PDF分析失败: fileId={}, error={}", fileId, e.getMessage(), e);
+        analysis.setAnalysisStatus("FAILED");
+        analysis.setFailureReason(truncateReason(e.getMessage()));
+        pdfAnalysisRepository.save(analysis);
+        if (e instanceof BusinessException) {
             // 业务异常直接抛出
-            log.error("PDF分析失败: fileId={}, error={}", fileId, e.getMessage(), e);
-            analysis.setAnalysisStatus("FAILED");
-            pdfAnalysisRepository.save(analysis);
-            throw e;
-        } catch (Exception e) {
-            log.error("PDF分析失败: fileId={}, error={}", fileId, e.getMessage(), e);
-            analysis.setAnalysisStatus("FAILED");
-            pdfAnalysisRepository.save(analysis);
-            // 根据异常类型返回更友好的错误信息
-            String errorMsg = e.getMessage();
-            if (errorMsg != null) {
-                if (errorMsg.contains("API Key") || errorMsg.contains("未配置")) {
-                    throw new BusinessException(400, "AI服务未配置，请设置AI_API_KEY环境变量");
-                } else if (errorMsg.contains("余额不足") || errorMsg.contains("Insufficient Balance")) {
-                    throw new BusinessException(402, "AI服务账户余额不足，请充值后重试。如需免费使用，可配置Ollama本地部署。");
-                } else if (errorMsg.contains("无效") || errorMsg.contains("已过期") || errorMsg.contains("401")) {
-                    throw new BusinessException(401, "AI API Key无效或已过期，请检查配置");
-                } else if (errorMsg.contains("频率过高") || errorMsg.contains("429")) {
-                    throw new BusinessException(429, "AI服务请求频率过高，请稍后重试");
-                }
+            return (BusinessException) e;
+        }
+        String errorMsg = e.getMessage();
+        if (errorMsg != null) {
+            if (errorMsg.contains("API Key") || errorMsg.contains("未配置")) {
+                return new BusinessException(400, "AI服务未配置，请设置AI_API_KEY环境变量");
+            } else if (errorMsg.contains("余额不足") || errorMsg.contains("Insufficient Balance")) {
+                return new BusinessException(402, "AI服务账户余额不足，请充值后重试。如需免费使用，可配置Ollama本地部署。");
+            } else if (errorMsg.contains("无效") || errorMsg.contains("已过期") || errorMsg.contains("401")) {
+                return new BusinessException(401, "AI API Key无效或已过期，请检查配置");
+            } else if (errorMsg.contains("频率过高") || errorMsg.contains("429")) {
+                return new BusinessException(429, "AI服务请求频率过高，请稍后重试");
             }
-            throw new BusinessException(500, "PDF分析失败: " + errorMsg);
         }
+        return new BusinessException(500, "PDF分析失败: " + errorMsg);
+    }
+
+    private static String truncateReason(String reason) {
+        if (reason == null) {
+            return null;
+        }
+        return reason.length() > 500 ? reason.substring(0, 500) : reason;
     }
 
     @Transactional
@@ -117,15 +331,84 @@ public class PdfAnalysisService {
         return pdfAnalysisRepository.save(analysis);
     }
 
-    public String extractTextFromPdf(String filePath) {
-        try (InputStream inputStream = fileStorageService.downloadFile(filePath);
-             PDDocument document = PDDocument.load(inputStream)) {
+    /**
+     * 获取文件的提取文本：已提取过则直接读取，否则解析PDF并写入文本存储
+     */
+    public String getPdfText(File file) {
+        // 预检未通过的文档（加密、扫描件、损坏等）不再下载解析
+        if (file.getPreflightStatus() != null && !PdfPreflightService.OK.equals(file.getPreflightStatus())) {
+            throw new BusinessException(400, "PDF无法分析: " + file.getPreflightMessage());
+        }
+
+        Optional<String> stored = pdfTextStore.load(file.getId());
+        if (stored.isPresent()) {
+            return stored.get();
+        }
+
+        // 提取后先规范化（去页眉页脚、断词、空白和参考文献），存储和后续Prompt都使用规范化文本
+        PdfTextNormalizer.NormalizedText normalized = pdfTextNormalizer.normalize(extractTextFromPdf(file.getFilePath()));
+        String text = normalized.getText();
+        log.info("PDF文本规范化: fileId={}, 原始{}字符, 节省{}字符", file.getId(),
+                normalized.getOriginalChars(), normalized.getSavedChars());
+        try {
+            pdfTextStore.save(file.getId(), text, normalized.getOriginalChars());
+        } catch (Exception e) {
+            // 并发提取时可能已被其他请求写入，不影响本次使用
+            log.warn("保存PDF文本失败: fileId={}, error={}", file.getId(), e.getMessage());
+        }
+        return text;
+    }
+
+    /**
+     * 在PDF任务执行器中获取章节分块，不阻塞调用方线程
+     */
+    public CompletableFuture<List<PdfTextChunk>> getPdfChunksAsync(File file) {
+        return pdfTaskExecutor.supply(() -> getPdfChunks(file));
+    }
+
+    /**
+     * 获取文件的章节分块（含分块文本），首次调用时切分并持久化分块偏移量
+     */
+    public List<PdfTextChunk> getPdfChunks(File file) {
+        String text = getPdfText(file);
+        List<PdfTextChunk> chunks = pdfTextStore.loadChunks(file.getId());
+        if (chunks.isEmpty() || chunks.get(chunks.size() - 1).getEndOffset() != text.length()) {
+            chunks = pdfSectionChunker.chunk(text);
+            try {
+                pdfTextStore.saveChunks(file.getId(), chunks);
+                // 分块入库后在后台写入向量索引
+                chunkVectorService.indexChunks(file.getId(), chunks);
+            } catch (Exception e) {
+                log.warn("保存PDF分块失败: fileId={}, error={}", file.getId(), e.getMessage());
+            }
+            return chunks;
+        }
+
+        for (PdfTextChunk chunk : chunks) {
+            chunk.setText(text.substring(chunk.getStartOffset(), chunk.getEndOffset()));
+        }
+        if (chunkVectorService.isEnabled() && !chunkVectorService.isIndexed(file.getId())) {
+            // 向量索引目录被清空或启用前已分块的论文，补写向量
+            chunkVectorService.indexChunks(file.getId(), chunks);
+        }
+        return chunks;
+    }
 
-            PDFTextStripper stripper = new PDFTextStripper();
-            return stripper.getText(document);
+    public String extractTextFromPdf(String filePath) {
+        Path pdfFile = null;
+        try {
+            try (InputStream inputStream = fileStorageService.downloadFile(filePath)) {
+                pdfFile = pdfDocumentLoader.spool(inputStream);
+            }
+            return pdfExtractionExecutor.extract(pdfFile);
+        } catch (BusinessException e) {
+            log.error("PDF文本提取失败: {}", e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("PDF文本提取失败: {}", e.getMessage(), e);
             throw new BusinessException(500, "PDF文本提取失败: " + e.getMessage());
+        } finally {
+            pdfDocumentLoader.deleteQuietly(pdfFile);
         }
     }
 
@@ -151,6 +434,11 @@ public class PdfAnalysisService {
         private String coreContent;
         private String experimentResults;
         private String additionalInfo;
+        private Integer promptTokens;
+        private Integer completionTokens;
+        private List<FaqItem> faq;
+        private Long revisedFromFileId;
+        private String analysisModel; // 实际生成分析的模型（可能是故障转移的端点）
 
         // Getters and Setters
         public String getResearchBackground() { return researchBackground; }
@@ -161,6 +449,35 @@ public class PdfAnalysisService {
         public void setExperimentResults(String experimentResults) { this.experimentResults = experimentResults; }
         public String getAdditionalInfo() { return additionalInfo; }
         public void setAdditionalInfo(String additionalInfo) { this.additionalInfo = additionalInfo; }
+        public Integer getPromptTokens() { return promptTokens; }
+        public void setPromptTokens(Integer promptTokens) { this.promptTokens = promptTokens; }
+        public Integer getCompletionTokens() { return completionTokens; }
+        public void setCompletionTokens(Integer completionTokens) { this.completionTokens = completionTokens; }
+        public List<FaqItem> getFaq() { return faq; }
+        public void setFaq(List<FaqItem> faq) { this.faq = faq; }
+        public Long getRevisedFromFileId() { return revisedFromFileId; }
+        public void setRevisedFromFileId(Long revisedFromFileId) { this.revisedFromFileId = revisedFromFileId; }
+        public String getAnalysisModel() { return analysisModel; }
+        public void setAnalysisModel(String analysisModel) { this.analysisModel = analysisModel; }
+    }
+
+    public static class FaqItem {
+        private String question;
+        private String answer;
+
+        public FaqItem() {
+        }
+
+        public FaqItem(String question, String answer) {
+            this.question = question;
+            this.answer = answer;
+        }
+
+        // Getters and Setters
+        public String getQuestion() { return question; }
+        public void setQuestion(String question) { this.question = question; }
+        public String getAnswer() { return answer; }
+        public void setAnswer(String answer) { this.answer = answer; }
     }
 }
 
@@ -0,0 +1,143 @@
+package com.litmind.service.pdf;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Semaphore;
+
+/**
+ * PDF文档加载器（内存受限模式）
+ * 先将PDF落盘为临时文件，再以"堆内存上限 + 临时文件溢出"的方式加载，
+ * 并通过全局内存预算限制同时驻留在堆上的文档字节数
+ */
+@Component
+@Slf4j
+public class PdfDocumentLoader {
+
+    private static final long KB = 1024L;
+    private static final long MB = 1024L * 1024L;
+
+    private final String tempDirConfig;
+    private final long maxMainMemoryMb;
+    private final long globalMemoryMb;
+
+    private Path tempDir;
+    private Semaphore memoryBudget;
+    private int memoryBudgetKb;
+
+    public PdfDocumentLoader(
+            @Value("${pdf.extraction.temp-dir:}") String tempDirConfig,
+            @Value("${pdf.extraction.max-main-memory-mb:64}") long maxMainMemoryMb,
+            @Value("${pdf.extraction.global-memory-mb:512}") long globalMemoryMb) {
+        this.tempDirConfig = tempDirConfig;
+        this.maxMainMemoryMb = maxMainMemoryMb;
+        this.globalMemoryMb = globalMemoryMb;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        tempDir = tempDirConfig == null || tempDirConfig.isEmpty()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "litmind-pdf")
+                : Paths.get(tempDirConfig);
+        Files.createDirectories(tempDir);
+        memoryBudgetKb = (int) Math.min(Integer.MAX_VALUE, globalMemoryMb * MB / KB);
+        memoryBudget = new Semaphore(memoryBudgetKb, true);
+        log.info("PDF加载器初始化 - tempDir: {}, 单文档堆内存上限: {}MB, 全局内存预算: {}MB",
+                tempDir, maxMainMemoryMb, globalMemoryMb);
+    }
+
+    /**
+     * 将PDF输入流写入临时文件，调用方负责通过 {@link #deleteQuietly(Path)} 删除
+     */
+    public Path spool(InputStream inputStream) throws IOException {
+        Path pdfFile = Files.createTempFile(tempDir, "pdf-", ".pdf");
+        try {
+            Files.copy(inputStream, pdfFile, StandardCopyOption.REPLACE_EXISTING);
+            return pdfFile;
+        } catch (IOException e) {
+            deleteQuietly(pdfFile);
+            throw e;
+        }
+    }
+
+    /**
+     * 以内存受限模式加载临时文件中的PDF
+     * 占用的全局预算按 min(文件大小, 单文档上限) 估算，文档关闭时归还
+     */
+    public LoadedDocument load(Path pdfFile) throws IOException {
+        long maxMainMemoryBytes = maxMainMemoryMb * MB;
+        long reservedBytes = Math.min(Files.size(pdfFile), maxMainMemoryBytes);
+        int reservedKb = (int) Math.min(memoryBudgetKb, Math.max(1L, reservedBytes / KB));
+
+        try {
+            memoryBudget.acquire(reservedKb);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待PDF内存预算时被中断");
+        }
+
+        try {
+            MemoryUsageSetting setting = MemoryUsageSetting.setupMixed(maxMainMemoryBytes)
+                    .setTempDir(tempDir.toFile());
+            PDDocument document = PDDocument.load(pdfFile.toFile(), setting);
+            return new LoadedDocument(document, reservedKb);
+        } catch (IOException | RuntimeException e) {
+            memoryBudget.release(reservedKb);
+            throw e;
+        }
+    }
+
+    public void deleteQuietly(Path pdfFile) {
+        if (pdfFile == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(pdfFile);
+        } catch (IOException e) {
+            log.warn("删除PDF临时文件失败: {}, error={}", pdfFile, e.getMessage());
+        }
+    }
+
+    /**
+     * 已加载的PDF文档，关闭时释放占用的内存预算
+     */
+    public final class LoadedDocument implements Closeable {
+        private final PDDocument document;
+        private final int reservedKb;
+        private boolean closed;
+
+        private LoadedDocument(PDDocument document, int reservedKb) {
+            this.document = document;
+            this.reservedKb = reservedKb;
+        }
+
+        public PDDocument getDocument() {
+            return document;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                document.close();
+            } finally {
+                memoryBudget.release(reservedKb);
+            }
+        }
+    }
+}
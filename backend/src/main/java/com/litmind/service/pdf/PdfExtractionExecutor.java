@@ -0,0 +1,284 @@
+package com.litmind.service.pdf;
+
+import com.litmind.common.exception.BusinessException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PDF文本提取隔离执行器
+ * 所有提取任务在独立的有界线程池中执行，并限制单个文档的耗时（从开始执行计时，排队时间不计入）；
+ * process模式下每个文档在子JVM中提取，超时或内存超限时直接结束子进程；
+ * thread模式下超时后置位取消标记，并行提取的分页任务在下一页之前结束；单页解析卡住时工作线程仍可能被占用，
+ * 此时补充一个工作线程（不超过上限），卡住的线程结束后再收回
+ */
+@Component
+@Slf4j
+public class PdfExtractionExecutor {
+
+    private static final int EXIT_OUT_OF_MEMORY = 3;
+
+    private final PdfTextExtractor pdfTextExtractor;
+
+    @Value("${pdf.extraction.workers:4}")
+    private int workers;
+
+    @Value("${pdf.extraction.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${pdf.extraction.timeout-seconds:120}")
+    private long timeoutSeconds;
+
+    @Value("${pdf.extraction.isolation:thread}")
+    private String isolation;
+
+    @Value("${pdf.extraction.max-replacement-workers:4}")
+    private int maxReplacementWorkers;
+
+    @Value("${pdf.extraction.process-max-heap-mb:512}")
+    private int processMaxHeapMb;
+
+    @Value("${pdf.extraction.temp-dir:}")
+    private String tempDirConfig;
+
+    @Value("${pdf.extraction.max-main-memory-mb:64}")
+    private long maxMainMemoryMb;
+
+    @Value("${pdf.extraction.parallel-threshold-pages:40}")
+    private int parallelThresholdPages;
+
+    @Value("${pdf.extraction.pages-per-task:16}")
+    private int pagesPerTask;
+
+    @Value("${pdf.extraction.parallelism:0}")
+    private int parallelism;
+
+    private ThreadPoolExecutor executor;
+
+    /**
+     * 为超时后仍未结束的任务补充的工作线程数
+     */
+    private int replacements;
+
+    public PdfExtractionExecutor(PdfTextExtractor pdfTextExtractor) {
+        this.pdfTextExtractor = pdfTextExtractor;
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "pdf-extract-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        log.info("PDF提取执行器初始化 - 模式: {}, 工作线程: {}, 队列容量: {}, 单文档超时: {}s",
+                isolation, workers, queueCapacity, timeoutSeconds);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 在隔离执行器中提取PDF文本，超时、内存超限或解析失败时抛出带原因的业务异常
+     */
+    public String extract(Path pdfFile) {
+        if ("process".equals(isolation)) {
+            // 子进程启动后开始计时，超时直接结束子进程
+            return run(() -> extractInChildProcess(pdfFile), false, null);
+        }
+        AtomicBoolean cancelled = new AtomicBoolean();
+        return run(() -> pdfTextExtractor.extract(pdfFile, cancelled), true, cancelled);
+    }
+
+    /**
+     * 在提取线程池中执行其他PDFBox任务（如上传预检），与提取共用并发上限和单文档时限
+     */
+    public <T> T call(Callable<T> task) {
+        return run(task, true, null);
+    }
+
+    /**
+     * @param cancelled 超时后置位，通知任务尽快结束；为null时只能尝试中断
+     */
+    private <T> T run(Callable<T> task, boolean timed, AtomicBoolean cancelled) {
+        CountDownLatch started = new CountDownLatch(1);
+        // 0: 执行中，1: 已结束，2: 超时后被放弃（已补充工作线程）
+        AtomicInteger state = new AtomicInteger();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                started.countDown();
+                try {
+                    return task.call();
+                } finally {
+                    if (!state.compareAndSet(0, 1)) {
+                        // 被放弃的任务最终结束，收回补充的工作线程
+                        resize(-1);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new BusinessException(503, "PDF解析队列已满，请稍后重试");
+        }
+
+        try {
+            if (!timed) {
+                return future.get();
+            }
+            // 排队等待空闲工作线程的时间不计入时限
+            started.await();
+            return future.get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            // 线程模式下PDFBox不响应中断：置位取消标记让分页任务结束；工作线程可能一直被占用，补充一个保持提取能力
+            if (cancelled != null) {
+                cancelled.set(true);
+            }
+            future.cancel(true);
+            abandon(state);
+            throw new BusinessException(500, "PDF解析超时（超过" + timeoutSeconds + "秒）");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new BusinessException(500, "PDF解析被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof BusinessException) {
+                throw (BusinessException) cause;
+            }
+            if (cause instanceof OutOfMemoryError) {
+                throw new BusinessException(500, "PDF解析内存超限");
+            }
+            throw new BusinessException(500, "PDF解析失败: " + cause.getMessage());
+        }
+    }
+
+    /**
+     * 放弃仍在执行的超时任务并补充一个工作线程；补充线程已达上限时不再补充，任务结束时也不收回
+     */
+    private synchronized void abandon(AtomicInteger state) {
+        if (replacements >= maxReplacementWorkers) {
+            log.warn("PDF提取任务超时后仍未结束，补充工作线程已达上限{}个，不再补充", maxReplacementWorkers);
+            return;
+        }
+        if (state.compareAndSet(0, 2)) {
+            resize(1);
+        }
+    }
+
+    /**
+     * 调整补充的工作线程数；增大时先调整最大线程数，减小时先调整核心线程数
+     */
+    private synchronized void resize(int delta) {
+        replacements += delta;
+        int size = workers + replacements;
+        if (delta > 0) {
+            executor.setMaximumPoolSize(size);
+            executor.setCorePoolSize(size);
+            log.warn("PDF提取任务超时后仍未结束，补充工作线程: 当前{}个（其中补充{}个）", size, replacements);
+        } else {
+            executor.setCorePoolSize(size);
+            executor.setMaximumPoolSize(size);
+            log.info("超时的PDF提取任务已结束，收回补充的工作线程: 当前{}个", size);
+        }
+    }
+
+    private String extractInChildProcess(Path pdfFile) throws IOException, InterruptedException {
+        Path outputFile = Files.createTempFile(pdfFile.getParent(), "text-", ".txt");
+        Path errorFile = Files.createTempFile(pdfFile.getParent(), "error-", ".log");
+        Process process = null;
+        try {
+            ProcessBuilder builder = new ProcessBuilder(buildCommand(pdfFile, outputFile));
+            builder.redirectErrorStream(true);
+            builder.redirectOutput(errorFile.toFile());
+            process = builder.start();
+
+            if (!process.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                throw new BusinessException(500, "PDF解析超时（超过" + timeoutSeconds + "秒）");
+            }
+            int exitCode = process.exitValue();
+            if (exitCode == EXIT_OUT_OF_MEMORY) {
+                throw new BusinessException(500, "PDF解析内存超限（超过" + processMaxHeapMb + "MB）");
+            }
+            if (exitCode != 0) {
+                throw new BusinessException(500, "PDF解析失败: " + readTail(errorFile));
+            }
+            return new String(Files.readAllBytes(outputFile), StandardCharsets.UTF_8);
+        } finally {
+            if (process != null && process.isAlive()) {
+                process.destroyForcibly();
+            }
+            Files.deleteIfExists(outputFile);
+            Files.deleteIfExists(errorFile);
+        }
+    }
+
+    /**
+     * 构建子进程命令；以Spring Boot可执行jar运行时通过PropertiesLauncher加载依赖
+     */
+    private List<String> buildCommand(Path pdfFile, Path outputFile) {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Xmx" + processMaxHeapMb + "m");
+        command.add("-XX:+ExitOnOutOfMemoryError");
+        command.add("-Djava.awt.headless=true");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        if (runningFromExecutableJar()) {
+            command.add("-Dloader.main=" + PdfExtractionWorker.class.getName());
+            command.add("org.springframework.boot.loader.PropertiesLauncher");
+        } else {
+            command.add(PdfExtractionWorker.class.getName());
+        }
+        command.add(pdfFile.toString());
+        command.add(outputFile.toString());
+        command.add(tempDirConfig == null || tempDirConfig.isEmpty()
+                ? pdfFile.getParent().toString()
+                : tempDirConfig);
+        command.add(String.valueOf(maxMainMemoryMb));
+        command.add(String.valueOf(parallelThresholdPages));
+        command.add(String.valueOf(pagesPerTask));
+        command.add(String.valueOf(parallelism));
+        return command;
+    }
+
+    private boolean runningFromExecutableJar() {
+        ClassLoader classLoader = PdfExtractionExecutor.class.getClassLoader();
+        return classLoader != null && classLoader.getClass().getName().startsWith("org.springframework.boot.loader");
+    }
+
+    private static String readTail(Path errorFile) throws IOException {
+        String error = new String(Files.readAllBytes(errorFile), StandardCharsets.UTF_8).trim();
+        if (error.isEmpty()) {
+            return "解析进程异常退出";
+        }
+        return error.length() > 300 ? error.substring(error.length() - 300) : error;
+    }
+}
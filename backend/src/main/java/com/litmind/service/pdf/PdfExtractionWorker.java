@@ -0,0 +1,44 @@
+package com.litmind.service.pdf;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 子进程PDF文本提取入口（由 {@link PdfExtractionExecutor} 以独立JVM启动）
+ * 参数：PDF文件 输出文件 临时目录 单文档堆内存上限MB 并行阈值页数 每任务页数 并行线程数
+ * 退出码：0成功，1参数错误，2提取失败；内存溢出时由 -XX:+ExitOnOutOfMemoryError 以3退出
+ */
+public final class PdfExtractionWorker {
+
+    private PdfExtractionWorker() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 7) {
+            System.err.println("用法: PdfExtractionWorker <pdf> <output> <tempDir> <maxMainMemoryMb> <parallelThresholdPages> <pagesPerTask> <parallelism>");
+            System.exit(1);
+        }
+        Path pdfFile = Paths.get(args[0]);
+        Path outputFile = Paths.get(args[1]);
+        long maxMainMemoryMb = Long.parseLong(args[3]);
+
+        PdfDocumentLoader loader = new PdfDocumentLoader(args[2], maxMainMemoryMb, maxMainMemoryMb * 4);
+        PdfTextExtractor extractor = new PdfTextExtractor(loader,
+                Integer.parseInt(args[4]), Integer.parseInt(args[5]), Integer.parseInt(args[6]));
+        try {
+            loader.init();
+            extractor.init();
+            String text = extractor.extract(pdfFile);
+            Files.write(outputFile, text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | RuntimeException e) {
+            System.err.println(e.getClass().getSimpleName() + ": " + e.getMessage());
+            System.exit(2);
+        } finally {
+            extractor.shutdown();
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,173 @@
+package com.litmind.service.pdf;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.pdmodel.common.PDMetadata;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * PDF元数据探测
+ * 只读取文档信息字典、XMP元数据和页数，不做文本提取，用于上传时快速获取标题、作者、DOI
+ */
+@Component
+@Slf4j
+public class PdfMetadataProbe {
+
+    private static final Pattern DOI = Pattern.compile("\\b(10\\.\\d{4,9}/[^\\s\"<>]+)");
+    private static final Pattern XMP_TITLE = Pattern.compile(
+            "<dc:title>.*?<rdf:li[^>]*>(.*?)</rdf:li>", Pattern.DOTALL);
+    private static final Pattern XMP_CREATOR = Pattern.compile(
+            "<dc:creator>(.*?)</dc:creator>", Pattern.DOTALL);
+    private static final Pattern XMP_LIST_ITEM = Pattern.compile("<rdf:li[^>]*>(.*?)</rdf:li>", Pattern.DOTALL);
+    private static final Pattern XMP_DOI = Pattern.compile(
+            "<(?:prism:doi|pdfx:doi|dc:identifier)[^>]*>(.*?)</(?:prism:doi|pdfx:doi|dc:identifier)>", Pattern.DOTALL);
+
+    /**
+     * 探测已加载文档的元数据
+     */
+    public PdfMetadata probe(PDDocument document) {
+        PdfMetadata metadata = new PdfMetadata();
+        metadata.setPageCount(document.getNumberOfPages());
+
+        String xmp = readXmp(document);
+        PDDocumentInformation info = document.getDocumentInformation();
+
+        String title = xmp != null ? firstMatch(XMP_TITLE, xmp) : null;
+        if (!isUsableTitle(title) && info != null) {
+            title = info.getTitle();
+        }
+        metadata.setTitle(isUsableTitle(title) ? limit(title.trim(), 500) : null);
+
+        String authors = xmp != null ? xmpAuthors(xmp) : null;
+        if (isBlank(authors) && info != null) {
+            authors = info.getAuthor();
+        }
+        metadata.setAuthors(isBlank(authors) ? null : limit(authors.trim(), 1000));
+
+        String doi = xmp != null ? findDoi(firstMatch(XMP_DOI, xmp)) : null;
+        if (doi == null && info != null) {
+            doi = findDoi(info.getSubject());
+            if (doi == null) {
+                doi = findDoi(info.getKeywords());
+            }
+            if (doi == null) {
+                doi = findDoi(info.getCustomMetadataValue("doi"));
+            }
+        }
+        metadata.setDoi(doi != null ? limit(doi, 255) : null);
+        return metadata;
+    }
+
+    private String readXmp(PDDocument document) {
+        try {
+            PDMetadata metadata = document.getDocumentCatalog().getMetadata();
+            if (metadata == null) {
+                return null;
+            }
+            try (InputStream xmpStream = metadata.exportXMPMetadata()) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                byte[] chunk = new byte[4096];
+                int read;
+                while ((read = xmpStream.read(chunk)) != -1) {
+                    buffer.write(chunk, 0, read);
+                }
+                return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+            }
+        } catch (Exception e) {
+            log.debug("读取XMP元数据失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private String xmpAuthors(String xmp) {
+        String creators = firstMatch(XMP_CREATOR, xmp);
+        if (creators == null) {
+            return null;
+        }
+        List<String> names = new ArrayList<>();
+        Matcher matcher = XMP_LIST_ITEM.matcher(creators);
+        while (matcher.find()) {
+            String name = unescape(matcher.group(1)).trim();
+            if (!name.isEmpty()) {
+                names.add(name);
+            }
+        }
+        return names.isEmpty() ? null : String.join(", ", names);
+    }
+
+    private static String firstMatch(Pattern pattern, String text) {
+        if (text == null) {
+            return null;
+        }
+        Matcher matcher = pattern.matcher(text);
+        return matcher.find() ? unescape(matcher.group(1)).trim() : null;
+    }
+
+    private static String findDoi(String text) {
+        if (text == null) {
+            return null;
+        }
+        Matcher matcher = DOI.matcher(text);
+        return matcher.find() ? matcher.group(1).replaceAll("[.,;)]+$", "") : null;
+    }
+
+    /**
+     * 过滤常见的无意义标题（如 "Microsoft Word - xxx.docx"、"untitled"）
+     */
+    private static boolean isUsableTitle(String title) {
+        if (isBlank(title)) {
+            return false;
+        }
+        String lower = title.trim().toLowerCase(Locale.ROOT);
+        return !lower.startsWith("microsoft word")
+                && !lower.equals("untitled")
+                && !lower.endsWith(".doc")
+                && !lower.endsWith(".docx")
+                && !lower.endsWith(".pdf")
+                && !lower.endsWith(".dvi")
+                && !lower.endsWith(".tex");
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    private static String limit(String value, int maxLength) {
+        return value.length() > maxLength ? value.substring(0, maxLength) : value;
+    }
+
+    private static String unescape(String xml) {
+        return xml.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+                .replace("&apos;", "'").replace("&amp;", "&");
+    }
+
+    /**
+     * PDF元数据探测结果
+     */
+    public static class PdfMetadata {
+        private String title;
+        private String authors;
+        private String doi;
+        private Integer pageCount;
+
+        // Getters and Setters
+        public String getTitle() { return title; }
+        public void setTitle(String title) { this.title = title; }
+        public String getAuthors() { return authors; }
+        public void setAuthors(String authors) { this.authors = authors; }
+        public String getDoi() { return doi; }
+        public void setDoi(String doi) { this.doi = doi; }
+        public Integer getPageCount() { return pageCount; }
+        public void setPageCount(Integer pageCount) { this.pageCount = pageCount; }
+    }
+}
@@ -0,0 +1,149 @@
+package com.litmind.service.pdf;
+
+import com.litmind.common.exception.BusinessException;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * PDF上传预检
+ * 在进入分析队列前检查文件头、加密、页数和可提取文本层，无法分析的文档直接记录状态，不再发送给消费者和LLM。
+ * 预检与元数据探测共用一次文档加载，加载在PDF提取执行器中进行（与提取共用并发上限和时限）。
+ * 只有文档本身无法解析时记为INVALID；等待内存预算被中断、临时文件读写失败、超时等基础设施问题抛出异常，由调用方按未知处理
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PdfPreflightService {
+
+    public static final String OK = "OK";
+    public static final String INVALID = "INVALID";
+    public static final String ENCRYPTED = "ENCRYPTED";
+    public static final String EMPTY = "EMPTY";
+    public static final String TOO_MANY_PAGES = "TOO_MANY_PAGES";
+    public static final String NO_TEXT = "NO_TEXT";
+
+    /**
+     * PDF规范允许文件头出现在前1024字节内
+     */
+    private static final int HEADER_SEARCH_BYTES = 1024;
+
+    private final PdfDocumentLoader pdfDocumentLoader;
+    private final PdfMetadataProbe pdfMetadataProbe;
+    private final PdfExtractionExecutor pdfExtractionExecutor;
+
+    @Value("${pdf.preflight.max-pages:500}")
+    private int maxPages;
+
+    @Value("${pdf.preflight.sample-pages:3}")
+    private int samplePages;
+
+    @Value("${pdf.preflight.min-text-chars:50}")
+    private int minTextChars;
+
+    /**
+     * @throws IOException       临时文件写入或读取失败
+     * @throws BusinessException 预检排队已满或超时
+     */
+    public PreflightResult check(InputStream inputStream) throws IOException {
+        Path pdfFile = pdfDocumentLoader.spool(inputStream);
+        try {
+            if (!hasPdfHeader(pdfFile)) {
+                return PreflightResult.of(INVALID, "文件头不是%PDF-，不是有效的PDF文件");
+            }
+            return pdfExtractionExecutor.call(() -> check(pdfFile));
+        } finally {
+            pdfDocumentLoader.deleteQuietly(pdfFile);
+        }
+    }
+
+    private PreflightResult check(Path pdfFile) throws IOException {
+        try (PdfDocumentLoader.LoadedDocument loaded = pdfDocumentLoader.load(pdfFile)) {
+            PDDocument document = loaded.getDocument();
+            PreflightResult result = checkDocument(document);
+            try {
+                result.setMetadata(pdfMetadataProbe.probe(document));
+            } catch (Exception e) {
+                // 元数据探测失败不影响预检结论
+                log.warn("PDF元数据探测失败: {}", e.getMessage());
+            }
+            return result;
+        } catch (InvalidPasswordException e) {
+            return PreflightResult.of(ENCRYPTED, "PDF已加密，需要密码才能打开");
+        } catch (InterruptedIOException | FileSystemException e) {
+            // 等待内存预算被中断、临时目录不可用等，与文档本身无关
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            return PreflightResult.of(INVALID, "PDF文件已损坏或无法解析: " + e.getMessage());
+        }
+    }
+
+    private PreflightResult checkDocument(PDDocument document) throws IOException {
+        int pages = document.getNumberOfPages();
+        if (pages == 0) {
+            return PreflightResult.of(EMPTY, "PDF没有页面");
+        }
+        if (pages > maxPages) {
+            return PreflightResult.of(TOO_MANY_PAGES, "PDF共" + pages + "页，超过分析上限" + maxPages + "页");
+        }
+
+        // 抽样前几页检查文本层，扫描件（纯图片）提取不到文字
+        PDFTextStripper stripper = new PDFTextStripper();
+        stripper.setStartPage(1);
+        stripper.setEndPage(Math.min(pages, samplePages));
+        String sample = stripper.getText(document);
+        int textChars = 0;
+        for (int i = 0; i < sample.length() && textChars < minTextChars; i++) {
+            if (Character.isLetterOrDigit(sample.charAt(i))) {
+                textChars++;
+            }
+        }
+        if (textChars < minTextChars) {
+            return PreflightResult.of(NO_TEXT, "PDF前" + Math.min(pages, samplePages) + "页没有可提取的文本，可能是扫描件");
+        }
+        return PreflightResult.of(OK, null);
+    }
+
+    private boolean hasPdfHeader(Path pdfFile) throws IOException {
+        byte[] head = new byte[HEADER_SEARCH_BYTES];
+        int length = 0;
+        try (InputStream in = Files.newInputStream(pdfFile)) {
+            int read;
+            while (length < head.length && (read = in.read(head, length, head.length - length)) != -1) {
+                length += read;
+            }
+        }
+        return new String(head, 0, length, StandardCharsets.ISO_8859_1).contains("%PDF-");
+    }
+
+    @Data
+    public static class PreflightResult {
+        private String status;
+        private String message;
+        private PdfMetadataProbe.PdfMetadata metadata;
+
+        static PreflightResult of(String status, String message) {
+            PreflightResult result = new PreflightResult();
+            result.setStatus(status);
+            result.setMessage(message);
+            return result;
+        }
+
+        public boolean isAnalyzable() {
+            return OK.equals(status);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.litmind.service.pdf;
+
+import com.litmind.common.util.HashUtil;
+import com.litmind.model.entity.PdfTextChunk;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 论文版本的分块级差异
+ * 按空白规范化后的分块内容哈希匹配新旧版本的分块，未匹配的新分块按章节标题（其次章节类型）与未匹配的旧分块配对为“修改”，
+ * 其余为“新增”或“删除”
+ */
+@Component
+public class PdfRevisionDiffer {
+
+    public static final String MODIFIED = "MODIFIED";
+    public static final String ADDED = "ADDED";
+    public static final String REMOVED = "REMOVED";
+
+    public RevisionDiff diff(List<PdfTextChunk> previous, List<PdfTextChunk> current) {
+        Map<String, Deque<PdfTextChunk>> previousByHash = new HashMap<>();
+        int previousTotalChars = 0;
+        for (PdfTextChunk chunk : previous) {
+            previousTotalChars += length(chunk);
+            previousByHash.computeIfAbsent(contentHash(chunk), key -> new ArrayDeque<>()).add(chunk);
+        }
+
+        List<PdfTextChunk> changed = new ArrayList<>();
+        int totalChars = 0;
+        for (PdfTextChunk chunk : current) {
+            totalChars += length(chunk);
+            Deque<PdfTextChunk> same = previousByHash.get(contentHash(chunk));
+            if (same != null && !same.isEmpty()) {
+                same.poll();
+            } else {
+                changed.add(chunk);
+            }
+        }
+        // 旧版本中未被匹配的分块，按原文顺序
+        List<PdfTextChunk> removed = new ArrayList<>();
+        for (Deque<PdfTextChunk> left : previousByHash.values()) {
+            removed.addAll(left);
+        }
+        removed.sort(Comparator.comparing(PdfTextChunk::getChunkIndex));
+
+        List<Change> changes = new ArrayList<>();
+        int changedChars = 0;
+        for (PdfTextChunk chunk : changed) {
+            PdfTextChunk before = takeCounterpart(removed, chunk);
+            changes.add(new Change(before != null ? MODIFIED : ADDED, before, chunk));
+            changedChars += length(chunk);
+        }
+        int removedChars = 0;
+        for (PdfTextChunk chunk : removed) {
+            changes.add(new Change(REMOVED, chunk, null));
+            removedChars += length(chunk);
+        }
+        return new RevisionDiff(changes, current.size() - changed.size(), changedChars, removedChars,
+                previousTotalChars, totalChars);
+    }
+
+    /**
+     * 从未匹配的旧分块中取出与新分块对应的一个：先按章节标题，再按章节类型
+     */
+    private static PdfTextChunk takeCounterpart(List<PdfTextChunk> removed, PdfTextChunk chunk) {
+        String heading = normalizeHeading(chunk.getHeading());
+        int sameType = -1;
+        for (int i = 0; i < removed.size(); i++) {
+            PdfTextChunk candidate = removed.get(i);
+            if (heading != null && heading.equals(normalizeHeading(candidate.getHeading()))) {
+                return removed.remove(i);
+            }
+            if (sameType < 0 && chunk.getSectionType().equals(candidate.getSectionType())) {
+                sameType = i;
+            }
+        }
+        return sameType >= 0 ? removed.remove(sameType) : null;
+    }
+
+    private static String normalizeHeading(String heading) {
+        return heading == null || heading.trim().isEmpty() ? null : heading.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String contentHash(PdfTextChunk chunk) {
+        String text = chunk.getText() != null ? chunk.getText() : "";
+        return HashUtil.sha256(text.replaceAll("\\s+", " ").trim());
+    }
+
+    private static int length(PdfTextChunk chunk) {
+        return chunk.getText() != null ? chunk.getText().length() : 0;
+    }
+
+    public static class RevisionDiff {
+        private final List<Change> changes;
+        private final int unchangedChunks;
+        private final int changedChars;
+        private final int removedChars;
+        private final int previousTotalChars;
+        private final int totalChars;
+
+        public RevisionDiff(List<Change> changes, int unchangedChunks, int changedChars, int removedChars,
+                            int previousTotalChars, int totalChars) {
+            this.changes = changes;
+            this.unchangedChunks = unchangedChunks;
+            this.changedChars = changedChars;
+            this.removedChars = removedChars;
+            this.previousTotalChars = previousTotalChars;
+            this.totalChars = totalChars;
+        }
+
+        public List<Change> getChanges() { return changes; }
+        public int getUnchangedChunks() { return unchangedChunks; }
+        public int getChangedChars() { return changedChars; }
+        public int getRemovedChars() { return removedChars; }
+        public int getPreviousTotalChars() { return previousTotalChars; }
+        public int getTotalChars() { return totalChars; }
+        public boolean hasChanges() { return !changes.isEmpty(); }
+
+        /**
+         * 改动内容（修改、新增和删除的字符）占新旧版本中较长者的比例，大段删除同样计入
+         */
+        public double getChangedRatio() {
+            int baseChars = Math.max(previousTotalChars, totalChars);
+            return baseChars == 0 ? 1.0 : Math.min(1.0, (double) (changedChars + removedChars) / baseChars);
+        }
+
+        public int count(String type) {
+            int count = 0;
+            for (Change change : changes) {
+                if (change.getType().equals(type)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    public static class Change {
+        private final String type;
+        private final PdfTextChunk before;
+        private final PdfTextChunk after;
+
+        public Change(String type, PdfTextChunk before, PdfTextChunk after) {
+            this.type = type;
+            this.before = before;
+            this.after = after;
+        }
+
+        public String getType() { return type; }
+        public PdfTextChunk getBefore() { return before; }
+        public PdfTextChunk getAfter() { return after; }
+
+        /**
+         * 章节名称：优先取新版本分块的标题
+         */
+        public String getSection() {
+            PdfTextChunk chunk = after != null ? after : before;
+            return chunk.getHeading() != null ? chunk.getHeading() : chunk.getSectionType();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.litmind.service.pdf;
+
+import com.litmind.model.entity.PdfTextChunk;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 论文章节分块器
+ * 识别摘要、引言、方法、实验、结论等章节标题，按章节切分提取文本，过长的章节再按行拆分
+ */
+@Component
+public class PdfSectionChunker {
+
+    public static final String FRONT = "FRONT";
+    public static final String ABSTRACT = "ABSTRACT";
+    public static final String INTRODUCTION = "INTRODUCTION";
+    public static final String RELATED_WORK = "RELATED_WORK";
+    public static final String METHOD = "METHOD";
+    public static final String EXPERIMENT = "EXPERIMENT";
+    public static final String DISCUSSION = "DISCUSSION";
+    public static final String CONCLUSION = "CONCLUSION";
+    public static final String REFERENCES = "REFERENCES";
+    public static final String APPENDIX = "APPENDIX";
+    public static final String OTHER = "OTHER";
+
+    private static final int MAX_HEADING_LINE_LENGTH = 80;
+
+    /**
+     * 章节编号前缀，如 "1"、"2.1."、"IV."、"第三章"、"三、"
+     */
+    private static final Pattern NUMBERING = Pattern.compile(
+            "^((?:\\d{1,2}(?:\\.\\d{1,2})*|[IVX]{1,5})[.)、]?\\s+|第[一二三四五六七八九十\\d]+[章节部分]\\s*|[一二三四五六七八九十]+[、.．]\\s*)");
+
+    /**
+     * 标题关键词 -> 章节类型（按匹配优先级排列，长关键词在前）
+     */
+    private static final Map<String, String> HEADING_KEYWORDS = new LinkedHashMap<>();
+
+    static {
+        HEADING_KEYWORDS.put("abstract", ABSTRACT);
+        HEADING_KEYWORDS.put("摘要", ABSTRACT);
+        HEADING_KEYWORDS.put("introduction", INTRODUCTION);
+        HEADING_KEYWORDS.put("引言", INTRODUCTION);
+        HEADING_KEYWORDS.put("绪论", INTRODUCTION);
+        HEADING_KEYWORDS.put("前言", INTRODUCTION);
+        HEADING_KEYWORDS.put("related work", RELATED_WORK);
+        HEADING_KEYWORDS.put("literature review", RELATED_WORK);
+        HEADING_KEYWORDS.put("background", RELATED_WORK);
+        HEADING_KEYWORDS.put("preliminaries", RELATED_WORK);
+        HEADING_KEYWORDS.put("相关工作", RELATED_WORK);
+        HEADING_KEYWORDS.put("研究现状", RELATED_WORK);
+        HEADING_KEYWORDS.put("文献综述", RELATED_WORK);
+        HEADING_KEYWORDS.put("methodology", METHOD);
+        HEADING_KEYWORDS.put("methods", METHOD);
+        HEADING_KEYWORDS.put("method", METHOD);
+        HEADING_KEYWORDS.put("proposed", METHOD);
+        HEADING_KEYWORDS.put("approach", METHOD);
+        HEADING_KEYWORDS.put("materials and methods", METHOD);
+        HEADING_KEYWORDS.put("研究方法", METHOD);
+        HEADING_KEYWORDS.put("方法", METHOD);
+        HEADING_KEYWORDS.put("模型", METHOD);
+        HEADING_KEYWORDS.put("experiments", EXPERIMENT);
+        HEADING_KEYWORDS.put("experimental", EXPERIMENT);
+        HEADING_KEYWORDS.put("experiment", EXPERIMENT);
+        HEADING_KEYWORDS.put("evaluation", EXPERIMENT);
+        HEADING_KEYWORDS.put("results", EXPERIMENT);
+        HEADING_KEYWORDS.put("实验", EXPERIMENT);
+        HEADING_KEYWORDS.put("结果", EXPERIMENT);
+        HEADING_KEYWORDS.put("discussion", DISCUSSION);
+        HEADING_KEYWORDS.put("limitations", DISCUSSION);
+        HEADING_KEYWORDS.put("讨论", DISCUSSION);
+        HEADING_KEYWORDS.put("conclusions", CONCLUSION);
+        HEADING_KEYWORDS.put("conclusion", CONCLUSION);
+        HEADING_KEYWORDS.put("concluding remarks", CONCLUSION);
+        HEADING_KEYWORDS.put("future work", CONCLUSION);
+        HEADING_KEYWORDS.put("结论", CONCLUSION);
+        HEADING_KEYWORDS.put("总结", CONCLUSION);
+        HEADING_KEYWORDS.put("结语", CONCLUSION);
+        HEADING_KEYWORDS.put("references", REFERENCES);
+        HEADING_KEYWORDS.put("bibliography", REFERENCES);
+        HEADING_KEYWORDS.put("参考文献", REFERENCES);
+        HEADING_KEYWORDS.put("appendix", APPENDIX);
+        HEADING_KEYWORDS.put("appendices", APPENDIX);
+        HEADING_KEYWORDS.put("supplementary", APPENDIX);
+        HEADING_KEYWORDS.put("附录", APPENDIX);
+        HEADING_KEYWORDS.put("acknowledgments", OTHER);
+        HEADING_KEYWORDS.put("acknowledgements", OTHER);
+        HEADING_KEYWORDS.put("致谢", OTHER);
+    }
+
+    @Value("${pdf.chunking.max-chunk-chars:2000}")
+    private int maxChunkChars;
+
+    /**
+     * 将提取文本切分为章节分块（分块只包含偏移量和章节信息，text字段一并填充）
+     */
+    public List<PdfTextChunk> chunk(String text) {
+        List<Section> sections = detectSections(text);
+        List<PdfTextChunk> chunks = new ArrayList<>();
+        for (Section section : sections) {
+            int start = section.start;
+            boolean first = true;
+            while (start < section.end) {
+                int end = splitPoint(text, start, section.end);
+                PdfTextChunk chunk = new PdfTextChunk();
+                chunk.setChunkIndex(chunks.size());
+                chunk.setSectionType(section.type);
+                chunk.setHeading(first ? section.heading : null);
+                chunk.setStartOffset(start);
+                chunk.setEndOffset(end);
+                chunk.setText(text.substring(start, end));
+                chunks.add(chunk);
+                start = end;
+                first = false;
+            }
+        }
+        return chunks;
+    }
+
+    private List<Section> detectSections(String text) {
+        List<Section> sections = new ArrayList<>();
+        Section current = new Section(FRONT, null, 0);
+        int lineStart = 0;
+        while (lineStart < text.length()) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = text.length();
+            }
+            String line = text.substring(lineStart, lineEnd).trim();
+            String type = headingType(line);
+            if (type != null && lineStart > current.start) {
+                current.end = lineStart;
+                sections.add(current);
+                current = new Section(type, truncate(line), lineStart);
+            } else if (type != null) {
+                current = new Section(type, truncate(line), lineStart);
+            }
+            lineStart = lineEnd + 1;
+        }
+        current.end = text.length();
+        if (current.end > current.start) {
+            sections.add(current);
+        }
+        return sections;
+    }
+
+    /**
+     * 判断一行是否为章节标题，返回章节类型；不是标题则返回null
+     * 无编号的行必须整行就是关键词（允许 "Abstract—..." 这类行内摘要）；有编号的行允许关键词后带少量修饰
+     */
+    static String headingType(String line) {
+        if (line.isEmpty() || line.length() > MAX_HEADING_LINE_LENGTH) {
+            return null;
+        }
+        Matcher matcher = NUMBERING.matcher(line);
+        boolean numbered = matcher.find();
+        String rest = (numbered ? line.substring(matcher.end()) : line).trim().toLowerCase(Locale.ROOT);
+        rest = rest.replaceAll("[:：.。]+$", "").trim();
+
+        for (Map.Entry<String, String> entry : HEADING_KEYWORDS.entrySet()) {
+            String keyword = entry.getKey();
+            if (!rest.startsWith(keyword)) {
+                continue;
+            }
+            String tail = rest.substring(keyword.length());
+            if (tail.isEmpty()) {
+                return entry.getValue();
+            }
+            if (ABSTRACT.equals(entry.getValue())
+                    && (tail.startsWith("—") || tail.startsWith("-") || tail.startsWith(":") || tail.startsWith("："))) {
+                return ABSTRACT;
+            }
+            // 有编号的标题：关键词后需是词边界（中文关键词除外），如 "3 Methods and Data"、"三、实验结果与分析"
+            if (numbered && tail.length() <= 40
+                    && (isCjk(keyword.charAt(0)) || !Character.isLetterOrDigit(tail.charAt(0)))) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 在 [start, sectionEnd) 内寻找分块结束位置，优先在换行处切分
+     */
+    private int splitPoint(String text, int start, int sectionEnd) {
+        if (sectionEnd - start <= maxChunkChars) {
+            return sectionEnd;
+        }
+        int limit = start + maxChunkChars;
+        int newline = text.lastIndexOf('\n', limit);
+        if (newline > start + maxChunkChars / 2) {
+            return newline + 1;
+        }
+        return limit;
+    }
+
+    private static boolean isCjk(char c) {
+        return Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+    }
+
+    private static String truncate(String heading) {
+        return heading.length() > 200 ? heading.substring(0, 200) : heading;
+    }
+
+    private static class Section {
+        private final String type;
+        private final String heading;
+        private final int start;
+        private int end;
+
+        Section(String type, String heading, int start) {
+            this.type = type;
+            this.heading = heading;
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.litmind.service.pdf;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * PDF文本提取引擎
+ * 页数较少时单线程提取；超过阈值时按页码区间拆分，在ForkJoin线程池中并行提取后按顺序拼接。
+ * 提取逐页进行，每页之前检查取消标记：超时后整棵任务树尽快结束，不再占用共享的ForkJoin线程
+ */
+@Component
+@Slf4j
+public class PdfTextExtractor {
+
+    private final PdfDocumentLoader pdfDocumentLoader;
+    private final int parallelThresholdPages;
+    private final int pagesPerTask;
+    private final int parallelism;
+
+    private ForkJoinPool extractionPool;
+
+    public PdfTextExtractor(
+            PdfDocumentLoader pdfDocumentLoader,
+            @Value("${pdf.extraction.parallel-threshold-pages:40}") int parallelThresholdPages,
+            @Value("${pdf.extraction.pages-per-task:16}") int pagesPerTask,
+            @Value("${pdf.extraction.parallelism:0}") int parallelism) {
+        this.pdfDocumentLoader = pdfDocumentLoader;
+        this.parallelThresholdPages = parallelThresholdPages;
+        this.pagesPerTask = pagesPerTask;
+        this.parallelism = parallelism;
+    }
+
+    @PostConstruct
+    public void init() {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        extractionPool = new ForkJoinPool(threads);
+        log.info("PDF并行提取初始化 - 线程数: {}, 并行阈值: {}页, 每任务页数: {}",
+                threads, parallelThresholdPages, pagesPerTask);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        extractionPool.shutdownNow();
+    }
+
+    /**
+     * 提取临时文件中PDF的全部文本
+     */
+    public String extract(Path pdfFile) throws IOException {
+        return extract(pdfFile, new AtomicBoolean());
+    }
+
+    /**
+     * 提取临时文件中PDF的全部文本；cancelled 置位后在下一页之前抛出 CancellationException
+     */
+    public String extract(Path pdfFile, AtomicBoolean cancelled) throws IOException {
+        int pageCount;
+        try (PdfDocumentLoader.LoadedDocument loaded = pdfDocumentLoader.load(pdfFile)) {
+            PDDocument document = loaded.getDocument();
+            pageCount = document.getNumberOfPages();
+            if (pageCount < parallelThresholdPages) {
+                return stripPages(document, 1, pageCount, cancelled);
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            String text = extractionPool.invoke(new PageRangeTask(pdfFile, 1, pageCount, cancelled));
+            log.debug("并行提取完成: pages={}, 耗时={}ms", pageCount, System.currentTimeMillis() - start);
+            return text;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static String stripPages(PDDocument document, int startPage, int endPage, AtomicBoolean cancelled)
+            throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper();
+        // 每页末尾加换页符，供文本规范化识别逐页重复的页眉页脚
+        stripper.setPageEnd(PdfTextNormalizer.PAGE_BREAK + stripper.getLineSeparator());
+        StringBuilder text = new StringBuilder();
+        for (int page = startPage; page <= endPage; page++) {
+            checkCancelled(cancelled);
+            stripper.setStartPage(page);
+            stripper.setEndPage(page);
+            text.append(stripper.getText(document));
+        }
+        return text.toString();
+    }
+
+    private static void checkCancelled(AtomicBoolean cancelled) {
+        if (cancelled.get()) {
+            throw new CancellationException("PDF提取已取消");
+        }
+    }
+
+    /**
+     * 页码区间提取任务
+     * PDDocument不是线程安全的，每个叶子任务都从临时文件独立加载一份文档
+     */
+    private class PageRangeTask extends RecursiveTask<String> {
+        private final Path pdfFile;
+        private final int startPage;
+        private final int endPage;
+        private final AtomicBoolean cancelled;
+
+        PageRangeTask(Path pdfFile, int startPage, int endPage, AtomicBoolean cancelled) {
+            this.pdfFile = pdfFile;
+            this.startPage = startPage;
+            this.endPage = endPage;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected String compute() {
+            checkCancelled(cancelled);
+            if (endPage - startPage + 1 <= pagesPerTask) {
+                try (PdfDocumentLoader.LoadedDocument loaded = pdfDocumentLoader.load(pdfFile)) {
+                    return stripPages(loaded.getDocument(), startPage, endPage, cancelled);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            int middle = startPage + (endPage - startPage) / 2;
+            PageRangeTask left = new PageRangeTask(pdfFile, startPage, middle, cancelled);
+            PageRangeTask right = new PageRangeTask(pdfFile, middle + 1, endPage, cancelled);
+            left.fork();
+            String rightText = right.compute();
+            return left.join() + rightText;
+        }
+    }
+}
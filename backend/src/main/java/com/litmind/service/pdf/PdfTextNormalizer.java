@@ -0,0 +1,178 @@
+package com.litmind.service.pdf;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * PDF提取文本规范化
+ * 去除逐页重复的页眉页脚和页码、合并行尾连字符断词、压缩空白，可选去除参考文献，
+ * 让发送给LLM的每个Token尽量都是正文内容
+ */
+@Component
+@Slf4j
+public class PdfTextNormalizer {
+
+    /**
+     * 提取时写在每页末尾的换页符
+     */
+    public static final String PAGE_BREAK = "\f";
+
+    /**
+     * 每页顶部/底部参与页眉页脚识别的行数
+     */
+    private static final int EDGE_LINES = 3;
+
+    private static final Pattern PAGE_NUMBER = Pattern.compile(
+            "^(?:[-–—]?\\s*\\d{1,4}\\s*[-–—]?|page\\s+\\d{1,4}(?:\\s+of\\s+\\d{1,4})?|第\\s*\\d{1,4}\\s*页(?:\\s*共\\s*\\d{1,4}\\s*页)?|\\d{1,4}\\s*/\\s*\\d{1,4})$",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern HYPHEN_BREAK = Pattern.compile("(?<=\\p{Ll}{2})-\\n(?=\\p{Ll})");
+    private static final Pattern INLINE_SPACES = Pattern.compile("[ \\t\\u00A0\\u3000]+");
+    private static final Pattern EXTRA_BLANK_LINES = Pattern.compile("\\n{3,}");
+
+    @Value("${pdf.normalize.drop-references:true}")
+    private boolean dropReferences;
+
+    public NormalizedText normalize(String raw) {
+        int originalLength = raw.length();
+        List<List<String>> pages = splitPages(raw);
+
+        Set<String> repeated = findRepeatedEdgeLines(pages);
+        int removedLines = 0;
+        StringBuilder builder = new StringBuilder(originalLength);
+        for (List<String> page : pages) {
+            for (int i = 0; i < page.size(); i++) {
+                String line = page.get(i);
+                boolean edge = i < EDGE_LINES || i >= page.size() - EDGE_LINES;
+                if (edge && (repeated.contains(edgeKey(line)) || PAGE_NUMBER.matcher(line).matches())) {
+                    removedLines++;
+                    continue;
+                }
+                builder.append(line).append('\n');
+            }
+        }
+
+        String text = HYPHEN_BREAK.matcher(builder).replaceAll("");
+        text = EXTRA_BLANK_LINES.matcher(text).replaceAll("\n\n").trim();
+
+        boolean referencesDropped = false;
+        if (dropReferences) {
+            String withoutReferences = dropReferenceList(text);
+            referencesDropped = withoutReferences.length() < text.length();
+            text = withoutReferences;
+        }
+
+        NormalizedText result = new NormalizedText(text, originalLength, removedLines, referencesDropped);
+        log.debug("文本规范化完成: 原始{}字符, 规范化后{}字符, 节省{}字符, 移除页眉页脚{}行, 去除参考文献={}",
+                originalLength, text.length(), result.getSavedChars(), removedLines, referencesDropped);
+        return result;
+    }
+
+    /**
+     * 按换页符拆分页面，每行去除首尾空白并压缩行内空白，去掉空行
+     */
+    private List<List<String>> splitPages(String raw) {
+        List<List<String>> pages = new ArrayList<>();
+        for (String pageText : raw.split(PAGE_BREAK, -1)) {
+            List<String> lines = new ArrayList<>();
+            for (String line : pageText.split("\\r?\\n")) {
+                String cleaned = INLINE_SPACES.matcher(line).replaceAll(" ").trim();
+                if (!cleaned.isEmpty()) {
+                    lines.add(cleaned);
+                }
+            }
+            if (!lines.isEmpty()) {
+                pages.add(lines);
+            }
+        }
+        return pages;
+    }
+
+    /**
+     * 统计每页顶部/底部行（数字归一化后）出现的页数，出现在至少一半页面（且不少于3页）的视为页眉页脚
+     */
+    private Set<String> findRepeatedEdgeLines(List<List<String>> pages) {
+        Set<String> repeated = new HashSet<>();
+        if (pages.size() < 3) {
+            return repeated;
+        }
+        Map<String, Integer> pageCounts = new HashMap<>();
+        for (List<String> page : pages) {
+            Set<String> seenOnPage = new HashSet<>();
+            for (int i = 0; i < page.size(); i++) {
+                if (i < EDGE_LINES || i >= page.size() - EDGE_LINES) {
+                    seenOnPage.add(edgeKey(page.get(i)));
+                }
+            }
+            for (String key : seenOnPage) {
+                pageCounts.merge(key, 1, Integer::sum);
+            }
+        }
+        int threshold = Math.max(3, pages.size() / 2);
+        for (Map.Entry<String, Integer> entry : pageCounts.entrySet()) {
+            if (entry.getValue() >= threshold) {
+                repeated.add(entry.getKey());
+            }
+        }
+        return repeated;
+    }
+
+    private static String edgeKey(String line) {
+        return line.toLowerCase(Locale.ROOT).replaceAll("\\d+", "#");
+    }
+
+    /**
+     * 去除参考文献列表：从文本后半部分最后一个参考文献标题开始，到其后的附录标题（如有）为止
+     */
+    private String dropReferenceList(String text) {
+        int searchFrom = text.length() / 2;
+        int referencesStart = -1;
+        int lineStart = text.lastIndexOf('\n', searchFrom) + 1;
+        while (lineStart < text.length()) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = text.length();
+            }
+            String type = PdfSectionChunker.headingType(text.substring(lineStart, lineEnd).trim());
+            if (PdfSectionChunker.REFERENCES.equals(type)) {
+                referencesStart = lineStart;
+            } else if (referencesStart >= 0 && PdfSectionChunker.APPENDIX.equals(type)) {
+                return text.substring(0, referencesStart) + text.substring(lineStart);
+            }
+            lineStart = lineEnd + 1;
+        }
+        return referencesStart >= 0 ? text.substring(0, referencesStart).trim() : text;
+    }
+
+    /**
+     * 规范化结果
+     */
+    public static class NormalizedText {
+        private final String text;
+        private final int originalChars;
+        private final int removedLines;
+        private final boolean referencesDropped;
+
+        public NormalizedText(String text, int originalChars, int removedLines, boolean referencesDropped) {
+            this.text = text;
+            this.originalChars = originalChars;
+            this.removedLines = removedLines;
+            this.referencesDropped = referencesDropped;
+        }
+
+        public String getText() { return text; }
+        public int getOriginalChars() { return originalChars; }
+        public int getRemovedLines() { return removedLines; }
+        public boolean isReferencesDropped() { return referencesDropped; }
+        public int getSavedChars() { return originalChars - text.length(); }
+    }
+}
@@ -0,0 +1,107 @@
+package com.litmind.service.pdf;
+
+import com.litmind.common.exception.BusinessException;
+import com.litmind.model.entity.PdfText;
+import com.litmind.model.entity.PdfTextChunk;
+import com.litmind.repository.PdfTextChunkRepository;
+import com.litmind.repository.PdfTextRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * PDF提取文本存储
+ * 文本在首次分析或问答时提取一次，压缩后按fileId持久化，后续问答和分析直接读取
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PdfTextStore {
+
+    private final PdfTextRepository pdfTextRepository;
+    private final PdfTextChunkRepository pdfTextChunkRepository;
+
+    @Transactional(readOnly = true)
+    public Optional<String> load(Long fileId) {
+        return pdfTextRepository.findByFileId(fileId)
+                .map(pdfText -> decompress(pdfText.getContent()));
+    }
+
+    /**
+     * 保存提取文本（独立事务，避免并发写入冲突影响外层分析事务）
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void save(Long fileId, String text, int rawCharCount) {
+        byte[] compressed = compress(text);
+        PdfText pdfText = pdfTextRepository.findByFileId(fileId).orElseGet(PdfText::new);
+        pdfText.setFileId(fileId);
+        pdfText.setContent(compressed);
+        pdfText.setCharCount(text.length());
+        pdfText.setRawCharCount(rawCharCount);
+        pdfText.setCompressedSize(compressed.length);
+        pdfTextRepository.save(pdfText);
+        log.info("PDF文本已缓存: fileId={}, chars={}, compressedBytes={}", fileId, text.length(), compressed.length);
+    }
+
+    @Transactional(readOnly = true)
+    public List<PdfTextChunk> loadChunks(Long fileId) {
+        return pdfTextChunkRepository.findByFileIdOrderByChunkIndexAsc(fileId);
+    }
+
+    /**
+     * 替换文件的章节分块（独立事务）
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void saveChunks(Long fileId, List<PdfTextChunk> chunks) {
+        pdfTextChunkRepository.deleteByFileId(fileId);
+        pdfTextChunkRepository.flush();
+        for (PdfTextChunk chunk : chunks) {
+            chunk.setId(null);
+            chunk.setFileId(fileId);
+        }
+        pdfTextChunkRepository.saveAll(chunks);
+    }
+
+    @Transactional
+    public void delete(Long fileId) {
+        pdfTextChunkRepository.deleteByFileId(fileId);
+        pdfTextRepository.deleteByFileId(fileId);
+    }
+
+    private static byte[] compress(String text) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(256, text.length() / 3));
+        try (OutputStream gzip = new GZIPOutputStream(buffer)) {
+            gzip.write(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new BusinessException(500, "PDF文本压缩失败: " + e.getMessage());
+        }
+        return buffer.toByteArray();
+    }
+
+    private static String decompress(byte[] content) {
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(content))) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(content.length * 4);
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = gzip.read(chunk)) != -1) {
+                buffer.write(chunk, 0, read);
+            }
+            return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new BusinessException(500, "PDF文本解压失败: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.litmind.service.pdf;
+
+import com.litmind.common.exception.BusinessException;
+import com.litmind.model.entity.File;
+import com.litmind.repository.FileRepository;
+import com.litmind.service.file.FileStorageService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PDF页面缩略图
+ * 上传后在后台渲染前N页的低分辨率缩略图，存放在原文件旁边，供列表和阅读器预览使用
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PdfThumbnailService {
+
+    public static final String CONTENT_TYPE = "image/jpeg";
+
+    private final FileStorageService fileStorageService;
+    private final FileRepository fileRepository;
+    private final PdfDocumentLoader pdfDocumentLoader;
+    private final PdfTaskExecutor pdfTaskExecutor;
+    private final PdfExtractionExecutor pdfExtractionExecutor;
+
+    @Value("${pdf.thumbnail.pages:3}")
+    private int thumbnailPages;
+
+    @Value("${pdf.thumbnail.dpi:36}")
+    private float thumbnailDpi;
+
+    /**
+     * 缩略图对象名：{文件对象名}.thumbs/{页码}.jpg
+     */
+    public static String thumbnailObjectName(String filePath, int page) {
+        return filePath + ".thumbs/" + page + ".jpg";
+    }
+
+    /**
+     * 正在生成缩略图的文件，避免重复渲染
+     */
+    private final Set<Long> inProgress = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 后台渲染缩略图，完成后记录缩略图数量（失败或超时记为0，不再重试）
+     * 下载和上传在PDF任务执行器中进行，渲染与文本提取共用提取执行器的并发上限和单文档时限
+     */
+    public void generateThumbnails(Long fileId, String filePath) {
+        if (!inProgress.add(fileId)) {
+            return;
+        }
+        try {
+            pdfTaskExecutor.supply(() -> {
+                renderAndStore(fileId, filePath);
+                return null;
+            });
+        } catch (BusinessException e) {
+            // 任务队列已满，下次访问时重试
+            inProgress.remove(fileId);
+            log.warn("提交缩略图生成失败: fileId={}, error={}", fileId, e.getMessage());
+        }
+    }
+
+    private void renderAndStore(Long fileId, String filePath) {
+        long start = System.currentTimeMillis();
+        Path pdfFile = null;
+        try {
+            try (InputStream inputStream = fileStorageService.downloadFile(filePath)) {
+                pdfFile = pdfDocumentLoader.spool(inputStream);
+            }
+            Path spooled = pdfFile;
+            List<byte[]> images = pdfExtractionExecutor.call(() -> render(spooled));
+            for (int page = 0; page < images.size(); page++) {
+                fileStorageService.uploadBytes(images.get(page), thumbnailObjectName(filePath, page), CONTENT_TYPE);
+            }
+            fileRepository.updateThumbnailCount(fileId, images.size());
+            log.info("缩略图生成完成: fileId={}, pages={}, 耗时={}ms", fileId, images.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("缩略图生成失败: fileId={}, error={}", fileId, e.getMessage());
+            fileRepository.updateThumbnailCount(fileId, 0);
+        } finally {
+            pdfDocumentLoader.deleteQuietly(pdfFile);
+            inProgress.remove(fileId);
+        }
+    }
+
+    /**
+     * 渲染前N页为JPEG；超时后执行器中断工作线程，在下一页之前停止
+     */
+    private List<byte[]> render(Path pdfFile) throws IOException {
+        List<byte[]> images = new ArrayList<>();
+        try (PdfDocumentLoader.LoadedDocument loaded = pdfDocumentLoader.load(pdfFile)) {
+            PDDocument document = loaded.getDocument();
+            PDFRenderer renderer = new PDFRenderer(document);
+            int pages = Math.min(thumbnailPages, document.getNumberOfPages());
+            for (int page = 0; page < pages; page++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("缩略图渲染已取消");
+                }
+                BufferedImage image = renderer.renderImageWithDPI(page, thumbnailDpi, ImageType.RGB);
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                ImageIO.write(image, "jpg", buffer);
+                images.add(buffer.toByteArray());
+            }
+        }
+        return images;
+    }
+
+    public InputStream getThumbnail(File file, int page) {
+        Integer count = file.getThumbnailCount();
+        if (count == null || page < 0 || page >= count) {
+            throw new BusinessException(404, "缩略图不存在");
+        }
+        return fileStorageService.downloadFile(thumbnailObjectName(file.getFilePath(), page));
+    }
+
+    public void deleteThumbnails(File file) {
+        Integer count = file.getThumbnailCount();
+        if (count == null) {
+            return;
+        }
+        for (int page = 0; page < count; page++) {
+            try {
+                fileStorageService.deleteFile(thumbnailObjectName(file.getFilePath(), page));
+            } catch (Exception e) {
+                log.warn("删除缩略图失败: fileId={}, page={}, error={}", file.getId(), page, e.getMessage());
+            }
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package com.litmind.service.recommend;
 
 import com.litmind.model.entity.File;
+import com.litmind.model.entity.FilePopularity;
 import com.litmind.model.entity.PdfAnalysis;
 import com.litmind.model.entity.Recommendation;
 import com.litmind.model.entity.User;
 import com.litmind.model.entity.UserBehavior;
+import com.litmind.repository.FilePopularityRepository;
 import com.litmind.repository.FileRepository;
 import com.litmind.repository.PdfAnalysisRepository;
 import com.litmind.repository.RecommendationRepository;
@@ -12,6 +14,7 @@ import com.litmind.repository.UserBehaviorRepository;
 import com.litmind.repository.UserRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
@@ -32,6 +35,7 @@ public class RecommendationService {
     private final PdfAnalysisRepository pdfAnalysisRepository;
     private final UserRepository userRepository;
     private final ExternalPaperService externalPaperService;
+    private final FilePopularityRepository filePopularityRepository;
     
     @Autowired
     public RecommendationService(
@@ -41,7 +45,8 @@ public class RecommendationService {
             FileRepository fileRepository,
             PdfAnalysisRepository pdfAnalysisRepository,
             UserRepository userRepository,
-            ExternalPaperService externalPaperService) {
+            ExternalPaperService externalPaperService,
+            FilePopularityRepository filePopularityRepository) {
         this.recommendationRepository = recommendationRepository;
         this.userBehaviorRepository = userBehaviorRepository;
         this.redisTemplate = redisTemplate;
@@ -49,6 +54,7 @@ public class RecommendationService {
         this.pdfAnalysisRepository = pdfAnalysisRepository;
         this.userRepository = userRepository;
         this.externalPaperService = externalPaperService;
+        this.filePopularityRepository = filePopularityRepository;
     }
 
     public List<Recommendation> getUserRecommendations(Long userId) {
@@ -120,6 +126,15 @@ public class RecommendationService {
         behavior.setBehaviorType(behaviorType);
         behavior.setBehaviorData(behaviorData);
         userBehaviorRepository.save(behavior);
+
+        // 查看和分析计入文件热度，热门推荐按该计数排序
+        if (fileId != null && isPopularityBehavior(behaviorType)) {
+            filePopularityRepository.increment(fileId);
+        }
+    }
+
+    private static boolean isPopularityBehavior(String behaviorType) {
+        return "VIEW".equals(behaviorType) || "ANALYZE".equals(behaviorType);
     }
 
     public void updateRecommendationFeedback(Long userId, Long recommendationId, String feedback) {
@@ -311,14 +326,11 @@ public class RecommendationService {
     private List<Recommendation> recommendDepartmentFiles(Long userId, List<File> departmentFiles) {
         List<Recommendation> recommendations = new ArrayList<>();
         
-        // 统计每个文件的查看次数
+        // 一次查询取出这些文件的查看次数
         Map<Long, Long> viewCounts = new HashMap<>();
-        for (File file : departmentFiles) {
-            List<UserBehavior> fileBehaviors = userBehaviorRepository.findByFileId(file.getId());
-            long count = fileBehaviors.stream()
-                    .filter(b -> "VIEW".equals(b.getBehaviorType()) || "ANALYZE".equals(b.getBehaviorType()))
-                    .count();
-            viewCounts.put(file.getId(), count);
+        List<Long> fileIds = departmentFiles.stream().map(File::getId).collect(Collectors.toList());
+        for (FilePopularity popularity : filePopularityRepository.findAllById(fileIds)) {
+            viewCounts.put(popularity.getFileId(), popularity.getViewCount());
         }
         
         // 按查看次数排序，如果查看次数相同，按创建时间排序（新的优先）
@@ -339,7 +351,7 @@ public class RecommendationService {
             Recommendation rec = new Recommendation();
             rec.setUserId(userId);
             rec.setRecommendedFileId(file.getId());
-            rec.setPaperTitle(file.getName());
+            rec.setPaperTitle(displayTitle(file));
             rec.setPaperSource("系统内文件");
             rec.setPaperUrl("/pdf/" + file.getId());
             rec.setRecommendationReason("同部门其他用户上传的文件");
@@ -367,7 +379,7 @@ public class RecommendationService {
             Recommendation rec = new Recommendation();
             rec.setUserId(userId);
             rec.setRecommendedFileId(file.getId());
-            rec.setPaperTitle(file.getName());
+            rec.setPaperTitle(displayTitle(file));
             rec.setPaperSource("系统内文件");
             rec.setPaperUrl("/pdf/" + file.getId());
             rec.setRecommendationReason("您上传的其他文件");
@@ -385,126 +397,78 @@ public class RecommendationService {
      */
     private List<Recommendation> recommendHotFiles(Long userId) {
         List<Recommendation> recommendations = new ArrayList<>();
-        
-        // 获取所有公共PDF文件（跨部门，包括用户自己的文件）
-        List<File> publicFiles = fileRepository.findByIsPublicTrue()
+
+        // 其他用户的公共PDF文件按热度计数取前10个，排序和截取在数据库中完成
+        List<File> hotFiles = filePopularityRepository.findHotPublicPdfFiles(userId, PageRequest.of(0, 10));
+        if (hotFiles.isEmpty()) {
+            return recommendOwnFilesWhenNoHotFiles(userId);
+        }
+
+        // 生成推荐（最多10个）
+        for (int i = 0; i < hotFiles.size(); i++) {
+            File file = hotFiles.get(i);
+            Recommendation rec = new Recommendation();
+            rec.setUserId(userId);
+            rec.setRecommendedFileId(file.getId());
+            rec.setPaperTitle(displayTitle(file));
+            rec.setPaperSource("系统内文件");
+            rec.setPaperUrl("/pdf/" + file.getId());
+            rec.setRecommendationReason("系统热门文件推荐");
+            rec.setRecommendationScore(BigDecimal.valueOf(0.6 - i * 0.05));
+            rec.setCreatedAt(LocalDateTime.now());
+            recommendations.add(rec);
+        }
+
+        log.info("推荐了 {} 个系统热门文件", recommendations.size());
+        return recommendations;
+    }
+
+    /**
+     * 系统内没有其他用户的公共PDF文件时，推荐用户自己的文件（至少让用户能看到自己的文件）
+     */
+    private List<Recommendation> recommendOwnFilesWhenNoHotFiles(Long userId) {
+        List<Recommendation> recommendations = new ArrayList<>();
+        List<File> userFiles = fileRepository.findByUserId(userId)
                 .stream()
                 .filter(f -> isPdfFile(f))
+                .sorted((f1, f2) -> f2.getCreatedAt().compareTo(f1.getCreatedAt()))
                 .collect(Collectors.toList());
-        
+        List<File> publicFiles = userFiles.stream()
+                .filter(f -> Boolean.TRUE.equals(f.getIsPublic()))
+                .collect(Collectors.toList());
+
         if (publicFiles.isEmpty()) {
             log.info("系统内没有公共PDF文件，尝试推荐用户自己的私有文件");
-            // 如果没有公共文件，尝试推荐用户自己的所有文件（包括私有文件）
-            List<File> userFiles = fileRepository.findByUserId(userId)
-                    .stream()
-                    .filter(f -> isPdfFile(f))
-                    .sorted((f1, f2) -> f2.getCreatedAt().compareTo(f1.getCreatedAt()))
-                    .skip(1) // 跳过最新的文件
-                    .limit(10)
-                    .collect(Collectors.toList());
-            
-            if (!userFiles.isEmpty()) {
-                log.info("推荐用户自己的 {} 个文件", userFiles.size());
-                return recommendUserOwnFiles(userId, userFiles);
+            // 如果没有公共文件，尝试推荐用户自己的所有文件（包括私有文件），跳过最新的文件
+            List<File> otherFiles = userFiles.stream().skip(1).limit(10).collect(Collectors.toList());
+            if (!otherFiles.isEmpty()) {
+                log.info("推荐用户自己的 {} 个文件", otherFiles.size());
+                return recommendUserOwnFiles(userId, otherFiles);
             }
-            
+
             log.warn("系统内没有任何PDF文件可推荐");
             return recommendations;
         }
-        
-        // 如果只有用户自己的文件，也推荐（至少让用户能看到自己的文件）
-        if (publicFiles.stream().allMatch(f -> f.getUserId().equals(userId))) {
-            log.info("系统内只有用户自己的公共文件，推荐用户自己的其他文件");
-            // 如果只有一个文件，也推荐它（不跳过）
-            if (publicFiles.size() == 1) {
-                File file = publicFiles.get(0);
-                Recommendation rec = new Recommendation();
-                rec.setUserId(userId);
-                rec.setRecommendedFileId(file.getId());
-                rec.setPaperTitle(file.getName());
-                rec.setPaperSource("系统内文件");
-                rec.setPaperUrl("/pdf/" + file.getId());
-                rec.setRecommendationReason("您上传的文件");
-                rec.setRecommendationScore(BigDecimal.valueOf(0.5));
-                rec.setCreatedAt(LocalDateTime.now());
-                recommendations.add(rec);
-                return recommendations;
-            }
-            
-            // 排除第一个文件（可能是刚上传的），推荐其他文件
-            List<File> userOwnFiles = publicFiles.stream()
-                    .filter(f -> f.getUserId().equals(userId))
-                    .sorted((f1, f2) -> f2.getCreatedAt().compareTo(f1.getCreatedAt()))
-                    .skip(1) // 跳过最新的文件
-                    .limit(10)
-                    .collect(Collectors.toList());
-            
-            if (!userOwnFiles.isEmpty()) {
-                return recommendUserOwnFiles(userId, userOwnFiles);
-            }
-        }
-        
-        // 排除用户自己的文件，推荐其他人的文件
-        publicFiles = publicFiles.stream()
-                .filter(f -> !f.getUserId().equals(userId))
-                .collect(Collectors.toList());
-        
-        if (publicFiles.isEmpty()) {
-            log.info("系统内没有其他用户的文件可推荐，推荐用户自己的文件");
-            // 如果没有其他人的文件，推荐用户自己的文件
-            List<File> userFiles = fileRepository.findByUserId(userId)
-                    .stream()
-                    .filter(f -> isPdfFile(f))
-                    .sorted((f1, f2) -> f2.getCreatedAt().compareTo(f1.getCreatedAt()))
-                    .limit(10)
-                    .collect(Collectors.toList());
-            
-            if (!userFiles.isEmpty()) {
-                return recommendUserOwnFiles(userId, userFiles);
-            }
-            
-            return recommendations;
-        }
-        
-        // 统计每个文件的查看次数（统计所有用户对该文件的查看）
-        Map<Long, Long> viewCounts = new HashMap<>();
-        for (File file : publicFiles) {
-            List<UserBehavior> fileBehaviors = userBehaviorRepository.findByFileId(file.getId());
-            long count = fileBehaviors.stream()
-                    .filter(b -> "VIEW".equals(b.getBehaviorType()) || "ANALYZE".equals(b.getBehaviorType()))
-                    .count();
-            viewCounts.put(file.getId(), count);
-        }
-        
-        // 按查看次数排序，如果查看次数相同，按创建时间排序（新的优先）
-        publicFiles.sort((f1, f2) -> {
-            Long count1 = viewCounts.getOrDefault(f1.getId(), 0L);
-            Long count2 = viewCounts.getOrDefault(f2.getId(), 0L);
-            int compare = Long.compare(count2, count1);
-            if (compare != 0) {
-                return compare;
-            }
-            // 查看次数相同，按创建时间降序（新的优先）
-            return f2.getCreatedAt().compareTo(f1.getCreatedAt());
-        });
-        
-        // 生成推荐（最多10个）
-        for (int i = 0; i < Math.min(10, publicFiles.size()); i++) {
-            File file = publicFiles.get(i);
+
+        log.info("系统内只有用户自己的公共文件，推荐用户自己的其他文件");
+        // 如果只有一个文件，也推荐它（不跳过）
+        if (publicFiles.size() == 1) {
+            File file = publicFiles.get(0);
             Recommendation rec = new Recommendation();
             rec.setUserId(userId);
             rec.setRecommendedFileId(file.getId());
-            rec.setPaperTitle(file.getName());
+            rec.setPaperTitle(displayTitle(file));
             rec.setPaperSource("系统内文件");
             rec.setPaperUrl("/pdf/" + file.getId());
-            rec.setRecommendationReason("系统热门文件推荐");
-            rec.setRecommendationScore(BigDecimal.valueOf(0.6 - i * 0.05));
+            rec.setRecommendationReason("您上传的文件");
+            rec.setRecommendationScore(BigDecimal.valueOf(0.5));
             rec.setCreatedAt(LocalDateTime.now());
             recommendations.add(rec);
+            return recommendations;
         }
-        
-        log.info("推荐了 {} 个系统热门文件", recommendations.size());
-        return recommendations;
+
+        // 排除第一个文件（可能是刚上传的），推荐其他文件
+        return recommendUserOwnFiles(userId, publicFiles.stream().skip(1).limit(10).collect(Collectors.toList()));
     }
     
     /**
@@ -637,6 +601,13 @@ public class RecommendationService {
         return keywords;
     }
     
+    /**
+     * 推荐展示的标题：优先使用上传时探测到的论文标题，否则使用文件名
+     */
+    private String displayTitle(File file) {
+        return file.getTitle() != null && !file.getTitle().isEmpty() ? file.getTitle() : file.getName();
+    }
+
     /**
      * 判断文件是否为PDF文件
      */
@@ -0,0 +1,54 @@
+package com.litmind.config;
+
+import com.litmind.service.ai.stub.LlmStubServer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * llm-stub profile：随应用启动本地LLM替身服务，AI请求发往替身服务而不是真实提供商
+ * 位于测试代码中，不打入发布包，需使用测试classpath启动应用
+ */
+@Configuration
+@Profile("llm-stub")
+public class LlmStubConfig {
+
+    @Value("${ai.stub.port:18080}")
+    private int port;
+
+    @Value("${ai.stub.latency-ms:800}")
+    private long latencyMs;
+
+    @Value("${ai.stub.latency-jitter-ms:400}")
+    private long latencyJitterMs;
+
+    @Value("${ai.stub.tokens-per-second:50}")
+    private int tokensPerSecond;
+
+    @Value("${ai.stub.answer-tokens:200}")
+    private int answerTokens;
+
+    @Value("${ai.stub.error-rate:0.0}")
+    private double errorRate;
+
+    @Value("${ai.stub.rate-limit-rate:0.0}")
+    private double rateLimitRate;
+
+    @Value("${ai.stub.retry-after-seconds:1}")
+    private int retryAfterSeconds;
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public LlmStubServer llmStubServer() {
+        LlmStubServer.Settings settings = new LlmStubServer.Settings();
+        settings.port = port;
+        settings.latencyMs = latencyMs;
+        settings.latencyJitterMs = latencyJitterMs;
+        settings.tokensPerSecond = tokensPerSecond;
+        settings.answerTokens = answerTokens;
+        settings.errorRate = errorRate;
+        settings.rateLimitRate = rateLimitRate;
+        settings.retryAfterSeconds = retryAfterSeconds;
+        return new LlmStubServer(settings);
+    }
+}
@@ -0,0 +1,235 @@
+package com.litmind.service.ai.stub;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.Dispatcher;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AI接口压测工具
+ * 以固定并发（闭环：每个并发完成一次请求后再发下一次）调用 /ai/qa 和 /pdf/{id}/analyze，
+ * 输出吞吐量、成功率和 p50/p95/p99 延迟，以及压测后的调度器、提供商和缓存统计。
+ * 通常配合 llm-stub profile 使用，参数格式为 --name=value：
+ * <pre>
+ * --base-url=http://localhost:8081/api  后端地址
+ * --username=admin --password=admin123  登录账号
+ * --mode=qa|analyze                     压测接口，默认qa
+ * --file-ids=1,2,3                      问答时轮流使用；分析时每个文件只请求一次（已完成的分析直接返回）
+ * --question=本文的主要贡献是什么？       问答问题，实际发送时追加序号，避免全部命中响应缓存
+ * --repeat-question=true                所有请求使用相同问题，用于测量缓存命中时的表现
+ * --concurrency=16 --requests=200 --warmup=10
+ * </pre>
+ */
+public class AiLoadTest {
+
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, String> options;
+    private final String baseUrl;
+    private final OkHttpClient client;
+    private String token;
+
+    public AiLoadTest(Map<String, String> options) {
+        this.options = options;
+        this.baseUrl = option("base-url", "http://localhost:8081/api");
+        int concurrency = Integer.parseInt(option("concurrency", "16"));
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(concurrency);
+        dispatcher.setMaxRequestsPerHost(concurrency);
+        this.client = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .readTimeout(Long.parseLong(option("timeout-seconds", "600")), TimeUnit.SECONDS)
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        new AiLoadTest(options).run();
+    }
+
+    public void run() throws Exception {
+        login();
+        String mode = option("mode", "qa");
+        List<Long> fileIds = new ArrayList<>();
+        for (String id : option("file-ids", "1").split(",")) {
+            fileIds.add(Long.valueOf(id.trim()));
+        }
+        int concurrency = Integer.parseInt(option("concurrency", "16"));
+        int requests = "analyze".equals(mode) ? fileIds.size() : Integer.parseInt(option("requests", "200"));
+        int warmup = "analyze".equals(mode) ? 0 : Integer.parseInt(option("warmup", "10"));
+
+        System.out.printf("压测开始: mode=%s, 并发=%d, 请求数=%d, 预热=%d, 后端=%s%n",
+                mode, concurrency, requests, warmup, baseUrl);
+        if (warmup > 0) {
+            execute(mode, fileIds, Math.min(concurrency, warmup), warmup, requests);
+        }
+        Result result = execute(mode, fileIds, concurrency, requests, 0);
+        result.print();
+
+        printStats("/ai/scheduler/stats", "调度器");
+        printStats("/ai/providers/stats", "提供商");
+        printStats("/ai/cache/stats", "响应缓存");
+        printStats("/ai/usage", "本月用量");
+        client.dispatcher().executorService().shutdown();
+    }
+
+    private Result execute(String mode, List<Long> fileIds, int concurrency, int requests, int sequenceOffset)
+            throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        Result result = new Result(requests);
+        AtomicInteger next = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(concurrency);
+        long start = System.nanoTime();
+        for (int worker = 0; worker < concurrency; worker++) {
+            pool.execute(() -> {
+                try {
+                    int index;
+                    while ((index = next.getAndIncrement()) < requests) {
+                        long fileId = fileIds.get(index % fileIds.size());
+                        long begin = System.nanoTime();
+                        String outcome;
+                        try {
+                            outcome = "analyze".equals(mode)
+                                    ? post("/pdf/" + fileId + "/analyze", "{}")
+                                    : post("/ai/qa", qaBody(fileId, index + sequenceOffset));
+                        } catch (IOException e) {
+                            outcome = "IO:" + e.getClass().getSimpleName();
+                        }
+                        result.add(System.nanoTime() - begin, outcome);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        result.elapsedNanos = System.nanoTime() - start;
+        pool.shutdown();
+        return result;
+    }
+
+    private String qaBody(long fileId, int sequence) throws IOException {
+        String question = option("question", "本文的主要贡献是什么？");
+        if (!Boolean.parseBoolean(option("repeat-question", "false"))) {
+            question = question + " #" + sequence;
+        }
+        Map<String, String> body = new HashMap<>();
+        body.put("fileId", String.valueOf(fileId));
+        body.put("question", question);
+        return objectMapper.writeValueAsString(body);
+    }
+
+    /**
+     * 发送请求，返回结果分类：OK、HTTP状态码或业务错误码
+     */
+    private String post(String path, String json) throws IOException {
+        Request request = new Request.Builder()
+                .url(baseUrl + path)
+                .header("Authorization", "Bearer " + token)
+                .post(RequestBody.create(json, JSON))
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                return "HTTP " + response.code();
+            }
+            JsonNode body = objectMapper.readTree(response.body().string());
+            int code = body.path("code").asInt(200);
+            return code == 200 ? "OK" : "CODE " + code;
+        }
+    }
+
+    private void login() throws IOException {
+        Map<String, String> body = new HashMap<>();
+        body.put("username", option("username", "admin"));
+        body.put("password", option("password", "admin123"));
+        Request request = new Request.Builder()
+                .url(baseUrl + "/auth/login")
+                .post(RequestBody.create(objectMapper.writeValueAsString(body), JSON))
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            JsonNode json = objectMapper.readTree(response.body().string());
+            token = json.path("data").path("token").asText(null);
+            if (token == null) {
+                throw new IOException("登录失败: " + json);
+            }
+        }
+    }
+
+    private void printStats(String path, String title) {
+        Request request = new Request.Builder()
+                .url(baseUrl + path)
+                .header("Authorization", "Bearer " + token)
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            System.out.printf("%s: %s%n", title, objectMapper.readTree(response.body().string()).path("data"));
+        } catch (IOException e) {
+            System.out.printf("%s: 获取失败 %s%n", title, e.getMessage());
+        }
+    }
+
+    private String option(String name, String defaultValue) {
+        String value = options.get(name);
+        return value != null ? value : defaultValue;
+    }
+
+    private static class Result {
+        private final List<Long> latencies;
+        private final Map<String, AtomicInteger> outcomes = new ConcurrentHashMap<>();
+        private long elapsedNanos;
+
+        Result(int requests) {
+            latencies = Collections.synchronizedList(new ArrayList<>(requests));
+        }
+
+        void add(long latencyNanos, String outcome) {
+            latencies.add(latencyNanos);
+            outcomes.computeIfAbsent(outcome, key -> new AtomicInteger()).incrementAndGet();
+        }
+
+        void print() {
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            int total = sorted.size();
+            AtomicInteger ok = outcomes.get("OK");
+            double seconds = elapsedNanos / 1e9;
+            System.out.printf("请求数: %d, 成功: %d, 耗时: %.1fs, 吞吐量: %.2f req/s%n",
+                    total, ok != null ? ok.get() : 0, seconds, total / Math.max(seconds, 1e-9));
+            System.out.printf("延迟(ms): p50=%d, p95=%d, p99=%d, max=%d%n",
+                    percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99), percentile(sorted, 100));
+            System.out.printf("结果分布: %s%n", new TreeMap<>(outcomes));
+        }
+
+        private static long percentile(List<Long> sorted, int percent) {
+            if (sorted.isEmpty()) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percent / 100.0 * sorted.size()) - 1;
+            return TimeUnit.NANOSECONDS.toMillis(sorted.get(Math.max(0, Math.min(index, sorted.size() - 1))));
+        }
+    }
+}
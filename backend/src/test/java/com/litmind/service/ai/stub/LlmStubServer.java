@@ -0,0 +1,328 @@
+package com.litmind.service.ai.stub;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地OpenAI兼容的LLM替身服务
+ * 实现 /chat/completions（含stream=true），可配置响应延迟、流式输出速度、5xx错误率和429比例，
+ * 用于在不消耗真实额度的情况下调试超时、线程池、调度和缓存参数。
+ * 以 llm-stub profile 随应用启动，也可以通过 main 方法单独运行
+ */
+@Slf4j
+public class LlmStubServer {
+
+    private static final String[] WORDS = {
+            "本文", "提出", "一种", "基于", "注意力", "机制", "的", "方法", "，", "在", "公开", "数据集", "上",
+            "取得", "了", "较", "好", "效果", "。", "实验", "表明", "模型", "准确率", "提升", "明显"
+    };
+
+    private final Settings settings;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicInteger active = new AtomicInteger();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public LlmStubServer(Settings settings) {
+        this.settings = settings;
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(settings.host, settings.port), 0);
+        AtomicInteger threadIndex = new AtomicInteger();
+        // 响应期间线程在sleep，使用不限数量的线程池，避免替身服务本身成为瓶颈
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "llm-stub-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        log.info("LLM替身服务已启动: http://{}:{}/v1, 延迟={}±{}ms, 输出速度={}token/s, 错误率={}, 429比例={}",
+                settings.host, getPort(), settings.latencyMs, settings.latencyJitterMs, settings.tokensPerSecond,
+                settings.errorRate, settings.rateLimitRate);
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            log.info("LLM替身服务已停止: {}", getStats());
+        }
+    }
+
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : settings.port;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requests", requests.get());
+        stats.put("active", active.get());
+        stats.put("rateLimited", rateLimited.get());
+        stats.put("failures", failures.get());
+        return stats;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            if ("GET".equals(exchange.getRequestMethod()) && path.endsWith("/stats")) {
+                sendJson(exchange, 200, getStats());
+            } else if ("POST".equals(exchange.getRequestMethod()) && path.endsWith("/chat/completions")) {
+                active.incrementAndGet();
+                try {
+                    handleChat(exchange);
+                } finally {
+                    active.decrementAndGet();
+                }
+            } else {
+                sendJson(exchange, 404, error("not_found", "Unknown path: " + path));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // 客户端取消请求（如流式问答断开）
+            log.debug("LLM替身服务连接中断: {}", e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleChat(HttpExchange exchange) throws IOException, InterruptedException {
+        requests.incrementAndGet();
+        JsonNode request = objectMapper.readTree(readBody(exchange.getRequestBody()));
+        String prompt = request.path("messages").path(0).path("content").asText("");
+        boolean stream = request.path("stream").asBoolean(false);
+        String model = request.path("model").asText("stub-model");
+
+        Thread.sleep(latency());
+        double dice = ThreadLocalRandom.current().nextDouble();
+        if (dice < settings.rateLimitRate) {
+            rateLimited.incrementAndGet();
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(settings.retryAfterSeconds));
+            sendJson(exchange, 429, error("rate_limit_exceeded", "Rate limit reached (stub)"));
+            return;
+        }
+        if (dice < settings.rateLimitRate + settings.errorRate) {
+            failures.incrementAndGet();
+            sendJson(exchange, 500, error("server_error", "Injected failure (stub)"));
+            return;
+        }
+
+        String answer = buildAnswer(prompt);
+        Map<String, Object> usage = new LinkedHashMap<>();
+        usage.put("prompt_tokens", Math.max(1, prompt.length() / 2));
+        usage.put("completion_tokens", settings.answerTokens);
+        usage.put("total_tokens", Math.max(1, prompt.length() / 2) + settings.answerTokens);
+
+        if (stream) {
+            streamAnswer(exchange, model, answer, usage, request.path("stream_options").path("include_usage").asBoolean());
+            return;
+        }
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("role", "assistant");
+        message.put("content", answer);
+        Map<String, Object> choice = new LinkedHashMap<>();
+        choice.put("index", 0);
+        choice.put("message", message);
+        choice.put("finish_reason", "stop");
+        Map<String, Object> body = completion(model);
+        body.put("choices", Collections.singletonList(choice));
+        body.put("usage", usage);
+        sendJson(exchange, 200, body);
+    }
+
+    /**
+     * 按配置速度逐个输出片段，最后按 include_usage 输出usage事件和 [DONE]
+     */
+    private void streamAnswer(HttpExchange exchange, String model, String answer, Map<String, Object> usage,
+                              boolean includeUsage) throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        long intervalMs = settings.tokensPerSecond > 0 ? 1000L / settings.tokensPerSecond : 0;
+        String[] pieces = answer.split("(?<=\\G.{2})");
+        for (String piece : pieces) {
+            Map<String, Object> choice = new LinkedHashMap<>();
+            choice.put("index", 0);
+            choice.put("delta", Collections.singletonMap("content", piece));
+            Map<String, Object> event = completion(model);
+            event.put("choices", Collections.singletonList(choice));
+            writeEvent(out, objectMapper.writeValueAsString(event));
+            if (intervalMs > 0) {
+                Thread.sleep(intervalMs);
+            }
+        }
+        if (includeUsage) {
+            Map<String, Object> event = completion(model);
+            event.put("choices", Collections.emptyList());
+            event.put("usage", usage);
+            writeEvent(out, objectMapper.writeValueAsString(event));
+        }
+        writeEvent(out, "[DONE]");
+        out.close();
+    }
+
+    private static void writeEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /**
+     * 分析类Prompt返回四部分JSON和常见问答，便于走完整的解析和保存流程；其他Prompt返回指定长度的文本
+     */
+    private String buildAnswer(String prompt) throws IOException {
+        if (prompt.contains("researchBackground")) {
+            Map<String, Object> analysis = new LinkedHashMap<>();
+            analysis.put("researchBackground", filler(settings.answerTokens / 5));
+            analysis.put("coreContent", filler(settings.answerTokens / 5));
+            analysis.put("experimentResults", filler(settings.answerTokens / 5));
+            analysis.put("additionalInfo", filler(settings.answerTokens / 5));
+            analysis.put("faq", faq(settings.answerTokens / 5));
+            return objectMapper.writeValueAsString(analysis);
+        }
+        if (prompt.contains("\"question\"")) {
+            return objectMapper.writeValueAsString(faq(settings.answerTokens));
+        }
+        return filler(settings.answerTokens);
+    }
+
+    private static List<Map<String, String>> faq(int tokens) {
+        List<Map<String, String>> faq = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            Map<String, String> item = new LinkedHashMap<>();
+            item.put("question", "常见问题" + i + "？");
+            item.put("answer", filler(Math.max(1, tokens / 5)));
+            faq.add(item);
+        }
+        return faq;
+    }
+
+    private static String filler(int tokens) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < tokens; i++) {
+            text.append(WORDS[i % WORDS.length]);
+        }
+        return text.toString();
+    }
+
+    private long latency() {
+        long jitter = settings.latencyJitterMs > 0 ? ThreadLocalRandom.current().nextLong(settings.latencyJitterMs + 1) : 0;
+        return Math.max(0, settings.latencyMs + jitter);
+    }
+
+    private static Map<String, Object> completion(String model) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("id", "chatcmpl-stub-" + System.nanoTime());
+        body.put("object", "chat.completion");
+        body.put("created", System.currentTimeMillis() / 1000);
+        body.put("model", model);
+        return body;
+    }
+
+    private static Map<String, Object> error(String type, String message) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("type", type);
+        error.put("message", message);
+        return Collections.singletonMap("error", error);
+    }
+
+    private void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static byte[] readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            buffer.write(chunk, 0, read);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * 替身服务参数
+     */
+    public static class Settings {
+        public String host = "127.0.0.1";
+        public int port = 18080;
+        /**
+         * 响应前（流式为首个片段前）的基础延迟
+         */
+        public long latencyMs = 800;
+        /**
+         * 在基础延迟上随机增加 0~jitter 毫秒
+         */
+        public long latencyJitterMs = 400;
+        /**
+         * 流式输出速度，0表示不限速
+         */
+        public int tokensPerSecond = 50;
+        /**
+         * 每次回答的输出Token数（按片段计）
+         */
+        public int answerTokens = 200;
+        /**
+         * 返回500的比例
+         */
+        public double errorRate = 0.0;
+        /**
+         * 返回429的比例
+         */
+        public double rateLimitRate = 0.0;
+        public int retryAfterSeconds = 1;
+    }
+
+    /**
+     * 单独运行：参数通过系统属性传入，如 -Dstub.port=18080 -Dstub.latency-ms=1500 -Dstub.rate-limit-rate=0.1
+     */
+    public static void main(String[] args) throws Exception {
+        Settings settings = new Settings();
+        settings.host = System.getProperty("stub.host", settings.host);
+        settings.port = Integer.getInteger("stub.port", settings.port);
+        settings.latencyMs = Long.getLong("stub.latency-ms", settings.latencyMs);
+        settings.latencyJitterMs = Long.getLong("stub.latency-jitter-ms", settings.latencyJitterMs);
+        settings.tokensPerSecond = Integer.getInteger("stub.tokens-per-second", settings.tokensPerSecond);
+        settings.answerTokens = Integer.getInteger("stub.answer-tokens", settings.answerTokens);
+        settings.errorRate = Double.parseDouble(System.getProperty("stub.error-rate", String.valueOf(settings.errorRate)));
+        settings.rateLimitRate = Double.parseDouble(System.getProperty("stub.rate-limit-rate", String.valueOf(settings.rateLimitRate)));
+        settings.retryAfterSeconds = Integer.getInteger("stub.retry-after-seconds", settings.retryAfterSeconds);
+
+        LlmStubServer server = new LlmStubServer(settings);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        Thread.currentThread().join();
+    }
+}
@@ -1,13 +1,74 @@
 import { apiClient } from './client'
 
+const API_URL = process.env.NEXT_PUBLIC_API_URL || 'http://localhost:8080/api'
+
 export interface QaRequest {
   fileId: number
   question: string
 }
 
+export interface QaStreamHandlers {
+  onToken: (content: string) => void
+  onDone?: (recordId: number) => void
+  onError?: (message: string) => void
+}
+
 export const aiApi = {
   askQuestion: async (request: QaRequest): Promise<{ code: number; data: string }> => {
     return apiClient.post('/ai/qa', request)
   },
+
+  // 流式问答：逐段回调回答内容，返回的函数用于中止请求
+  askQuestionStream: (request: QaRequest, handlers: QaStreamHandlers): (() => void) => {
+    const controller = new AbortController()
+    const token = localStorage.getItem('token')
+
+    const run = async () => {
+      const response = await fetch(`${API_URL}/ai/qa/stream`, {
+        method: 'POST',
+        headers: {
+          'Content-Type': 'application/json',
+          Accept: 'text/event-stream',
+          ...(token ? { Authorization: `Bearer ${token}` } : {}),
+        },
+        body: JSON.stringify(request),
+        signal: controller.signal,
+      })
+      if (!response.ok || !response.body) {
+        handlers.onError?.(`请求失败: HTTP ${response.status}`)
+        return
+      }
+
+      const reader = response.body.getReader()
+      const decoder = new TextDecoder()
+      let buffer = ''
+      while (true) {
+        const { done, value } = await reader.read()
+        if (done) break
+        buffer += decoder.decode(value, { stream: true })
+        // 事件之间以空行分隔
+        let boundary = buffer.indexOf('\n\n')
+        while (boundary >= 0) {
+          const rawEvent = buffer.slice(0, boundary)
+          buffer = buffer.slice(boundary + 2)
+          let event = 'message'
+          let data = ''
+          for (const line of rawEvent.split('\n')) {
+            if (line.startsWith('event:')) event = line.slice(6).trim()
+            else if (line.startsWith('data:')) data += line.slice(5)
+          }
+          if (event === 'token') handlers.onToken(JSON.parse(data).content)
+          else if (event === 'done') handlers.onDone?.(Number(data))
+          else if (event === 'error') handlers.onError?.(JSON.parse(data).message)
+          boundary = buffer.indexOf('\n\n')
+        }
+      }
+    }
+
+    run().catch((e) => {
+      if (e?.name !== 'AbortError') handlers.onError?.(e?.message || '流式问答失败')
+    })
+    return () => controller.abort()
+  },
 }
 
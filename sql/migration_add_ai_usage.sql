@@ -0,0 +1,25 @@
+-- AI Token用量统计：问答记录和论文分析保存输入/输出Token数，按用户和部门按月累计用量
+
+USE litmind;
+
+ALTER TABLE ai_qa_records
+ADD COLUMN prompt_tokens INT COMMENT '输入Token数',
+ADD COLUMN completion_tokens INT COMMENT '输出Token数';
+
+ALTER TABLE pdf_analyses
+ADD COLUMN prompt_tokens INT COMMENT '输入Token数（含map-reduce各分段）',
+ADD COLUMN completion_tokens INT COMMENT '输出Token数（含map-reduce各分段）';
+
+CREATE TABLE IF NOT EXISTS ai_usage_counters (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    scope VARCHAR(20) NOT NULL COMMENT '统计维度：USER、DEPARTMENT',
+    scope_id BIGINT NOT NULL COMMENT '用户ID或部门ID',
+    period VARCHAR(7) NOT NULL COMMENT '统计月份（yyyy-MM）',
+    request_count BIGINT NOT NULL DEFAULT 0 COMMENT '请求次数',
+    prompt_tokens BIGINT NOT NULL DEFAULT 0 COMMENT '累计输入Token数',
+    completion_tokens BIGINT NOT NULL DEFAULT 0 COMMENT '累计输出Token数',
+    latency_ms BIGINT NOT NULL DEFAULT 0 COMMENT '累计耗时（毫秒，含排队）',
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    UNIQUE KEY uk_scope_period (scope, scope_id, period),
+    INDEX idx_period (scope, period)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='AI用量计数表';
@@ -0,0 +1,7 @@
+-- PDF分析失败原因
+-- 解析超时、内存超限等失败记录原因，便于排查
+
+USE litmind;
+
+ALTER TABLE pdf_analyses
+ADD COLUMN failure_reason VARCHAR(500) COMMENT '分析失败原因';
@@ -0,0 +1,6 @@
+-- 预生成常见问答：论文分析时同时生成常见问题及回答，问答界面直接展示
+
+USE litmind;
+
+ALTER TABLE pdf_analyses
+ADD COLUMN faq TEXT COMMENT '常见问答，JSON数组 [{question, answer}]';
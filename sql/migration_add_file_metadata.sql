@@ -0,0 +1,10 @@
+-- 文件PDF元数据字段
+-- 上传时从文档信息字典/XMP元数据中探测，列表和推荐无需再打开PDF
+
+USE litmind;
+
+ALTER TABLE files
+ADD COLUMN title VARCHAR(500) COMMENT '论文标题（PDF元数据）',
+ADD COLUMN authors VARCHAR(1000) COMMENT '作者（PDF元数据）',
+ADD COLUMN doi VARCHAR(255) COMMENT 'DOI（PDF元数据）',
+ADD COLUMN page_count INT COMMENT '页数';
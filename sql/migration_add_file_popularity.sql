@@ -0,0 +1,18 @@
+-- 文件热度计数：记录查看和分析行为时原子递增，热门文件推荐按计数排序，不再逐个文件统计行为明细
+
+USE litmind;
+
+CREATE TABLE IF NOT EXISTS file_popularity (
+    file_id BIGINT PRIMARY KEY COMMENT '文件ID',
+    view_count BIGINT NOT NULL DEFAULT 0 COMMENT '查看和分析次数',
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    INDEX idx_view_count (view_count)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文件热度计数表';
+
+-- 根据已有的用户行为回填计数
+INSERT INTO file_popularity (file_id, view_count, updated_at)
+SELECT file_id, COUNT(*), NOW()
+FROM user_behaviors
+WHERE file_id IS NOT NULL AND behavior_type IN ('VIEW', 'ANALYZE')
+GROUP BY file_id
+ON DUPLICATE KEY UPDATE view_count = VALUES(view_count), updated_at = NOW();
@@ -0,0 +1,7 @@
+-- 记录PDF上传预检结果，未通过预检的文档不进入分析队列
+
+USE litmind;
+
+ALTER TABLE files
+ADD COLUMN preflight_status VARCHAR(20) COMMENT '上传预检结果：OK、INVALID、ENCRYPTED、EMPTY、TOO_MANY_PAGES、NO_TEXT',
+ADD COLUMN preflight_message VARCHAR(500) COMMENT '预检未通过的原因';
@@ -0,0 +1,10 @@
+-- 论文版本关联：新版本文件记录上一版本，分析时只把变更的章节发给LLM，在上一版本分析的基础上增量更新
+
+USE litmind;
+
+ALTER TABLE files
+ADD COLUMN previous_version_id BIGINT COMMENT '上一版本文件ID',
+ADD INDEX idx_previous_version (previous_version_id);
+
+ALTER TABLE pdf_analyses
+ADD COLUMN revised_from_file_id BIGINT COMMENT '增量分析所基于的上一版本文件ID，完整分析时为空';
@@ -0,0 +1,13 @@
+-- 长论文分段摘要
+-- map-reduce分析时每个分段的摘要按内容哈希和模型缓存，重新分析时只计算缺失的分段
+
+USE litmind;
+
+CREATE TABLE IF NOT EXISTS pdf_chunk_summaries (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    content_hash VARCHAR(64) NOT NULL COMMENT '分段文本的SHA-256',
+    model VARCHAR(100) NOT NULL COMMENT '生成摘要的模型',
+    summary TEXT NOT NULL COMMENT '分段摘要',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    UNIQUE KEY uk_hash_model (content_hash, model)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='论文分段摘要表';
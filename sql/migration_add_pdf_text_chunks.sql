@@ -0,0 +1,17 @@
+-- PDF章节分块
+-- 提取文本按论文章节（摘要、引言、方法、实验、结论等）切分，只保存偏移量
+
+USE litmind;
+
+CREATE TABLE IF NOT EXISTS pdf_text_chunks (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    file_id BIGINT NOT NULL COMMENT '文件ID',
+    chunk_index INT NOT NULL COMMENT '分块序号',
+    section_type VARCHAR(20) NOT NULL COMMENT '章节类型：FRONT, ABSTRACT, INTRODUCTION, RELATED_WORK, METHOD, EXPERIMENT, DISCUSSION, CONCLUSION, REFERENCES, APPENDIX, OTHER',
+    heading VARCHAR(200) COMMENT '章节标题',
+    start_offset INT NOT NULL COMMENT '在提取文本中的起始偏移',
+    end_offset INT NOT NULL COMMENT '在提取文本中的结束偏移',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    FOREIGN KEY (file_id) REFERENCES files(id) ON DELETE CASCADE,
+    UNIQUE KEY uk_file_chunk (file_id, chunk_index)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='PDF章节分块表';
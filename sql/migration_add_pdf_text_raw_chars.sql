@@ -0,0 +1,6 @@
+-- 记录文本规范化前的字符数，用于统计规范化节省的字符
+
+USE litmind;
+
+ALTER TABLE pdf_texts
+ADD COLUMN raw_char_count INT COMMENT '规范化前的字符数';
@@ -0,0 +1,16 @@
+-- PDF提取文本存储
+-- PDF只解析一次，压缩后的文本供问答和分析重复读取
+
+USE litmind;
+
+CREATE TABLE IF NOT EXISTS pdf_texts (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    file_id BIGINT NOT NULL COMMENT '文件ID',
+    content LONGBLOB NOT NULL COMMENT '提取文本（GZIP压缩）',
+    char_count INT COMMENT '文本字符数',
+    compressed_size INT COMMENT '压缩后字节数',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    FOREIGN KEY (file_id) REFERENCES files(id) ON DELETE CASCADE,
+    UNIQUE KEY uk_file_id (file_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='PDF提取文本表';
@@ -0,0 +1,7 @@
+-- 问答复用：记录规范化问题的哈希，同一文件、同一模型下的相同问题直接复用已有回答
+
+USE litmind;
+
+ALTER TABLE ai_qa_records
+ADD COLUMN question_hash VARCHAR(64) COMMENT '规范化问题的SHA-256',
+ADD INDEX idx_file_model_question (file_id, model_used, question_hash);
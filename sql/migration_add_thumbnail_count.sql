@@ -0,0 +1,7 @@
+-- 缩略图数量字段
+-- 上传后后台渲染前N页缩略图，存放在 {file_path}.thumbs/ 下
+
+USE litmind;
+
+ALTER TABLE files
+ADD COLUMN thumbnail_count INT COMMENT '已生成的缩略图页数，NULL表示尚未生成';